@@ -0,0 +1,69 @@
+package com.interview.calculator.benchmark;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionCompiler;
+import com.interview.calculator.serialization.ExpressionArchive;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a set of formulas on startup : compiling their text, or decoding them from a mapped archive file.
+ * Every operation loads all the formulas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArchiveBenchmark {
+
+    @Param({"100000"})
+    public int formulas;
+
+    private List<String> texts;
+    private Path archive;
+
+    @Setup
+    public void setUp() throws CalculatorException, IOException {
+        texts = new ArrayList<>(formulas);
+        List<CompiledExpression> compiled = new ArrayList<>(formulas);
+        for (int i = 0; i < formulas; i++) {
+            String text = "let(c, mult(price, " + (i % 97 + 1) + "), let(d, div(c, add(qty, " + (i % 13 + 1)
+                    + ")), sub(add(c, d), mult(d, 2))))";
+            texts.add(text);
+            compiled.add(ExpressionCompiler.compileWithParameters(text));
+        }
+        archive = Files.createTempFile("formulas", ".bin");
+        ExpressionArchive.write(compiled, archive);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(archive);
+    }
+
+    @Benchmark
+    public List<CompiledExpression> compileText() throws CalculatorException {
+        List<CompiledExpression> compiled = new ArrayList<>(formulas);
+        for (String text : texts)
+            compiled.add(ExpressionCompiler.compileWithParameters(text));
+        return compiled;
+    }
+
+    @Benchmark
+    public List<CompiledExpression> decodeArchive() throws CalculatorException, IOException {
+        ExpressionArchive loaded = ExpressionArchive.open(archive);
+        List<CompiledExpression> compiled = new ArrayList<>(loaded.size());
+        for (int i = 0; i < loaded.size(); i++)
+            compiled.add(loaded.get(i));
+        return compiled;
+    }
+}
@@ -0,0 +1,56 @@
+package com.interview.calculator.benchmark;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import com.interview.calculator.batch.EvaluationResult;
+import com.interview.calculator.cache.ExpressionCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link BatchEvaluator} with the number of threads evaluating a batch.
+ * Every operation evaluates the whole batch, so expressions per second is the throughput multiplied by the batch size.
+ * The batch has a few distinct expressions only, so that expressions are compiled once and the threads share the cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final int DISTINCT_EXPRESSIONS = 1_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"100000"})
+    public int batchSize;
+
+    private ForkJoinPool pool;
+    private BatchEvaluator evaluator;
+    private List<String> expressions;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        evaluator = new BatchEvaluator(pool, threads, new ExpressionCache(DISTINCT_EXPRESSIONS));
+        expressions = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++)
+            expressions.add("let(a, " + i % DISTINCT_EXPRESSIONS + ", let(b, mult(a, 10), add(b, div(a, 3))))");
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<EvaluationResult> evaluate() {
+        return evaluator.evaluate(expressions);
+    }
+}
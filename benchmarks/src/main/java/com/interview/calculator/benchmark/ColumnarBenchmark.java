@@ -0,0 +1,76 @@
+package com.interview.calculator.benchmark;
+
+import com.interview.calculator.evaluator.ColumnarEvaluator;
+import com.interview.calculator.evaluator.EvaluationContext;
+import com.interview.calculator.evaluator.Program;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a column of rows with one parameterized expression : row by row with a program, or column at a time.
+ * Every operation scores all the rows, so rows per second is the throughput multiplied by the row count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnarBenchmark {
+
+    private static final String EXPRESSION = "let(c, mult(price, qty), let(d, div(c, add(qty, 1)), sub(add(c, d), mult(d, 2))))";
+
+    @Param({"1000000"})
+    public int rows;
+
+    private Map<String, Object> columns;
+    private float[] price;
+    private int[] qty;
+    private Program program;
+    private ColumnarEvaluator columnar;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        price = new float[rows];
+        qty = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            price[i] = i % 1000 * 0.25f;
+            qty[i] = i % 17;
+        }
+        columns = new HashMap<>();
+        columns.put("price", price);
+        columns.put("qty", qty);
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters(EXPRESSION);
+        program = Program.compile(compiled);
+        columnar = new ColumnarEvaluator(compiled);
+    }
+
+    @Benchmark
+    public float[] rowByRow() throws CalculatorException {
+        EvaluationContext context = new EvaluationContext();
+        float[] result = new float[rows];
+        float[] row = new float[2];
+        for (int i = 0; i < rows; i++) {
+            row[0] = price[i];
+            row[1] = qty[i];
+            result[i] = program.evaluate(context, row);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public float[] columnar() throws CalculatorException {
+        return columnar.evaluate(columns);
+    }
+
+    @Benchmark
+    public float[] columnarParallel() throws CalculatorException {
+        return columnar.evaluateParallel(columns);
+    }
+}
@@ -0,0 +1,82 @@
+package com.interview.calculator.benchmark;
+
+import com.interview.calculator.evaluator.EvaluationContext;
+import com.interview.calculator.evaluator.Program;
+import com.interview.calculator.evaluator.TieredEvaluator;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.optimizer.ExpressionOptimizer;
+import com.interview.calculator.parser.ExpressionCompiler;
+import com.interview.calculator.parser.ExpressionParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and average latency of parsing and evaluating expressions of every {@link Scenario}.
+ * Allocation rate is reported when JMH runs with the GC profiler (-prof gc).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionParserBenchmark {
+
+    @Param({"FLAT", "NESTED", "LET", "LONG"})
+    public Scenario scenario;
+
+    private String expression;
+    private CompiledExpression compiled;
+    private CompiledExpression optimized;
+    private Program program;
+    private TieredEvaluator tiered;
+    private EvaluationContext context;
+
+    @Setup
+    public void setUp() throws CalculatorException {
+        expression = scenario.expression();
+        compiled = ExpressionCompiler.compile(expression);
+        optimized = ExpressionOptimizer.optimize(compiled);
+        program = Program.compile(compiled);
+        tiered = new TieredEvaluator(compiled, 1);
+        context = new EvaluationContext();
+    }
+
+    /**
+     * Parser used by the command line, going through the shared cache of compiled expressions.
+     */
+    @Benchmark
+    public float expressionParser() throws CalculatorException {
+        return new ExpressionParser(expression).getResult();
+    }
+
+    @Benchmark
+    public float compileAndEvaluate() throws CalculatorException {
+        return ExpressionCompiler.compile(expression).evaluate();
+    }
+
+    @Benchmark
+    public float evaluateTree() throws CalculatorException {
+        return compiled.evaluate();
+    }
+
+    @Benchmark
+    public float evaluateOptimized() throws CalculatorException {
+        return optimized.evaluate();
+    }
+
+    @Benchmark
+    public float evaluateProgram() throws CalculatorException {
+        return program.evaluate(context);
+    }
+
+    /**
+     * Method handle backend, compiled on the first evaluation (large expressions stay interpreted).
+     */
+    @Benchmark
+    public float evaluateTiered() throws CalculatorException {
+        return tiered.evaluate();
+    }
+}
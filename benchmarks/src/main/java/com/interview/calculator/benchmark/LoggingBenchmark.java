@@ -0,0 +1,68 @@
+package com.interview.calculator.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.core.joran.spi.JoranException;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.parser.ExpressionParser;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation throughput depending on the logging configuration :
+ * - synchronous : the original logback.xml, debug level, every event written to the console and flushed to the file
+ *   by the evaluating thread.
+ * - production : logback-production.xml, info level with an async, batched file appender.
+ * - off : logging disabled.
+ * <p>
+ * evaluate only runs the parser (which logs nothing for valid expressions), evaluateAndLog also logs every result as
+ * the command line does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(LoggingBenchmark.class);
+    private static final String EXPRESSION = "let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))";
+
+    @Param({"synchronous", "production", "off"})
+    public String logging;
+
+    @Setup
+    public void setUp() throws JoranException {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(context);
+        configurator.doConfigure(getClass().getResource("synchronous".equals(logging)
+                ? "/logback-synchronous.xml" : "/logback-production.xml"));
+        if ("off".equals(logging))
+            context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+
+    @Benchmark
+    public float evaluate() throws CalculatorException {
+        return new ExpressionParser(EXPRESSION).getResult();
+    }
+
+    @Benchmark
+    public float evaluateAndLog() throws CalculatorException {
+        float result = new ExpressionParser(EXPRESSION).getResult();
+        LOGGER.info("Result of the expression : {} is : {}", EXPRESSION, result);
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package com.interview.calculator.benchmark;
+
+/**
+ * Expressions used by the benchmarks.
+ */
+public enum Scenario {
+
+    /**
+     * Single level of arithmetic functions.
+     */
+    FLAT {
+        @Override
+        String expression() {
+            return "add(mult(2, 3), div(10, 4))";
+        }
+    },
+    /**
+     * Chain of nested add/mult, 500 levels deep.
+     */
+    NESTED {
+        @Override
+        String expression() {
+            StringBuilder expression = new StringBuilder();
+            for (int i = 0; i < DEPTH; i++)
+                expression.append(i % 2 == 0 ? "add(" : "mult(").append(i % 7 + 1).append(", ");
+            expression.append('1');
+            for (int i = 0; i < DEPTH; i++)
+                expression.append(')');
+            return expression.toString();
+        }
+    },
+    /**
+     * Nested let scopes, as in the parser tests.
+     */
+    LET {
+        @Override
+        String expression() {
+            return "let(a, let(b, let(c, 5, add(c,c)), add(b,c)), let(d, mult(b, a), let(e, div(d, 3), sub(e, a))))";
+        }
+    },
+    /**
+     * Generated expression of about 60 thousand characters : balanced tree of functions with 8192 numbers.
+     */
+    LONG {
+        @Override
+        String expression() {
+            StringBuilder expression = new StringBuilder();
+            appendBalanced(expression, 13, 1);
+            return expression.toString();
+        }
+    };
+
+    private static final int DEPTH = 500;
+    private static final String[] FUNCTIONS = {"add", "sub", "mult", "add"};
+
+    abstract String expression();
+
+    private static void appendBalanced(StringBuilder expression, int depth, int seed) {
+        if (depth == 0) {
+            expression.append(seed % 9 + 1);
+            return;
+        }
+        expression.append(FUNCTIONS[depth % FUNCTIONS.length]).append('(');
+        appendBalanced(expression, depth - 1, 2 * seed);
+        expression.append(", ");
+        appendBalanced(expression, depth - 1, 2 * seed + 1);
+        expression.append(')');
+    }
+}
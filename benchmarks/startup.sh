@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+# Measures the wall clock time of a single evaluation from the command line, for every packaging of the calculator.
+#
+# Build the variants first, from the project directory :
+#   mvn package -Pcds          jar-with-dependencies and the AppCDS archive target/calculator.jsa
+#   mvn package -Pnative       native executable target/calculator (experimental, needs GraalVM native-image)
+# then run :
+#   benchmarks/startup.sh [RUNS] [EXPRESSION]
+# Variants whose files are missing are skipped.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-20}
+EXPRESSION=${2:-"let(a, 5, let(b, mult(a, 10), add(b, a)))"}
+JAR=target/calculator-1.0-jar-with-dependencies.jar
+ARCHIVE=target/calculator.jsa
+NATIVE=target/calculator
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+# Runs the command RUNS times after a warm up run, and prints the mean and minimum time in milliseconds
+measure() {
+    local name=$1
+    shift
+    "$@" > /dev/null
+    local total=0 minimum=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start end elapsed
+        start=$(date +%s%N)
+        "$@" > /dev/null
+        end=$(date +%s%N)
+        elapsed=$(((end - start) / 1000000))
+        total=$((total + elapsed))
+        if ((i == 0 || elapsed < minimum)); then
+            minimum=$elapsed
+        fi
+    done
+    printf '%-28s mean %5d ms   min %5d ms\n' "$name" $((total / RUNS)) "$minimum"
+}
+
+if [[ ! -f $JAR ]]; then
+    echo "$JAR is missing, build it with mvn package" >&2
+    exit 1
+fi
+
+echo "$RUNS runs of : $EXPRESSION"
+measure "jar" "$JAVA" -jar "$JAR" "$EXPRESSION"
+# The printed result doesn't initialize logging
+measure "jar, print" "$JAVA" -jar "$JAR" --print "$EXPRESSION"
+measure "jar, C1 only" "$JAVA" -XX:TieredStopAtLevel=1 -jar "$JAR" "$EXPRESSION"
+if [[ -f $ARCHIVE ]]; then
+    measure "jar, AppCDS" "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -jar "$JAR" "$EXPRESSION"
+    measure "jar, AppCDS, C1 only" "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -XX:TieredStopAtLevel=1 -jar "$JAR" "$EXPRESSION"
+    measure "jar, AppCDS, C1 only, print" "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -XX:TieredStopAtLevel=1 -jar "$JAR" --print "$EXPRESSION"
+else
+    echo "$ARCHIVE is missing, build it with mvn package -Pcds to measure AppCDS" >&2
+fi
+if [[ -x $NATIVE ]]; then
+    measure "native" "$NATIVE" "$EXPRESSION"
+else
+    echo "$NATIVE is missing, build it with mvn package -Pnative to measure the native executable" >&2
+fi
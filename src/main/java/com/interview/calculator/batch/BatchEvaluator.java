@@ -0,0 +1,167 @@
+package com.interview.calculator.batch;
+
+import com.interview.calculator.cache.ExpressionCache;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionEvaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.interview.calculator.constants.Constants.TOO_DEEP;
+
+/**
+ * Evaluates many expressions in parallel.
+ * <p>
+ * Approach : Expressions are split into contiguous chunks, a few per available thread, and every chunk is evaluated by
+ * a task of the executor. Each task writes the results of its chunk at the position of the expressions, so results are
+ * returned in input order whichever task completes first.
+ * An invalid expression, or a custom function throwing any runtime exception, only fails its own entry, the rest of
+ * the batch is evaluated normally.
+ * Expressions are evaluated by an {@link ExpressionEvaluator} shared by the tasks, each thread using its own scratch
+ * memory.
+ */
+public class BatchEvaluator {
+
+    // Chunks per thread, so that threads finishing early can pick remaining chunks
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final ExpressionCache cache;
+    private final ExpressionEvaluator evaluator;
+
+    /**
+     * Batch evaluator using the common fork-join pool and the shared cache of compiled expressions.
+     */
+    public BatchEvaluator() {
+        this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), ExpressionCache.getDefault());
+    }
+
+    /**
+     * @param executor    : executor evaluating the chunks
+     * @param parallelism : number of threads of the executor
+     * @param cache       : cache of compiled expressions
+     */
+    public BatchEvaluator(Executor executor, int parallelism, ExpressionCache cache) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism should be positive");
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.evaluator = new ExpressionEvaluator(cache);
+    }
+
+    /**
+     * Evaluates every expression, results are in the same order as the expressions.
+     *
+     * @param expressions
+     * @return
+     */
+    public List<EvaluationResult> evaluate(Collection<String> expressions) {
+        String[] inputs = expressions.toArray(new String[0]);
+        EvaluationResult[] results = new EvaluationResult[inputs.length];
+        int chunkSize = Math.max(1, (inputs.length + parallelism * CHUNKS_PER_THREAD - 1) / (parallelism * CHUNKS_PER_THREAD));
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < inputs.length; start += chunkSize) {
+            int from = start;
+            int to = Math.min(inputs.length, start + chunkSize);
+            chunks.add(CompletableFuture.runAsync(() -> evaluate(inputs, results, from, to), executor));
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Evaluates every expression of the stream, results are in the same order as the expressions.
+     *
+     * @param expressions
+     * @return
+     */
+    public List<EvaluationResult> evaluate(Stream<String> expressions) {
+        return evaluate(expressions.collect(Collectors.toList()));
+    }
+
+    /**
+     * Evaluates every expression in a single graph where subexpressions shared by several expressions (or repeated in
+     * one expression) are computed once, see {@link ExpressionDag}. Results are in the same order as the expressions.
+     * Expressions the graph doesn't support (if expressions, custom functions) are left out of the graph and evaluated
+     * in parallel as by {@link #evaluate(Collection)}, and so are all the expressions if they have too many distinct
+     * subexpressions for a graph.
+     *
+     * @param expressions
+     * @return
+     */
+    public List<EvaluationResult> evaluateShared(Collection<String> expressions) {
+        EvaluationResult[] results = new EvaluationResult[expressions.size()];
+        List<CompiledExpression> compiled = new ArrayList<>(expressions.size());
+        List<String> unsupported = new ArrayList<>();
+        // Positions of the expressions of the graph, then of the unsupported ones
+        int[] positions = new int[expressions.size()];
+        int[] unsupportedPositions = new int[expressions.size()];
+        int index = 0;
+        for (String expression : expressions) {
+            try {
+                CompiledExpression expressionCompiled = cache.get(expression);
+                if (ExpressionDag.supports(expressionCompiled)) {
+                    positions[compiled.size()] = index;
+                    compiled.add(expressionCompiled);
+                } else {
+                    unsupportedPositions[unsupported.size()] = index;
+                    unsupported.add(expression);
+                }
+            } catch (CalculatorException e) {
+                results[index] = EvaluationResult.failure(expression, e);
+            }
+            index++;
+        }
+        List<EvaluationResult> shared;
+        try {
+            shared = ExpressionDag.compile(compiled).evaluate();
+        } catch (IllegalArgumentException e) {
+            // Too many distinct subexpressions
+            List<String> sources = new ArrayList<>(compiled.size());
+            for (int i = 0; i < compiled.size(); i++)
+                sources.add(compiled.get(i).toString());
+            shared = evaluate(sources);
+        } catch (CalculatorException e) {
+            // Compiled without parameters, so values of every input are given
+            throw new IllegalStateException(e);
+        }
+        for (int i = 0; i < shared.size(); i++)
+            results[positions[i]] = shared.get(i);
+        List<EvaluationResult> separate = evaluate(unsupported);
+        for (int i = 0; i < separate.size(); i++)
+            results[unsupportedPositions[i]] = separate.get(i);
+        return Arrays.asList(results);
+    }
+
+    private void evaluate(String[] inputs, EvaluationResult[] results, int from, int to) {
+        for (int i = from; i < to; i++)
+            results[i] = evaluate(inputs[i]);
+    }
+
+    /**
+     * Evaluates a single expression, capturing its exception in the result.
+     * A stack overflow, e.g. of a recursive custom function, is reported as a {@link CalculatorException}.
+     *
+     * @param expression
+     * @return
+     */
+    public EvaluationResult evaluate(String expression) {
+        try {
+            return EvaluationResult.success(expression, evaluator.evaluate(expression));
+        } catch (CalculatorException | RuntimeException e) {
+            return EvaluationResult.failure(expression, e);
+        } catch (StackOverflowError e) {
+            return EvaluationResult.failure(expression, new CalculatorException(TOO_DEEP));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.interview.calculator.batch;
+
+/**
+ * Result of evaluating one expression of a batch : either the value of the expression or the exception raised by it
+ * ({@link com.interview.calculator.exception.CalculatorException}, {@link ArithmeticException} or any runtime
+ * exception of a custom function).
+ */
+public final class EvaluationResult {
+
+    private final String expression;
+    private final float value;
+    private final Exception error;
+
+    private EvaluationResult(String expression, float value, Exception error) {
+        this.expression = expression;
+        this.value = value;
+        this.error = error;
+    }
+
+    public static EvaluationResult success(String expression, float value) {
+        return new EvaluationResult(expression, value, null);
+    }
+
+    public static EvaluationResult failure(String expression, Exception error) {
+        return new EvaluationResult(expression, Float.NaN, error);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Value of the expression.
+     *
+     * @return
+     * @throws IllegalStateException if the evaluation failed
+     */
+    public float getValue() {
+        if (error != null)
+            throw new IllegalStateException("Evaluation failed : " + error.getMessage(), error);
+        return value;
+    }
+
+    /**
+     * Exception raised by the expression, null if the evaluation succeeded.
+     *
+     * @return
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? String.valueOf(value) : error.getMessage();
+    }
+}
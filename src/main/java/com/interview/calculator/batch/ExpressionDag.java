@@ -0,0 +1,353 @@
+package com.interview.calculator.batch;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.interview.calculator.constants.Constants.*;
+
+/**
+ * Set of expressions compiled into one graph where structurally identical subexpressions are shared, so that every
+ * distinct subexpression is computed once per evaluation, whichever expression (or part of it) it comes from.
+ * <p>
+ * Approach : Expressions are walked in evaluation order, with an explicit stack, and every node gets a value number by
+ * hash consing :
+ * - literal is numbered by its value, parameter (input) by its name, shared by all the expressions.
+ * - arithmetic function is numbered by its function and the value numbers of its operands, operands of add, mult, min
+ * and max being ordered as they are commutative. Functions of more operands are a chain of binary nodes, so that
+ * add(a, b, c) shares add(a, b), and abs is a node whose two operands are the same.
+ * - variable takes the value number of the value last assigned to it, and let expression the one of its body, so two
+ * reads of variables refer to the same node only if they read the same value.
+ * A node already numbered is reused instead of being added, so the graph only has distinct values, numbered after the
+ * values they depend on.
+ * <p>
+ * Evaluation computes every node once, in number order, into a float array. Divisions by zero don't stop evaluation,
+ * every expression keeps the divisions (and modulos) it evaluates and fails if one of them divided by zero, as if
+ * evaluated alone. If expressions and custom functions aren't supported, as every node is computed.
+ * Nodes are kept in primitive arrays, which also takes much less memory than the trees of the expressions.
+ */
+public final class ExpressionDag {
+
+    private static final int LITERAL = -1;
+    private static final int INPUT = -2;
+    private static final ArithmeticFunctions[] FUNCTIONS = ArithmeticFunctions.values();
+    // Value numbers are keyed on 30 bits per operand
+    static final int MAXIMUM_NODE_COUNT = 1 << 30;
+
+    private final String[] sources;
+    private final String[] inputs;
+    // Function ordinal of every node, or LITERAL / INPUT. Operands of a literal are its value bits, of an input its index
+    private final int[] kinds;
+    private final int[] leftOperands;
+    private final int[] rightOperands;
+    private final int[] outputs;
+    // Division nodes evaluated by every expression
+    private final int[][] divisions;
+
+    private ExpressionDag(String[] sources, String[] inputs, int[] kinds, int[] leftOperands, int[] rightOperands,
+                          int[] outputs, int[][] divisions) {
+        this.sources = sources;
+        this.inputs = inputs;
+        this.kinds = kinds;
+        this.leftOperands = leftOperands;
+        this.rightOperands = rightOperands;
+        this.outputs = outputs;
+        this.divisions = divisions;
+    }
+
+    /**
+     * Whether the expression can be compiled into a graph, i.e. it has no if expression and calls no custom function.
+     * The tree is walked with an explicit stack, so that deep trees don't overflow the thread stack.
+     *
+     * @param expression
+     * @return
+     */
+    public static boolean supports(CompiledExpression expression) {
+        Deque<Expression> pending = new ArrayDeque<>();
+        pending.push(expression.getRoot());
+        while (!pending.isEmpty()) {
+            Expression next = pending.pop();
+            if (next instanceof Conditional || next instanceof FunctionCall)
+                return false;
+            if (next instanceof Operation) {
+                Operation operation = (Operation) next;
+                for (int i = 0; i < operation.getOperandCount(); i++)
+                    pending.push(operation.getOperand(i));
+            } else if (next instanceof LetBinding) {
+                pending.push(((LetBinding) next).getValue());
+                pending.push(((LetBinding) next).getBody());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compiles the expressions into a shared graph, parameters with the same name are the same input.
+     *
+     * @param expressions
+     * @return
+     * @throws IllegalArgumentException if an expression has an if expression or calls a custom function, or the
+     *                                  expressions have more than {@link #MAXIMUM_NODE_COUNT} distinct subexpressions
+     */
+    public static ExpressionDag compile(Collection<CompiledExpression> expressions) {
+        Builder builder = new Builder();
+        String[] sources = new String[expressions.size()];
+        int[] outputs = new int[expressions.size()];
+        int[][] divisions = new int[expressions.size()][];
+        int index = 0;
+        for (CompiledExpression expression : expressions) {
+            builder.start(expression);
+            outputs[index] = builder.build(expression.getRoot());
+            divisions[index] = builder.divisions.stream().mapToInt(Integer::intValue).toArray();
+            sources[index++] = expression.toString();
+        }
+        int nodeCount = builder.nodeCount;
+        return new ExpressionDag(sources, builder.inputs.keySet().toArray(new String[0]),
+                Arrays.copyOf(builder.kinds, nodeCount), Arrays.copyOf(builder.leftOperands, nodeCount),
+                Arrays.copyOf(builder.rightOperands, nodeCount), outputs, divisions);
+    }
+
+    /**
+     * Names of the inputs, in the order their values are expected by {@link #evaluate(float[])}.
+     *
+     * @return
+     */
+    public String[] getInputs() {
+        return inputs.clone();
+    }
+
+    /**
+     * Number of distinct subexpressions of all the expressions.
+     *
+     * @return
+     */
+    public int getNodeCount() {
+        return kinds.length;
+    }
+
+    /**
+     * Computes the result of every expression.
+     *
+     * @return results in the order of the expressions
+     * @throws CalculatorException if the expressions have parameters
+     */
+    public List<EvaluationResult> evaluate() throws CalculatorException {
+        if (inputs.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return evaluate(new float[0]);
+    }
+
+    /**
+     * Computes the result of every expression for the given input values.
+     *
+     * @param inputValues : values indexed like {@link #getInputs()}
+     * @return results in the order of the expressions
+     * @throws CalculatorException if the number of values doesn't match the number of inputs
+     */
+    public List<EvaluationResult> evaluate(float[] inputValues) throws CalculatorException {
+        if (inputValues.length != inputs.length)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        float[] values = new float[kinds.length];
+        for (int node = 0; node < kinds.length; node++) {
+            switch (kinds[node]) {
+                case LITERAL:
+                    values[node] = Float.intBitsToFloat(leftOperands[node]);
+                    break;
+                case INPUT:
+                    values[node] = inputValues[leftOperands[node]];
+                    break;
+                default:
+                    values[node] = compute(FUNCTIONS[kinds[node]], values[leftOperands[node]], values[rightOperands[node]]);
+            }
+        }
+        List<EvaluationResult> results = new ArrayList<>(outputs.length);
+        for (int i = 0; i < outputs.length; i++)
+            results.add(dividesByZero(i, values)
+                    ? EvaluationResult.failure(sources[i], new ArithmeticException(DIVIDE_BY_ZERO))
+                    : EvaluationResult.success(sources[i], values[outputs[i]]));
+        return results;
+    }
+
+    private boolean dividesByZero(int expression, float[] values) {
+        for (int division : divisions[expression])
+            if (values[rightOperands[division]] == 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Same float operations as {@link Operation#apply}, except division by zero which is checked per expression.
+     */
+    private static float compute(ArithmeticFunctions function, float operand1, float operand2) {
+        switch (function) {
+            case ADD:
+                return operand1 + operand2;
+            case SUB:
+                return operand1 - operand2;
+            case MULT:
+                return operand1 * operand2;
+            case DIV:
+                return operand1 / operand2;
+            case MIN:
+                return Math.min(operand1, operand2);
+            case MAX:
+                return Math.max(operand1, operand2);
+            case MOD:
+                return operand1 % operand2;
+            case POW:
+                return (float) Math.pow(operand1, operand2);
+            case ABS:
+                return Math.abs(operand1);
+            default:
+                throw new IllegalArgumentException("Unsupported function " + function);
+        }
+    }
+
+    /**
+     * Numbers the nodes of the expressions, keeping the value number of every numbered expression on a stack of results.
+     * <p>
+     * Expressions still to number are kept on an explicit stack along with the steps to run once the value numbers of
+     * the arguments before them are known, so that deep trees don't overflow the thread stack.
+     */
+    private static final class Builder {
+
+        // Value number of every distinct node, keyed by kind and operands
+        private final Map<Long, Integer> numbers = new HashMap<>();
+        private final Map<String, Integer> inputs = new LinkedHashMap<>();
+        private final Set<Integer> divisions = new LinkedHashSet<>();
+        private final Deque<Integer> results = new ArrayDeque<>();
+        private int[] kinds = new int[64];
+        private int[] leftOperands = new int[64];
+        private int[] rightOperands = new int[64];
+        private int nodeCount;
+        // Value number currently assigned to every variable slot of the expression being numbered
+        private int[] slotNumbers;
+
+        private void start(CompiledExpression expression) {
+            String[] symbols = expression.getSymbols();
+            slotNumbers = new int[symbols.length];
+            divisions.clear();
+            for (int slot : expression.getParameterSlots()) {
+                Integer input = inputs.get(symbols[slot]);
+                if (input == null) {
+                    input = inputs.size();
+                    inputs.put(symbols[slot], input);
+                }
+                slotNumbers[slot] = number(INPUT, input, 0);
+            }
+        }
+
+        /**
+         * Numbers the nodes of the tree.
+         *
+         * @param root
+         * @return value number of the tree
+         */
+        private int build(Expression root) {
+            Deque<Object> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next instanceof Runnable) {
+                    ((Runnable) next).run();
+                } else if (next instanceof Literal) {
+                    results.push(number(LITERAL, Float.floatToIntBits(((Literal) next).getValue()), 0));
+                } else if (next instanceof VariableReference) {
+                    results.push(slotNumbers[((VariableReference) next).getSlot()]);
+                } else if (next instanceof Operation) {
+                    pushOperation(pending, (Operation) next);
+                } else if (next instanceof LetBinding) {
+                    LetBinding let = (LetBinding) next;
+                    pending.push(let.getBody());
+                    pending.push((Runnable) () -> slotNumbers[let.getSlot()] = results.pop());
+                    pending.push(let.getValue());
+                } else if (next instanceof Conditional) {
+                    throw new IllegalArgumentException("Unsupported function " + ArithmeticFunctions.IF);
+                } else {
+                    throw new IllegalArgumentException("Unsupported function " + ((FunctionCall) next).getFunction());
+                }
+            }
+            return results.pop();
+        }
+
+        private void pushOperation(Deque<Object> pending, Operation operation) {
+            ArithmeticFunctions function = operation.getFunction();
+            if (operation.getOperandCount() == 1) {
+                pending.push((Runnable) () -> {
+                    int operand = results.pop();
+                    results.push(number(function.ordinal(), operand, operand));
+                });
+                pending.push(operation.getOperand(0));
+                return;
+            }
+            for (int i = operation.getOperandCount() - 1; i > 0; i--) {
+                pending.push((Runnable) () -> {
+                    int right = results.pop();
+                    int left = results.pop();
+                    results.push(binary(function, left, right));
+                });
+                pending.push(operation.getOperand(i));
+            }
+            pending.push(operation.getOperand(0));
+        }
+
+        private int binary(ArithmeticFunctions function, int left, int right) {
+            boolean commutative = function == ArithmeticFunctions.ADD || function == ArithmeticFunctions.MULT
+                    || function == ArithmeticFunctions.MIN || function == ArithmeticFunctions.MAX;
+            if (commutative && left > right) {
+                int operand = left;
+                left = right;
+                right = operand;
+            }
+            int number = number(function.ordinal(), left, right);
+            if (function == ArithmeticFunctions.DIV || function == ArithmeticFunctions.MOD)
+                divisions.add(number);
+            return number;
+        }
+
+        private int number(int kind, int left, int right) {
+            // Kind takes the 4 highest bits, operands 30 bits each, except literal bits which use the whole int
+            long key = (long) (kind & 15) << 60;
+            key |= kind == LITERAL ? left & 0xFFFF_FFFFL : (left & 0x3FFF_FFFFL) << 30 | (right & 0x3FFF_FFFFL);
+            Integer number = numbers.get(key);
+            if (number == null) {
+                number = add(kind, left, right);
+                numbers.put(key, number);
+            }
+            return number;
+        }
+
+        private int add(int kind, int left, int right) {
+            if (nodeCount == MAXIMUM_NODE_COUNT)
+                throw new IllegalArgumentException("Too many distinct subexpressions");
+            if (nodeCount == kinds.length) {
+                kinds = Arrays.copyOf(kinds, 2 * nodeCount);
+                leftOperands = Arrays.copyOf(leftOperands, 2 * nodeCount);
+                rightOperands = Arrays.copyOf(rightOperands, 2 * nodeCount);
+            }
+            kinds[nodeCount] = kind;
+            leftOperands[nodeCount] = left;
+            rightOperands[nodeCount] = right;
+            return nodeCount++;
+        }
+    }
+}
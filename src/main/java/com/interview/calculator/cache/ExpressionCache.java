@@ -0,0 +1,261 @@
+package com.interview.calculator.cache;
+
+import com.interview.calculator.evaluator.ExactEvaluator;
+import com.interview.calculator.evaluator.LongEvaluator;
+import com.interview.calculator.evaluator.Program;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.metrics.CalculatorMetrics;
+import com.interview.calculator.optimizer.ExpressionOptimizer;
+import com.interview.calculator.parser.ExpressionCompiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe, bounded cache of compiled expressions keyed by the expression string, along with their {@link Program},
+ * {@link LongEvaluator} and {@link ExactEvaluator} once one was requested.
+ * <p>
+ * Approach : The cache is split into segments, each segment is a LinkedHashMap in access order guarded by its own lock,
+ * so that threads looking up different expressions rarely wait for each other.
+ * - on a hit, the entry is moved to the end of its segment (most recently used).
+ * - on a miss, the expression is compiled and optimized outside the lock and added to its segment.
+ * - the program of a cached expression is compiled the first time it's requested, and kept in its entry, as are its
+ * long and exact evaluators. Those need the exact literals of the expression, so they are compiled from the expression
+ * before it's optimized.
+ * - once a segment is full, its least recently used entry is evicted.
+ * Small caches use a single segment, larger ones evict in LRU order per segment.
+ * <p>
+ * Expressions longer than the configured maximum length are compiled without being cached, so that memory stays
+ * bounded even when every input is a new, very large expression. Invalid expressions are never cached.
+ */
+public class ExpressionCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+    public static final int DEFAULT_MAXIMUM_EXPRESSION_LENGTH = 4_096;
+    private static final int MAXIMUM_SEGMENTS = 16;
+    private static final int MINIMUM_SEGMENT_SIZE = 64;
+
+    private static final ExpressionCache DEFAULT = new ExpressionCache(
+            Integer.getInteger("calculator.cache.size", DEFAULT_MAXIMUM_SIZE),
+            Integer.getInteger("calculator.cache.maxExpressionLength", DEFAULT_MAXIMUM_EXPRESSION_LENGTH));
+
+    private final Segment[] segments;
+    private final int maximumExpressionLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpressionCache(int maximumSize) {
+        this(maximumSize, DEFAULT_MAXIMUM_EXPRESSION_LENGTH);
+    }
+
+    /**
+     * @param maximumSize             : maximum number of compiled expressions kept in the cache
+     * @param maximumExpressionLength : expressions longer than this are not cached
+     */
+    public ExpressionCache(int maximumSize, int maximumExpressionLength) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Cache size should be positive");
+        if (maximumExpressionLength < 0)
+            throw new IllegalArgumentException("Maximum expression length should not be negative");
+        // Power of two number of segments, small caches use a single segment to keep an exact LRU order
+        int segmentCount = Math.min(MAXIMUM_SEGMENTS, Integer.highestOneBit(Math.max(1, maximumSize / MINIMUM_SEGMENT_SIZE)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // Distributing the remainder so that the total capacity is exactly the maximum size
+            int capacity = maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment(capacity);
+        }
+        this.maximumExpressionLength = maximumExpressionLength;
+    }
+
+    /**
+     * Shared cache used by {@link com.interview.calculator.parser.ExpressionParser}.
+     * Size can be configured with the system properties calculator.cache.size and calculator.cache.maxExpressionLength.
+     *
+     * @return
+     */
+    public static ExpressionCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the compiled expression, compiling it only if it isn't cached already.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is not valid
+     */
+    public CompiledExpression get(String expression) throws CalculatorException {
+        return entry(expression).expression;
+    }
+
+    /**
+     * Returns the program of the expression, compiling the expression and its program only if they aren't cached
+     * already.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is not valid
+     */
+    public Program getProgram(String expression) throws CalculatorException {
+        CachedExpression entry = entry(expression);
+        Program program = entry.program;
+        if (program == null) {
+            // Threads racing on the first request compile equal programs, any of them can be kept
+            program = Program.compile(entry.expression);
+            entry.program = program;
+        }
+        return program;
+    }
+
+    /**
+     * Returns the long evaluator of the expression, compiling the expression and its evaluator only if they aren't
+     * cached already.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is not valid or can't be evaluated with long arithmetic
+     */
+    public LongEvaluator getLongEvaluator(String expression) throws CalculatorException {
+        CachedExpression entry = entry(expression);
+        LongEvaluator evaluator = entry.longEvaluator;
+        if (evaluator == null) {
+            evaluator = LongEvaluator.compile(ExpressionCompiler.compile(expression));
+            entry.longEvaluator = evaluator;
+        }
+        return evaluator;
+    }
+
+    /**
+     * Returns the exact evaluator of the expression, compiling the expression and its evaluator only if they aren't
+     * cached already.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is not valid or can't be evaluated with exact arithmetic
+     */
+    public ExactEvaluator getExactEvaluator(String expression) throws CalculatorException {
+        CachedExpression entry = entry(expression);
+        ExactEvaluator evaluator = entry.exactEvaluator;
+        if (evaluator == null) {
+            evaluator = ExactEvaluator.compile(ExpressionCompiler.compile(expression));
+            entry.exactEvaluator = evaluator;
+        }
+        return evaluator;
+    }
+
+    private CachedExpression entry(String expression) throws CalculatorException {
+        if (null == expression || expression.length() > maximumExpressionLength) {
+            misses.increment();
+            return new CachedExpression(compile(expression));
+        }
+        Segment segment = segmentFor(expression);
+        CachedExpression entry;
+        synchronized (segment) {
+            entry = segment.get(expression);
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = new CachedExpression(compile(expression));
+        synchronized (segment) {
+            // Another thread may have compiled the same expression meanwhile, keeping the first one
+            CachedExpression existing = segment.putIfAbsent(expression, entry);
+            return existing != null ? existing : entry;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of compiled expressions currently cached.
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes every cached expression, counters are left unchanged.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private static CompiledExpression compile(String expression) throws CalculatorException {
+        CalculatorMetrics metrics = CalculatorMetrics.getDefault();
+        if (!metrics.isEnabled())
+            return ExpressionOptimizer.optimize(ExpressionCompiler.compile(expression));
+        long start = System.nanoTime();
+        CompiledExpression compiled = ExpressionOptimizer.optimize(ExpressionCompiler.compile(expression));
+        metrics.recordParse(compiled, System.nanoTime() - start);
+        return compiled;
+    }
+
+    private Segment segmentFor(String expression) {
+        int hash = expression.hashCode();
+        // Spreading higher bits as only the lowest ones select the segment
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private static final class CachedExpression {
+
+        private final CompiledExpression expression;
+        private volatile Program program;
+        private volatile LongEvaluator longEvaluator;
+        private volatile ExactEvaluator exactEvaluator;
+
+        private CachedExpression(CompiledExpression expression) {
+            this.expression = expression;
+        }
+    }
+
+    /**
+     * LinkedHashMap in access order which evicts its least recently used entry once the capacity is exceeded.
+     */
+    private final class Segment extends LinkedHashMap<String, CachedExpression> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedExpression> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -2,27 +2,98 @@ package com.interview.calculator.constants;
 
 import com.interview.calculator.exception.CalculatorException;
 
+import java.util.Arrays;
+
 import static com.interview.calculator.constants.Constants.INVALID_FUNCTION;
 
 /**
- * Enum to maintain set of eligible arithmetic functions that are allowed.
+ * Enum to maintain set of eligible arithmetic functions that are allowed, along with their number of arguments.
+ * add, mult, min and max take any number of arguments (at least 2), reduced from left to right.
+ * if(condition, value, otherwise) is value if condition isn't 0, otherwise otherwise, only one of them being evaluated.
+ * <p>
+ * Function names are looked up in a trie of their lower case letters, built once from the enum values, so a lookup
+ * costs one array access per character of the name whatever the number of functions, and never allocates.
  */
 public enum ArithmeticFunctions {
-    ADD("add"), SUB("sub"), MULT("mult"), DIV("div"), LET("let");
+    ADD("add", 2, Integer.MAX_VALUE), SUB("sub", 2, 2), MULT("mult", 2, Integer.MAX_VALUE), DIV("div", 2, 2),
+    MIN("min", 2, Integer.MAX_VALUE), MAX("max", 2, Integer.MAX_VALUE), MOD("mod", 2, 2), POW("pow", 2, 2),
+    ABS("abs", 1, 1), IF("if", 3, 3), LET("let", 3, 3);
+    private static final int LETTERS = 26;
+    // CHILDREN[node * LETTERS + letter] is the child node of the letter, 0 if none (0 is the root, never a child)
+    private static final int[] CHILDREN;
+    // Function ending at every node, null if none
+    private static final ArithmeticFunctions[] FUNCTIONS;
     private String value;
+    private int minimumArguments;
+    private int maximumArguments;
+
+    static {
+        int[] children = new int[LETTERS];
+        ArithmeticFunctions[] functions = new ArithmeticFunctions[1];
+        int nodeCount = 1;
+        for (ArithmeticFunctions function : values()) {
+            int node = 0;
+            for (int i = 0; i < function.value.length(); i++) {
+                int child = node * LETTERS + function.value.charAt(i) - 'a';
+                if (children[child] == 0) {
+                    if (nodeCount * LETTERS == children.length) {
+                        children = Arrays.copyOf(children, 2 * children.length);
+                        functions = Arrays.copyOf(functions, 2 * functions.length);
+                    }
+                    children[child] = nodeCount++;
+                }
+                node = children[child];
+            }
+            functions[node] = function;
+        }
+        CHILDREN = children;
+        FUNCTIONS = functions;
+    }
 
-    ArithmeticFunctions(String value) {
+    ArithmeticFunctions(String value, int minimumArguments, int maximumArguments) {
         this.value = value;
+        this.minimumArguments = minimumArguments;
+        this.maximumArguments = maximumArguments;
     }
 
     public String getValue() {
         return value;
     }
 
+    public int getMinimumArguments() {
+        return minimumArguments;
+    }
+
+    public int getMaximumArguments() {
+        return maximumArguments;
+    }
+
     public static ArithmeticFunctions getEnum(String value) throws CalculatorException {
-        for (ArithmeticFunctions function : values())
-            if (function.getValue().equalsIgnoreCase(value))
-                return function;
-        throw new CalculatorException(INVALID_FUNCTION);
+        ArithmeticFunctions function = value == null ? null : lookup(value, 0, value.length());
+        if (function == null)
+            throw new CalculatorException(INVALID_FUNCTION);
+        return function;
+    }
+
+    /**
+     * Finds the function named by the given characters, ignoring case.
+     *
+     * @param name
+     * @param start : index of the first character of the name
+     * @param end   : index after the last character of the name
+     * @return the function, null if there is no function with that name
+     */
+    public static ArithmeticFunctions lookup(CharSequence name, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            int letter = (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c) - 'a';
+            if (letter < 0 || letter >= LETTERS)
+                return null;
+            node = CHILDREN[node * LETTERS + letter];
+            if (node == 0)
+                return null;
+        }
+        return FUNCTIONS[node];
     }
 }
@@ -14,10 +14,22 @@ public interface Constants {
     String INVALID_FUNCTION = "Invalid Function";
     String DIVIDE_BY_ZERO = "Can't divide by zero";
     String OUT_OF_RANGE = "Out of range";
+    String MISSING_PARAMETER = "Missing parameter value";
+    String INVALID_FORMAT = "Invalid Format";
+    String TOO_DEEP = "Expression too deep";
+    String LINE_TOO_LONG = "Line too long";
     /**
      * Expression Constants
      */
     Character OPEN_BRACKET = '(';
     Character CLOSE_BRACKET = ')';
     Character COMMA = ',';
+    /**
+     * Command line options
+     */
+    String STREAM_OPTION = "--stream";
+    String SERVER_OPTION = "--server";
+    String LOAD_TEST_OPTION = "--load-test";
+    String MODE_OPTION = "--mode";
+    String PRINT_OPTION = "--print";
 }
@@ -0,0 +1,13 @@
+package com.interview.calculator.constants;
+
+/**
+ * Enum to state how an expression string is read :
+ * - LEGACY : same results as the original character by character parser. A variable assigned by a let expression and
+ * written as the last operand of sub or div is its first operand (let(a, 2, sub(5, a)) is 2 - 5), and numbers whose
+ * float value rounds to Integer.MAX_VALUE (2147483584 and above) are out of range. Parameters, which that parser
+ * doesn't have, keep their order.
+ * - STANDARD : operands are always in the order they are written, and every number below Integer.MAX_VALUE is in range.
+ */
+public enum Dialect {
+    LEGACY, STANDARD
+}
@@ -0,0 +1,22 @@
+package com.interview.calculator.constants;
+
+import com.interview.calculator.exception.CalculatorException;
+
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
+
+/**
+ * Enum to state the arithmetic used to evaluate expressions :
+ * - FLOAT : single precision floating point, fastest, exact up to 2^24 only.
+ * - LONG : 64 bit integers, division truncates towards zero and overflow is an error.
+ * - EXACT : arbitrary precision decimals, divisions are rounded to 34 digits.
+ */
+public enum NumericMode {
+    FLOAT, LONG, EXACT;
+
+    public static NumericMode getEnum(String value) throws CalculatorException {
+        for (NumericMode mode : values())
+            if (mode.name().equalsIgnoreCase(value))
+                return mode;
+        throw new CalculatorException(INVALID_ARGUMENTS);
+    }
+}
@@ -2,29 +2,175 @@ package com.interview.calculator.controller;
 
 import ch.qos.logback.classic.Logger;
 import com.interview.calculator.constants.LogLevel;
+import com.interview.calculator.constants.NumericMode;
 import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.metrics.CalculatorMetrics;
 import com.interview.calculator.parser.ExpressionParser;
+import com.interview.calculator.server.CalculatorServer;
+import com.interview.calculator.server.LoadGenerator;
+import com.interview.calculator.stream.ExpressionStreamProcessor;
 import com.interview.calculator.util.LoggingUtil;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import static com.interview.calculator.constants.Constants.*;
 
 /**
  * Main Controller class to start the execution.
  * Main class to accept user parameters and evaluate the value of the expression
+ * <p>
+ * The result of the expression is logged at info level. With the --print option it is printed on standard output
+ * instead, and logging is only initialized when a log level is given or a warning is logged, so that a single
+ * evaluation doesn't wait for the logging configuration to be loaded.
+ * <p>
+ * With the --mode option (float, long or exact) followed by the expression, the expression is evaluated with 64 bit
+ * integers or arbitrary precision decimals instead of float.
+ * With the --stream option, expressions are read line by line from a file (or standard input if no file or "-" is
+ * given) and one result per line is written to standard output.
+ * With the --server option, a long running server evaluates expressions sent over a local socket, and --load-test
+ * measures its latency.
  */
 public class MainController {
 
-    private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(MainController.class);
+    private static final String STDIN = "-";
+    private static final int BUFFER_SIZE = 1 << 16;
 
-    public static void main(String[] args) throws CalculatorException {
+    public static void main(String[] args) throws CalculatorException, IOException {
+        if (null != args && args.length > 0) {
+            if (STREAM_OPTION.equals(args[0])) {
+                stream(args);
+                return;
+            } else if (SERVER_OPTION.equals(args[0])) {
+                serve(args);
+                return;
+            } else if (LOAD_TEST_OPTION.equals(args[0])) {
+                loadTest(args);
+                return;
+            }
+        }
+        boolean print = false;
+        if (null != args && args.length > 0 && PRINT_OPTION.equals(args[0])) {
+            print = true;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        NumericMode mode = NumericMode.FLOAT;
+        if (null != args && args.length > 1 && MODE_OPTION.equals(args[0])) {
+            mode = NumericMode.getEnum(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
         //Validate arguments
         validateArguments(args);
         String expression = args[0];
         ExpressionParser expressionParser = new ExpressionParser(expression);
-        LOGGER.info("Result of the expression : {} is : {}", expression, expressionParser.getResult());
+        Number result = expressionParser.getResult(mode);
+        if (print)
+            System.out.println(result);
+        else
+            LoggerHolder.LOGGER.info("Result of the expression : {} is : {}", expression, result);
+    }
+
+    /**
+     * Evaluates expressions line by line from the file given as second argument, or standard input.
+     * Logging is turned off unless a log level is given as third argument, so that standard output only has results.
+     *
+     * @param args
+     * @throws CalculatorException
+     * @throws IOException
+     */
+    private static void stream(String[] args) throws CalculatorException, IOException {
+        if (args.length > 2) {
+            setLogLevel(args[2]);
+        } else {
+            LoggingUtil.setApplicationLogLevel(LogLevel.OFF.name());
+        }
+        String file = args.length > 1 ? args[1] : STDIN;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try (BufferedReader reader = STDIN.equals(file)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE)
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            long count = new ExpressionStreamProcessor().process(reader, writer);
+            LoggerHolder.LOGGER.info("Evaluated {} expressions from : {}", count, file);
+        }
+    }
+
+    /**
+     * Starts the calculator server on the port given as second argument, and an optional log level as third argument.
+     * The server keeps running until the JVM is stopped.
+     * Metrics are available through JMX, and also logged every calculator.metrics.period seconds when started with
+     * -Dcalculator.metrics=true.
+     *
+     * @param args
+     * @throws CalculatorException
+     * @throws IOException
+     */
+    private static void serve(String[] args) throws CalculatorException, IOException {
+        int port = args.length > 1 ? parseNumber(args[1]) : CalculatorServer.DEFAULT_PORT;
+        if (args.length > 2)
+            setLogLevel(args[2]);
+        CalculatorMetrics metrics = CalculatorMetrics.getDefault();
+        metrics.registerMBean();
+        if (metrics.isEnabled())
+            metrics.startReporting(Long.getLong("calculator.metrics.period", 60), TimeUnit.SECONDS);
+        CalculatorServer server = new CalculatorServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                LoggerHolder.LOGGER.warn("Unable to stop calculator server : {}", e.getMessage());
+            }
+        }));
+        server.start();
+    }
+
+    /**
+     * Runs the load generator against a local calculator server.
+     * Optional arguments : port, number of clients, requests per client and expression.
+     *
+     * @param args
+     * @throws CalculatorException
+     * @throws IOException
+     */
+    private static void loadTest(String[] args) throws CalculatorException, IOException {
+        int port = args.length > 1 ? parseNumber(args[1]) : CalculatorServer.DEFAULT_PORT;
+        int clients = args.length > 2 ? parseNumber(args[2]) : Runtime.getRuntime().availableProcessors();
+        int requests = args.length > 3 ? parseNumber(args[3]) : 10_000;
+        String expression = args.length > 4 ? args[4] : "let(a, 5, let(b, mult(a, 10), add(b,a)))";
+        if (clients <= 0 || requests <= 0)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        try {
+            LoadGenerator.Report report = new LoadGenerator("localhost", port, clients, requests, expression).run();
+            LoggerHolder.LOGGER.info("Load test of {} clients : {}", clients, report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int parseNumber(String value) throws CalculatorException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        }
+    }
+
+    private static void setLogLevel(String logLevel) throws CalculatorException {
+        if (LoggingUtil.isSupported(logLevel)) {
+            LoggingUtil.setApplicationLogLevel(logLevel);
+        } else {
+            LoggerHolder.LOGGER.warn("Supported log levels are : {}", Arrays.toString(LogLevel.values()));
+            throw new CalculatorException(INVALID_LOG_LEVEL);
+        }
     }
 
     /**
@@ -35,18 +181,19 @@ public class MainController {
      */
     private static void validateArguments(String[] args) throws CalculatorException {
         if (null == args || args.length == 0) {
-            LOGGER.warn("Proper usage: java -jar calculator-1.0-jar-with-dependencies.jar <EXPRESSION> [OPTIONAL-LOG-LEVEL]");
+            LoggerHolder.LOGGER.warn("Proper usage: java -jar calculator-1.0-jar-with-dependencies.jar [--print] [--mode float|long|exact] <EXPRESSION> [OPTIONAL-LOG-LEVEL]"
+                    + " or --stream [FILE] [OPTIONAL-LOG-LEVEL] or --server [PORT] [OPTIONAL-LOG-LEVEL]"
+                    + " or --load-test [PORT] [CLIENTS] [REQUESTS] [EXPRESSION]");
             throw new CalculatorException(INVALID_ARGUMENTS);
         }
         // If a log-level is specified, extract it from arguments.
         if (args.length > 1) {
-            String logLevel = args[1];
-            if (LoggingUtil.isSupported(logLevel)) {
-                LoggingUtil.setApplicationLogLevel(logLevel);
-            } else {
-                LOGGER.warn("Supported log levels are : {}", Arrays.toString(LogLevel.values()));
-                throw new CalculatorException(INVALID_LOG_LEVEL);
-            }
+            setLogLevel(args[1]);
         }
     }
+
+    // Initialized on first use, a printed evaluation without log level doesn't initialize logging
+    private static final class LoggerHolder {
+        private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(MainController.class);
+    }
 }
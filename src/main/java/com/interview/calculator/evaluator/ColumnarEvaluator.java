@@ -0,0 +1,532 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static com.interview.calculator.constants.Constants.*;
+
+/**
+ * Evaluates an expression over whole columns of parameter values at once.
+ * <p>
+ * Approach : The expression tree is compiled once into a list of column instructions, each one applying a single
+ * function to registers of a block of rows :
+ * - every parameter column and function result gets a register (a float array of one block of rows).
+ * - literals don't get a register, they stay in the constant pool and a function applies a constant right operand to
+ * every row as a scalar. A constant left operand is swapped to the right for commutative functions, otherwise (and for
+ * abs or an expression which is only a constant) it's filled into a temporary register for every block.
+ * - a let expression doesn't copy anything, variables assigned by it read the register or constant of its value
+ * expression.
+ * - registers of function results are reused once the enclosing function has consumed them.
+ * - functions of more than 2 operands are a chain of binary instructions.
+ * The tree is walked with an explicit stack, so that deep expressions don't overflow the thread stack.
+ * <p>
+ * Rows are then processed block by block, running every instruction as a tight loop over the block, which the JIT
+ * compiler can unroll and vectorize. Blocks can be split across cores with {@link #evaluateParallel(Map)}. The
+ * registers of a block are the parameter columns, the values of let expressions and the function results still to be
+ * consumed, so they only stay in the CPU cache for expressions with few of them. If any row divides by zero, the whole
+ * evaluation throws.
+ * <p>
+ * As every instruction runs for every row, if expressions and custom functions aren't supported.
+ */
+public final class ColumnarEvaluator {
+
+    static final int BLOCK_SIZE = 1024;
+    // Blocks per parallel task, so that a task amortizes the allocation of its registers
+    private static final int BLOCKS_PER_TASK = 16;
+
+    private static final int CONSTANT = 0;
+    private static final int COLUMN = 1;
+    private static final int ADD = 2;
+    private static final int SUB = 3;
+    private static final int MULT = 4;
+    private static final int DIV = 5;
+    private static final int MIN = 6;
+    private static final int MAX = 7;
+    private static final int MOD = 8;
+    private static final int POW = 9;
+    private static final int ABS = 10;
+    // Flag of a binary instruction whose right operand is a constant index instead of a register
+    private static final int SCALAR = 16;
+
+    private final String[] parameters;
+    // Instructions of 4 ints : operation, target register, operands (registers, column index or constant index)
+    private final int[] code;
+    private final float[] constants;
+    private final int registerCount;
+    private final int resultRegister;
+
+    public ColumnarEvaluator(CompiledExpression expression) {
+        this.parameters = expression.getParameters();
+        Builder builder = new Builder(expression);
+        this.resultRegister = builder.build(expression.getRoot());
+        this.code = builder.code.stream().mapToInt(Integer::intValue).toArray();
+        this.constants = new float[builder.constants.size()];
+        for (int i = 0; i < constants.length; i++)
+            constants[i] = builder.constants.get(i);
+        this.registerCount = builder.registerCount;
+    }
+
+    /**
+     * Names of the parameters, each one should have a column when evaluating.
+     *
+     * @return
+     */
+    public String[] getParameters() {
+        return parameters.clone();
+    }
+
+    int getRegisterCount() {
+        return registerCount;
+    }
+
+    /**
+     * Evaluates the expression for every row of the columns, in the calling thread.
+     *
+     * @param columns : float[] or int[] column of every parameter, by name, all of the same length
+     * @return value of the expression for every row
+     * @throws CalculatorException if a column is missing or columns have different lengths
+     */
+    public float[] evaluate(Map<String, ?> columns) throws CalculatorException {
+        Object[] inputs = columnsOf(columns);
+        int rowCount = rowCount(inputs, columns);
+        float[] result = new float[rowCount];
+        evaluate(inputs, result, 0, rowCount, new float[registerCount][BLOCK_SIZE]);
+        return result;
+    }
+
+    /**
+     * Evaluates the expression for every row of the columns, splitting rows across the common fork-join pool.
+     *
+     * @param columns : float[] or int[] column of every parameter, by name, all of the same length
+     * @return value of the expression for every row
+     * @throws CalculatorException if a column is missing or columns have different lengths
+     */
+    public float[] evaluateParallel(Map<String, ?> columns) throws CalculatorException {
+        Object[] inputs = columnsOf(columns);
+        int rowCount = rowCount(inputs, columns);
+        float[] result = new float[rowCount];
+        int taskSize = BLOCK_SIZE * BLOCKS_PER_TASK;
+        int taskCount = (rowCount + taskSize - 1) / taskSize;
+        IntStream.range(0, taskCount).parallel().forEach(task -> {
+            int from = task * taskSize;
+            evaluate(inputs, result, from, Math.min(rowCount, from + taskSize), new float[registerCount][BLOCK_SIZE]);
+        });
+        return result;
+    }
+
+    private void evaluate(Object[] inputs, float[] result, int from, int to, float[][] registers) {
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, to - start);
+            for (int pc = 0; pc < code.length; pc += 4) {
+                float[] target = registers[code[pc + 1]];
+                switch (code[pc]) {
+                    case CONSTANT:
+                        Arrays.fill(target, 0, length, constants[code[pc + 2]]);
+                        break;
+                    case COLUMN:
+                        load(inputs[code[pc + 2]], start, target, length);
+                        break;
+                    case ADD:
+                        add(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case SUB:
+                        sub(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case MULT:
+                        mult(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case DIV:
+                        div(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case MIN:
+                        min(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case MAX:
+                        max(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case MOD:
+                        mod(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case POW:
+                        pow(registers[code[pc + 2]], registers[code[pc + 3]], target, length);
+                        break;
+                    case ABS:
+                        abs(registers[code[pc + 2]], target, length);
+                        break;
+                    case ADD | SCALAR:
+                        add(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case SUB | SCALAR:
+                        sub(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case MULT | SCALAR:
+                        mult(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case DIV | SCALAR:
+                        div(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case MIN | SCALAR:
+                        min(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case MAX | SCALAR:
+                        max(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case MOD | SCALAR:
+                        mod(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    case POW | SCALAR:
+                        pow(registers[code[pc + 2]], constants[code[pc + 3]], target, length);
+                        break;
+                    default:
+                        throw new IllegalStateException("Invalid instruction " + code[pc]);
+                }
+            }
+            System.arraycopy(registers[resultRegister], 0, result, start, length);
+        }
+    }
+
+    private static void load(Object column, int start, float[] target, int length) {
+        if (column instanceof float[]) {
+            System.arraycopy(column, start, target, 0, length);
+        } else {
+            int[] values = (int[]) column;
+            for (int i = 0; i < length; i++)
+                target[i] = values[start + i];
+        }
+    }
+
+    private static void add(float[] left, float[] right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] + right[i];
+    }
+
+    private static void sub(float[] left, float[] right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] - right[i];
+    }
+
+    private static void mult(float[] left, float[] right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] * right[i];
+    }
+
+    private static void div(float[] left, float[] right, float[] target, int length) {
+        // Checking divisors in a separate loop, keeping the division loop free of branches
+        boolean zero = false;
+        for (int i = 0; i < length; i++)
+            zero |= right[i] == 0;
+        if (zero)
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] / right[i];
+    }
+
+    private static void min(float[] left, float[] right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = Math.min(left[i], right[i]);
+    }
+
+    private static void max(float[] left, float[] right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = Math.max(left[i], right[i]);
+    }
+
+    private static void mod(float[] left, float[] right, float[] target, int length) {
+        boolean zero = false;
+        for (int i = 0; i < length; i++)
+            zero |= right[i] == 0;
+        if (zero)
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] % right[i];
+    }
+
+    private static void pow(float[] left, float[] right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = (float) Math.pow(left[i], right[i]);
+    }
+
+    private static void abs(float[] operand, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = Math.abs(operand[i]);
+    }
+
+    private static void add(float[] left, float right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] + right;
+    }
+
+    private static void sub(float[] left, float right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] - right;
+    }
+
+    private static void mult(float[] left, float right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] * right;
+    }
+
+    private static void div(float[] left, float right, float[] target, int length) {
+        if (right == 0)
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] / right;
+    }
+
+    private static void min(float[] left, float right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = Math.min(left[i], right);
+    }
+
+    private static void max(float[] left, float right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = Math.max(left[i], right);
+    }
+
+    private static void mod(float[] left, float right, float[] target, int length) {
+        if (right == 0)
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        for (int i = 0; i < length; i++)
+            target[i] = left[i] % right;
+    }
+
+    private static void pow(float[] left, float right, float[] target, int length) {
+        for (int i = 0; i < length; i++)
+            target[i] = (float) Math.pow(left[i], right);
+    }
+
+    private Object[] columnsOf(Map<String, ?> columns) throws CalculatorException {
+        Object[] inputs = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Object column = columns.get(parameters[i]);
+            if (column == null)
+                throw new CalculatorException(MISSING_PARAMETER);
+            if (!(column instanceof float[] || column instanceof int[]))
+                throw new CalculatorException(INVALID_ARGUMENTS);
+            inputs[i] = column;
+        }
+        return inputs;
+    }
+
+    /**
+     * Number of rows of the parameter columns, or of any column if the expression has no parameters.
+     */
+    private static int rowCount(Object[] inputs, Map<String, ?> columns) throws CalculatorException {
+        Object[] sized = inputs.length > 0 ? inputs : columns.values().toArray();
+        if (sized.length == 0)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        int rowCount = length(sized[0]);
+        for (Object column : sized)
+            if (length(column) != rowCount)
+                throw new CalculatorException(INVALID_ARGUMENTS);
+        return rowCount;
+    }
+
+    private static int length(Object column) throws CalculatorException {
+        if (column instanceof float[])
+            return ((float[]) column).length;
+        if (column instanceof int[])
+            return ((int[]) column).length;
+        throw new CalculatorException(INVALID_ARGUMENTS);
+    }
+
+    /**
+     * Appends the instructions of every node, keeping the operand holding the value of every node on a stack of
+     * results : a register, or the constant index i of a literal as -1 - i.
+     * <p>
+     * Nodes still to append are kept on an explicit stack along with the steps to run once the registers of the
+     * arguments before them are known, as in {@link Instructions}, so that deep trees don't overflow the thread stack.
+     */
+    private static final class Builder {
+
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Float> constants = new ArrayList<>();
+        // Operands holding the current value of every variable slot
+        private final int[] slotRegisters;
+        // Registers of columns and variables are never reused
+        private boolean[] pinned;
+        private final Deque<Integer> free = new ArrayDeque<>();
+        private final Deque<Integer> results = new ArrayDeque<>();
+        private int registerCount;
+
+        private Builder(CompiledExpression expression) {
+            this.slotRegisters = new int[expression.getSymbolCount()];
+            this.pinned = new boolean[2 * expression.getSymbolCount() + 1];
+            int[] parameterSlots = expression.getParameterSlots();
+            for (int i = 0; i < parameterSlots.length; i++) {
+                int register = allocate(true);
+                slotRegisters[parameterSlots[i]] = register;
+                emit(COLUMN, register, i, 0);
+            }
+        }
+
+        /**
+         * Appends the instructions of the tree.
+         *
+         * @param root
+         * @return register holding the value of the tree
+         */
+        private int build(Expression root) {
+            Deque<Object> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next instanceof Runnable) {
+                    ((Runnable) next).run();
+                } else if (next instanceof Literal) {
+                    constants.add(((Literal) next).getValue());
+                    results.push(-constants.size());
+                } else if (next instanceof VariableReference) {
+                    results.push(slotRegisters[((VariableReference) next).getSlot()]);
+                } else if (next instanceof Operation) {
+                    pushOperation(pending, (Operation) next);
+                } else if (next instanceof LetBinding) {
+                    LetBinding let = (LetBinding) next;
+                    pending.push(let.getBody());
+                    pending.push((Runnable) () -> {
+                        int value = results.pop();
+                        // Value stays readable by the variable for the rest of the expression
+                        if (value >= 0)
+                            pinned[value] = true;
+                        slotRegisters[let.getSlot()] = value;
+                    });
+                    pending.push(let.getValue());
+                } else if (next instanceof Conditional) {
+                    throw new IllegalArgumentException("Unsupported function " + ArithmeticFunctions.IF);
+                } else {
+                    throw new IllegalArgumentException("Unsupported function " + ((FunctionCall) next).getFunction());
+                }
+            }
+            return register(results.pop());
+        }
+
+        private void pushOperation(Deque<Object> pending, Operation operation) {
+            if (operation.getOperandCount() == 1) {
+                if (operation.getFunction() != ArithmeticFunctions.ABS)
+                    throw new IllegalArgumentException("Unsupported function " + operation.getFunction());
+                pending.push((Runnable) () -> {
+                    int operand = register(results.pop());
+                    release(operand);
+                    int register = allocate(false);
+                    emit(ABS, register, operand, 0);
+                    results.push(register);
+                });
+                pending.push(operation.getOperand(0));
+                return;
+            }
+            int instruction = instructionOf(operation.getFunction());
+            for (int i = operation.getOperandCount() - 1; i > 0; i--) {
+                pending.push((Runnable) () -> {
+                    int right = results.pop();
+                    int left = results.pop();
+                    results.push(binary(instruction, left, right));
+                });
+                pending.push(operation.getOperand(i));
+            }
+            pending.push(operation.getOperand(0));
+        }
+
+        /**
+         * Appends a binary instruction, with a scalar right operand if it's a constant.
+         *
+         * @param instruction
+         * @param left
+         * @param right
+         * @return register holding the result
+         */
+        private int binary(int instruction, int left, int right) {
+            if (left < 0 && right >= 0 && isCommutative(instruction)) {
+                int constant = left;
+                left = right;
+                right = constant;
+            }
+            left = register(left);
+            release(left);
+            if (right >= 0)
+                release(right);
+            int register = allocate(false);
+            if (right < 0)
+                emit(instruction | SCALAR, register, left, -1 - right);
+            else
+                emit(instruction, register, left, right);
+            return register;
+        }
+
+        /**
+         * Register holding the value of the operand, a temporary register filled with the constant for a literal.
+         *
+         * @param operand
+         * @return
+         */
+        private int register(int operand) {
+            if (operand >= 0)
+                return operand;
+            int register = allocate(false);
+            emit(CONSTANT, register, -1 - operand, 0);
+            return register;
+        }
+
+        private static boolean isCommutative(int instruction) {
+            return instruction == ADD || instruction == MULT || instruction == MIN || instruction == MAX;
+        }
+
+        private static int instructionOf(ArithmeticFunctions function) {
+            switch (function) {
+                case ADD:
+                    return ADD;
+                case SUB:
+                    return SUB;
+                case MULT:
+                    return MULT;
+                case DIV:
+                    return DIV;
+                case MIN:
+                    return MIN;
+                case MAX:
+                    return MAX;
+                case MOD:
+                    return MOD;
+                case POW:
+                    return POW;
+                default:
+                    throw new IllegalArgumentException("Unsupported function " + function);
+            }
+        }
+
+        private int allocate(boolean pin) {
+            int register = free.isEmpty() || pin ? registerCount++ : free.pop();
+            if (register >= pinned.length)
+                pinned = Arrays.copyOf(pinned, 2 * register + 1);
+            pinned[register] = pin;
+            return register;
+        }
+
+        private void release(int register) {
+            if (!pinned[register])
+                free.push(register);
+        }
+
+        private void emit(int operation, int target, int operand1, int operand2) {
+            code.add(operation);
+            code.add(target);
+            code.add(operand1);
+            code.add(operand2);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.interview.calculator.evaluator;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Reusable scratch memory (operand stack, variable slots and arguments of custom functions) for evaluating
+ * {@link Program}s, and the operand stack and variable slots of {@link LongEvaluator}s and {@link ExactEvaluator}s.
+ * <p>
+ * Arrays only grow when a program needs a deeper stack or more variables than any program evaluated before, so once
+ * warmed up the evaluations don't allocate at all. A context is not thread safe, every thread should use its own.
+ */
+public final class EvaluationContext {
+
+    private static final int INITIAL_SIZE = 16;
+
+    private float[] stack;
+    private float[] slots;
+    // Arguments of custom function calls indexed by their number, as a function expects an array of its arguments only
+    private float[][] arguments = new float[INITIAL_SIZE][];
+    // Arrays of the other arithmetics are only allocated by the first evaluation using them
+    private long[] longStack = new long[0];
+    private long[] longSlots = new long[0];
+    private BigDecimal[] decimalStack = new BigDecimal[0];
+    private BigDecimal[] decimalSlots = new BigDecimal[0];
+
+    public EvaluationContext() {
+        this.stack = new float[INITIAL_SIZE];
+        this.slots = new float[INITIAL_SIZE];
+    }
+
+    float[] stack(int size) {
+        if (stack.length < size)
+            stack = new float[Math.max(size, 2 * stack.length)];
+        return stack;
+    }
+
+    float[] slots(int size) {
+        if (slots.length < size)
+            slots = new float[Math.max(size, 2 * slots.length)];
+        return slots;
+    }
+
+    float[] arguments(int count) {
+        if (arguments.length <= count)
+            arguments = Arrays.copyOf(arguments, Math.max(count + 1, 2 * arguments.length));
+        float[] values = arguments[count];
+        if (values == null) {
+            values = new float[count];
+            arguments[count] = values;
+        }
+        return values;
+    }
+
+    long[] longStack(int size) {
+        if (longStack.length < size)
+            longStack = new long[Math.max(size, INITIAL_SIZE)];
+        return longStack;
+    }
+
+    long[] longSlots(int size) {
+        if (longSlots.length < size)
+            longSlots = new long[Math.max(size, INITIAL_SIZE)];
+        return longSlots;
+    }
+
+    BigDecimal[] decimalStack(int size) {
+        if (decimalStack.length < size)
+            decimalStack = new BigDecimal[Math.max(size, INITIAL_SIZE)];
+        return decimalStack;
+    }
+
+    BigDecimal[] decimalSlots(int size) {
+        if (decimalSlots.length < size)
+            decimalSlots = new BigDecimal[Math.max(size, INITIAL_SIZE)];
+        return decimalSlots;
+    }
+}
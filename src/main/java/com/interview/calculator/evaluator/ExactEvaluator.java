@@ -0,0 +1,280 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Literal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+import static com.interview.calculator.constants.Constants.*;
+import static com.interview.calculator.evaluator.Instructions.*;
+
+/**
+ * Evaluates a compiled expression with arbitrary precision decimals, e.g. for financial formulas.
+ * <p>
+ * Approach : As for {@link LongEvaluator}, the instructions of {@link Instructions} are run in a single loop, over a
+ * BigDecimal[] operand stack and slots. add, sub and mult are exact whatever the size of the values, div is rounded to
+ * 34 significant digits ({@link MathContext#DECIMAL128}) as decimals like 1/3 have no exact representation. min, max,
+ * mod and abs are exact, pow is exact for an integer exponent up to {@link #MAXIMUM_EXPONENT} and rounded like div for
+ * a negative one, other exponents being out of range. Expressions calling custom functions (which work on floats) are
+ * rejected.
+ * <p>
+ * As a few nested mult or pow could otherwise take minutes and an unbounded amount of memory, a result of more than
+ * about {@link #MAXIMUM_DIGITS} digits (the bit length of its unscaled value) or with a scale beyond that many digits is
+ * out of range. mult and pow check the size of their result from the size of their operands before computing it.
+ * <p>
+ * Every operation allocates its result, so this evaluator is meant for expressions needing exact results, the float and
+ * long evaluators stay allocation free. The stack and slots taken from an {@link EvaluationContext} are cleared after
+ * every evaluation, so that the context doesn't keep large values alive. Literals must have their exact integer value,
+ * so the expression should be compiled by {@link com.interview.calculator.parser.ExpressionCompiler} without being
+ * optimized.
+ */
+public final class ExactEvaluator {
+
+    public static final MathContext DIVISION_CONTEXT = MathContext.DECIMAL128;
+    // Larger powers would take an unbounded amount of memory to be exact
+    public static final int MAXIMUM_EXPONENT = 9_999;
+    public static final int MAXIMUM_DIGITS = 20_000;
+    // Bit length of an unscaled value of MAXIMUM_DIGITS digits
+    private static final long MAXIMUM_BIT_LENGTH = (long) Math.ceil(MAXIMUM_DIGITS * Math.log(10) / Math.log(2));
+
+    private final int[] code;
+    private final BigDecimal[] constants;
+    private final int symbolCount;
+    private final int[] parameterSlots;
+    private final int maxStackDepth;
+
+    private ExactEvaluator(int[] code, BigDecimal[] constants, int symbolCount, int[] parameterSlots,
+                           int maxStackDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.symbolCount = symbolCount;
+        this.parameterSlots = parameterSlots;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * Compiles the expression for exact evaluation.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if a literal of the expression isn't an exact integer or it calls a custom function
+     */
+    public static ExactEvaluator compile(CompiledExpression expression) throws CalculatorException {
+        Instructions instructions = Instructions.compile(expression.getRoot());
+        if (instructions.functions.length > 0)
+            throw new CalculatorException(INVALID_FUNCTION);
+        BigDecimal[] constants = new BigDecimal[instructions.constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            Literal literal = instructions.constants[i];
+            if (!literal.isInteger())
+                throw new CalculatorException(INVALID_EXPRESSION);
+            constants[i] = BigDecimal.valueOf(literal.getIntegerValue());
+        }
+        return new ExactEvaluator(instructions.code, constants, expression.getSymbolCount(),
+                expression.getParameterSlots(), instructions.maxStackDepth);
+    }
+
+    /**
+     * Computes the result of the expression, allocating its stack and slots.
+     *
+     * @return
+     * @throws CalculatorException if the expression has parameters or a result is out of range
+     */
+    public BigDecimal evaluate() throws CalculatorException {
+        if (parameterSlots.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return run(new BigDecimal[maxStackDepth], new BigDecimal[symbolCount]);
+    }
+
+    /**
+     * Computes the result of the expression using the scratch memory of the given context.
+     *
+     * @param context
+     * @return
+     * @throws CalculatorException if the expression has parameters or a result is out of range
+     */
+    public BigDecimal evaluate(EvaluationContext context) throws CalculatorException {
+        if (parameterSlots.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return runCleared(context.decimalStack(maxStackDepth), context.decimalSlots(symbolCount));
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values, allocating its stack and slots.
+     *
+     * @param parameterValues : values indexed like {@link CompiledExpression#getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters or a result is out of range
+     */
+    public BigDecimal evaluate(BigDecimal[] parameterValues) throws CalculatorException {
+        BigDecimal[] slots = new BigDecimal[symbolCount];
+        copyParameters(parameterValues, slots);
+        return run(new BigDecimal[maxStackDepth], slots);
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values, using the scratch memory of the given
+     * context.
+     *
+     * @param context
+     * @param parameterValues : values indexed like {@link CompiledExpression#getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters or a result is out of range
+     */
+    public BigDecimal evaluate(EvaluationContext context, BigDecimal[] parameterValues) throws CalculatorException {
+        BigDecimal[] slots = context.decimalSlots(symbolCount);
+        try {
+            copyParameters(parameterValues, slots);
+        } catch (CalculatorException e) {
+            Arrays.fill(slots, 0, symbolCount, null);
+            throw e;
+        }
+        return runCleared(context.decimalStack(maxStackDepth), slots);
+    }
+
+    private void copyParameters(BigDecimal[] parameterValues, BigDecimal[] slots) throws CalculatorException {
+        if (parameterValues.length != parameterSlots.length)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        for (int i = 0; i < parameterSlots.length; i++) {
+            if (parameterValues[i] == null)
+                throw new CalculatorException(MISSING_PARAMETER);
+            slots[parameterSlots[i]] = parameterValues[i];
+        }
+    }
+
+    private BigDecimal runCleared(BigDecimal[] stack, BigDecimal[] slots) throws CalculatorException {
+        try {
+            return run(stack, slots);
+        } finally {
+            Arrays.fill(stack, 0, maxStackDepth, null);
+            Arrays.fill(slots, 0, symbolCount, null);
+        }
+    }
+
+    private BigDecimal run(BigDecimal[] stack, BigDecimal[] slots) throws CalculatorException {
+        int[] code = this.code;
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case PUSH:
+                    stack[++top] = constants[code[pc++]];
+                    break;
+                case LOAD:
+                    stack[++top] = slots[code[pc++]];
+                    break;
+                case STORE:
+                    slots[code[pc++]] = stack[top--];
+                    break;
+                case ADD:
+                    top--;
+                    stack[top] = checked(stack[top].add(stack[top + 1]));
+                    break;
+                case SUB:
+                    top--;
+                    stack[top] = checked(stack[top].subtract(stack[top + 1]));
+                    break;
+                case MULT:
+                    top--;
+                    stack[top] = mult(stack[top], stack[top + 1]);
+                    break;
+                case DIV:
+                    top--;
+                    stack[top] = checked(div(stack[top], stack[top + 1]));
+                    break;
+                case MIN:
+                    top--;
+                    stack[top] = stack[top].min(stack[top + 1]);
+                    break;
+                case MAX:
+                    top--;
+                    stack[top] = stack[top].max(stack[top + 1]);
+                    break;
+                case MOD:
+                    top--;
+                    stack[top] = checked(mod(stack[top], stack[top + 1]));
+                    break;
+                case POW:
+                    top--;
+                    stack[top] = pow(stack[top], stack[top + 1]);
+                    break;
+                case ABS:
+                    stack[top] = stack[top].abs();
+                    break;
+                case JUMP_IF_ZERO:
+                    if (stack[top--].signum() == 0)
+                        pc = code[pc];
+                    else
+                        pc++;
+                    break;
+                case JUMP:
+                    pc = code[pc];
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid instruction " + code[pc - 1]);
+            }
+        }
+        return stack[0];
+    }
+
+    private static BigDecimal mult(BigDecimal operand1, BigDecimal operand2) throws CalculatorException {
+        // The product has at least one bit less than its operands together
+        checkSize((long) bitLength(operand1) + bitLength(operand2) - 1, (long) operand1.scale() + operand2.scale());
+        return checked(operand1.multiply(operand2));
+    }
+
+    private static BigDecimal div(BigDecimal operand1, BigDecimal operand2) {
+        if (operand2.signum() == 0) {
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        }
+        return operand1.divide(operand2, DIVISION_CONTEXT);
+    }
+
+    private static BigDecimal mod(BigDecimal operand1, BigDecimal operand2) {
+        if (operand2.signum() == 0) {
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        }
+        return operand1.remainder(operand2);
+    }
+
+    private static BigDecimal pow(BigDecimal base, BigDecimal exponent) throws CalculatorException {
+        int n;
+        try {
+            n = exponent.intValueExact();
+        } catch (ArithmeticException e) {
+            throw new CalculatorException(OUT_OF_RANGE);
+        }
+        if (Math.abs(n) > MAXIMUM_EXPONENT)
+            throw new CalculatorException(OUT_OF_RANGE);
+        int length = bitLength(base);
+        // The power of a value of more than one bit has at least a bit more per factor
+        checkSize(length > 1 ? (long) Math.abs(n) * (length - 1) + 1 : length, (long) Math.abs(n) * base.scale());
+        if (n >= 0)
+            return checked(base.pow(n));
+        return checked(div(BigDecimal.ONE, checked(base.pow(-n))));
+    }
+
+    /**
+     * Value, if its size is in range.
+     *
+     * @param value
+     * @return
+     * @throws CalculatorException if its unscaled value or its scale is larger than {@link #MAXIMUM_DIGITS} digits
+     */
+    private static BigDecimal checked(BigDecimal value) throws CalculatorException {
+        checkSize(bitLength(value), value.scale());
+        return value;
+    }
+
+    private static void checkSize(long bitLength, long scale) throws CalculatorException {
+        if (bitLength > MAXIMUM_BIT_LENGTH || Math.abs(scale) > MAXIMUM_DIGITS)
+            throw new CalculatorException(OUT_OF_RANGE);
+    }
+
+    private static int bitLength(BigDecimal value) {
+        return value.unscaledValue().bitLength();
+    }
+}
@@ -0,0 +1,318 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
+
+/**
+ * Evaluates an expression as a dependency graph which memoizes the value of every function, so that changing one input
+ * only recomputes the functions depending on it.
+ * <p>
+ * Approach : The tree is walked once in evaluation order, with an explicit stack, and turned into a graph of numbered
+ * nodes :
+ * - literal is a constant node.
+ * - input is a node whose value is set by the caller : a parameter, or the value of a let expression assigning a literal.
+ * - arithmetic function is a node depending on the nodes of its two operands, functions of more operands are a chain of
+ * such nodes and abs a node whose two operands are the same.
+ * - variable is resolved to the node of the value last assigned to it, and let expression to the node of its body, so
+ * neither needs a node of its own.
+ * Nodes are numbered in evaluation order, so every node depends on lower numbered nodes only.
+ * <p>
+ * Setting an input queues the nodes depending on it in a min-heap of node numbers. Evaluation pops the lowest queued
+ * node, recomputes it and queues its dependents only if its value changed, so every node is recomputed at most once,
+ * after all the nodes it depends on, and the cost of an update is proportional to the number of affected nodes.
+ * <p>
+ * The expression should be compiled by {@link com.interview.calculator.parser.ExpressionCompiler} without being
+ * optimized, as the optimizer inlines the literals assigned by let expressions. If expressions and custom functions
+ * aren't supported, as the nodes a branch depends on change with the condition. Instances aren't thread safe.
+ */
+public final class IncrementalEvaluator {
+
+    private final String[] inputNames;
+    private final int[] inputNodes;
+    // Graph of nodes, an operation has a function and two operand nodes, constants and inputs have a null function
+    private final ArithmeticFunctions[] functions;
+    private final int[] leftOperands;
+    private final int[] rightOperands;
+    private final int[][] dependents;
+    private final float[] values;
+    private final int root;
+    // Min-heap of the nodes to recompute
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueSize;
+    private int recomputedCount;
+
+    /**
+     * Builds the graph of the expression, inputs are 0 until set.
+     *
+     * @param expression
+     */
+    public IncrementalEvaluator(CompiledExpression expression) {
+        Builder builder = new Builder(expression);
+        this.root = builder.build(expression.getRoot());
+        int nodeCount = builder.nodeCount;
+        this.functions = Arrays.copyOf(builder.functions, nodeCount);
+        this.leftOperands = Arrays.copyOf(builder.leftOperands, nodeCount);
+        this.rightOperands = Arrays.copyOf(builder.rightOperands, nodeCount);
+        this.values = Arrays.copyOf(builder.values, nodeCount);
+        this.inputNames = builder.inputNames.toArray(new String[0]);
+        this.inputNodes = builder.inputNodes.stream().mapToInt(Integer::intValue).toArray();
+        this.dependents = dependentsOf(functions, leftOperands, rightOperands);
+        this.queue = new int[nodeCount];
+        this.queued = new boolean[nodeCount];
+        // Every function is computed by the first evaluation
+        for (int node = 0; node < nodeCount; node++)
+            if (functions[node] != null)
+                enqueue(node);
+    }
+
+    /**
+     * Names of the inputs, in evaluation order. A name appears several times if several let expressions assign a
+     * literal to the same variable.
+     *
+     * @return
+     */
+    public String[] getInputs() {
+        return inputNames.clone();
+    }
+
+    public int getNodeCount() {
+        return values.length;
+    }
+
+    /**
+     * Sets the value of every input with the given name.
+     *
+     * @param name  : parameter or variable assigned a literal
+     * @param value
+     * @throws CalculatorException if there is no such input
+     */
+    public void set(String name, float value) throws CalculatorException {
+        boolean found = false;
+        for (int i = 0; i < inputNames.length; i++) {
+            if (inputNames[i].equals(name)) {
+                found = true;
+                int node = inputNodes[i];
+                if (Float.floatToIntBits(values[node]) != Float.floatToIntBits(value)) {
+                    values[node] = value;
+                    enqueueDependents(node);
+                }
+            }
+        }
+        if (!found)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+    }
+
+    /**
+     * Computes the result of the expression, recomputing only the functions affected by the inputs set since the last
+     * evaluation.
+     *
+     * @return
+     * @throws CalculatorException
+     */
+    public float getResult() throws CalculatorException {
+        recomputedCount = 0;
+        while (queueSize > 0) {
+            int node = queue[0];
+            // A node failing (division by zero) stays queued, so that it's computed again by the next evaluation
+            ArithmeticFunctions function = functions[node];
+            float value = function == ArithmeticFunctions.ABS ? Operation.apply(function, values[leftOperands[node]])
+                    : Operation.apply(function, values[leftOperands[node]], values[rightOperands[node]]);
+            dequeue();
+            recomputedCount++;
+            if (Float.floatToIntBits(values[node]) != Float.floatToIntBits(value)) {
+                values[node] = value;
+                enqueueDependents(node);
+            }
+        }
+        return values[root];
+    }
+
+    /**
+     * Number of functions recomputed by the last evaluation.
+     *
+     * @return
+     */
+    public int getRecomputedCount() {
+        return recomputedCount;
+    }
+
+    private static int[][] dependentsOf(ArithmeticFunctions[] functions, int[] leftOperands, int[] rightOperands) {
+        int[] counts = new int[functions.length];
+        for (int node = 0; node < functions.length; node++) {
+            if (functions[node] != null) {
+                counts[leftOperands[node]]++;
+                if (rightOperands[node] != leftOperands[node])
+                    counts[rightOperands[node]]++;
+            }
+        }
+        int[][] dependents = new int[functions.length][];
+        for (int node = 0; node < functions.length; node++)
+            dependents[node] = new int[counts[node]];
+        Arrays.fill(counts, 0);
+        for (int node = 0; node < functions.length; node++) {
+            if (functions[node] != null) {
+                dependents[leftOperands[node]][counts[leftOperands[node]]++] = node;
+                if (rightOperands[node] != leftOperands[node])
+                    dependents[rightOperands[node]][counts[rightOperands[node]]++] = node;
+            }
+        }
+        return dependents;
+    }
+
+    private void enqueueDependents(int node) {
+        for (int dependent : dependents[node])
+            enqueue(dependent);
+    }
+
+    private void enqueue(int node) {
+        if (queued[node])
+            return;
+        queued[node] = true;
+        int index = queueSize++;
+        while (index > 0 && queue[(index - 1) / 2] > node) {
+            queue[index] = queue[(index - 1) / 2];
+            index = (index - 1) / 2;
+        }
+        queue[index] = node;
+    }
+
+    private void dequeue() {
+        queued[queue[0]] = false;
+        int last = queue[--queueSize];
+        int index = 0;
+        while (2 * index + 1 < queueSize) {
+            int child = 2 * index + 1;
+            if (child + 1 < queueSize && queue[child + 1] < queue[child])
+                child++;
+            if (queue[child] >= last)
+                break;
+            queue[index] = queue[child];
+            index = child;
+        }
+        queue[index] = last;
+    }
+
+    /**
+     * Numbers the nodes in evaluation order, keeping the node of every evaluated expression on a stack of results.
+     * <p>
+     * Expressions still to number are kept on an explicit stack along with the steps to run once the nodes of the
+     * arguments before them are numbered, as in {@link Instructions}, so that deep trees don't overflow the thread stack.
+     */
+    private static final class Builder {
+
+        private final String[] symbols;
+        // Node of the value currently assigned to every variable slot
+        private final int[] slotNodes;
+        private final List<String> inputNames = new ArrayList<>();
+        private final List<Integer> inputNodes = new ArrayList<>();
+        private final Deque<Integer> results = new ArrayDeque<>();
+        private ArithmeticFunctions[] functions = new ArithmeticFunctions[16];
+        private int[] leftOperands = new int[16];
+        private int[] rightOperands = new int[16];
+        private float[] values = new float[16];
+        private int nodeCount;
+
+        private Builder(CompiledExpression expression) {
+            this.symbols = expression.getSymbols();
+            this.slotNodes = new int[symbols.length];
+            // Parameters are read before any assignment, they are the first inputs
+            for (int slot : expression.getParameterSlots())
+                slotNodes[slot] = addInput(symbols[slot], 0);
+        }
+
+        /**
+         * Numbers the nodes of the tree.
+         *
+         * @param root
+         * @return node of the value of the tree
+         */
+        private int build(Expression root) {
+            Deque<Object> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next instanceof Runnable) {
+                    ((Runnable) next).run();
+                } else if (next instanceof Literal) {
+                    results.push(addNode(null, 0, 0, ((Literal) next).getValue()));
+                } else if (next instanceof VariableReference) {
+                    results.push(slotNodes[((VariableReference) next).getSlot()]);
+                } else if (next instanceof Operation) {
+                    pushOperation(pending, (Operation) next);
+                } else if (next instanceof LetBinding) {
+                    LetBinding let = (LetBinding) next;
+                    pending.push(let.getBody());
+                    pending.push((Runnable) () -> slotNodes[let.getSlot()] = results.pop());
+                    if (let.getValue() instanceof Literal)
+                        results.push(addInput(let.getName(), ((Literal) let.getValue()).getValue()));
+                    else
+                        pending.push(let.getValue());
+                } else if (next instanceof Conditional) {
+                    throw new IllegalArgumentException("Unsupported function " + ArithmeticFunctions.IF);
+                } else {
+                    throw new IllegalArgumentException("Unsupported function " + ((FunctionCall) next).getFunction());
+                }
+            }
+            return results.pop();
+        }
+
+        private void pushOperation(Deque<Object> pending, Operation operation) {
+            ArithmeticFunctions function = operation.getFunction();
+            if (operation.getOperandCount() == 1) {
+                pending.push((Runnable) () -> {
+                    int operand = results.pop();
+                    results.push(addNode(function, operand, operand, 0));
+                });
+                pending.push(operation.getOperand(0));
+                return;
+            }
+            for (int i = operation.getOperandCount() - 1; i > 0; i--) {
+                pending.push((Runnable) () -> {
+                    int right = results.pop();
+                    int left = results.pop();
+                    results.push(addNode(function, left, right, 0));
+                });
+                pending.push(operation.getOperand(i));
+            }
+            pending.push(operation.getOperand(0));
+        }
+
+        private int addInput(String name, float value) {
+            int node = addNode(null, 0, 0, value);
+            inputNames.add(name);
+            inputNodes.add(node);
+            return node;
+        }
+
+        private int addNode(ArithmeticFunctions function, int left, int right, float value) {
+            if (nodeCount == functions.length) {
+                functions = Arrays.copyOf(functions, 2 * nodeCount);
+                leftOperands = Arrays.copyOf(leftOperands, 2 * nodeCount);
+                rightOperands = Arrays.copyOf(rightOperands, 2 * nodeCount);
+                values = Arrays.copyOf(values, 2 * nodeCount);
+            }
+            functions[nodeCount] = function;
+            leftOperands[nodeCount] = left;
+            rightOperands[nodeCount] = right;
+            values[nodeCount] = value;
+            return nodeCount++;
+        }
+    }
+}
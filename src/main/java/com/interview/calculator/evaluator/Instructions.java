@@ -0,0 +1,228 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import com.interview.calculator.function.RegisteredFunction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Postfix instruction stream of an expression tree, run by {@link Program} in float, {@link LongEvaluator} in long and
+ * {@link ExactEvaluator} in BigDecimal arithmetic.
+ * <p>
+ * Approach : The expression tree is walked once, with an explicit stack so that deep trees don't overflow the thread
+ * stack, and every node appends its instructions after the ones of its arguments :
+ * - literal pushes its value from the constant pool to the operand stack.
+ * - variable pushes the value of its slot to the operand stack.
+ * - let expression pops the value of its value expression into the variable slot.
+ * - arithmetic function pops its two operands and pushes the result, functions of more operands are a chain of binary
+ * instructions and abs is a unary instruction.
+ * - if expression jumps over the instructions of the branch which isn't selected by its condition.
+ * - custom function call pops its arguments and pushes the result, the functions called are kept in a function table.
+ * Nodes still to append are kept on the explicit stack along with the steps to run once the instructions of the
+ * arguments before them are appended : the instruction of a function, the store of a let expression, or the jumps of
+ * an if expression.
+ * <p>
+ * Literals are kept as they are in the constant pool, so that each evaluator takes the value it needs, once per
+ * distinct value.
+ */
+final class Instructions {
+
+    static final int PUSH = 0;
+    static final int LOAD = 1;
+    static final int STORE = 2;
+    static final int ADD = 3;
+    static final int SUB = 4;
+    static final int MULT = 5;
+    static final int DIV = 6;
+    static final int MIN = 7;
+    static final int MAX = 8;
+    static final int MOD = 9;
+    static final int POW = 10;
+    static final int ABS = 11;
+    static final int JUMP_IF_ZERO = 12;
+    static final int JUMP = 13;
+    static final int CALL = 14;
+
+    final int[] code;
+    final Literal[] constants;
+    final RegisteredFunction[] functions;
+    final int maxStackDepth;
+
+    private Instructions(int[] code, Literal[] constants, RegisteredFunction[] functions, int maxStackDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.functions = functions;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * Flattens the tree into instructions.
+     *
+     * @param root
+     * @return
+     */
+    static Instructions compile(Expression root) {
+        Builder builder = new Builder();
+        builder.build(root);
+        return new Instructions(Arrays.copyOf(builder.code, builder.length),
+                builder.constants.toArray(new Literal[0]), builder.functions.toArray(new RegisteredFunction[0]),
+                builder.maxStackDepth);
+    }
+
+    private static final class Builder {
+
+        private int[] code = new int[32];
+        private int length;
+        private final List<Literal> constants = new ArrayList<>();
+        // Exact integer literals by value, other literals by bits so that 0 and -0 or different NaNs are kept apart
+        private final Map<Long, Integer> integerIndexes = new HashMap<>();
+        private final Map<Integer, Integer> floatIndexes = new HashMap<>();
+        private final List<RegisteredFunction> functions = new ArrayList<>();
+        private int stackDepth;
+        private int maxStackDepth;
+
+        private void build(Expression root) {
+            Deque<Object> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Object next = pending.pop();
+                if (next instanceof Runnable) {
+                    ((Runnable) next).run();
+                } else if (next instanceof Literal) {
+                    emit(PUSH, constantIndex((Literal) next));
+                    push();
+                } else if (next instanceof VariableReference) {
+                    emit(LOAD, ((VariableReference) next).getSlot());
+                    push();
+                } else if (next instanceof Operation) {
+                    pushOperation(pending, (Operation) next);
+                } else if (next instanceof LetBinding) {
+                    LetBinding let = (LetBinding) next;
+                    pending.push(let.getBody());
+                    pending.push((Runnable) () -> {
+                        emit(STORE, let.getSlot());
+                        stackDepth--;
+                    });
+                    pending.push(let.getValue());
+                } else if (next instanceof Conditional) {
+                    pushConditional(pending, (Conditional) next);
+                } else {
+                    pushCall(pending, (FunctionCall) next);
+                }
+            }
+        }
+
+        private void pushOperation(Deque<Object> pending, Operation operation) {
+            if (operation.getOperandCount() == 1) {
+                if (operation.getFunction() != ArithmeticFunctions.ABS)
+                    throw new IllegalArgumentException("Unsupported function " + operation.getFunction());
+                pending.push((Runnable) () -> emit(ABS));
+                pending.push(operation.getOperand(0));
+                return;
+            }
+            int instruction = instructionOf(operation.getFunction());
+            for (int i = operation.getOperandCount() - 1; i > 0; i--) {
+                pending.push((Runnable) () -> {
+                    emit(instruction);
+                    stackDepth--;
+                });
+                pending.push(operation.getOperand(i));
+            }
+            pending.push(operation.getOperand(0));
+        }
+
+        private void pushConditional(Deque<Object> pending, Conditional conditional) {
+            // Indexes of the targets of the jump to the otherwise branch and of the jump to the end
+            int[] jumps = new int[2];
+            pending.push((Runnable) () -> code[jumps[1]] = length);
+            pending.push(conditional.getOtherwise());
+            pending.push((Runnable) () -> {
+                emit(JUMP, 0);
+                jumps[1] = length - 1;
+                // Only one branch is run, its value is the only one left on the stack
+                stackDepth--;
+                code[jumps[0]] = length;
+            });
+            pending.push(conditional.getValue());
+            pending.push((Runnable) () -> {
+                emit(JUMP_IF_ZERO, 0);
+                jumps[0] = length - 1;
+                stackDepth--;
+            });
+            pending.push(conditional.getCondition());
+        }
+
+        private void pushCall(Deque<Object> pending, FunctionCall call) {
+            pending.push((Runnable) () -> {
+                int index = functions.indexOf(call.getFunction());
+                if (index < 0) {
+                    index = functions.size();
+                    functions.add(call.getFunction());
+                }
+                emit(CALL, index, call.getArgumentCount());
+                stackDepth -= call.getArgumentCount() - 1;
+            });
+            for (int i = call.getArgumentCount() - 1; i >= 0; i--)
+                pending.push(call.getArgument(i));
+        }
+
+        private static int instructionOf(ArithmeticFunctions function) {
+            switch (function) {
+                case ADD:
+                    return ADD;
+                case SUB:
+                    return SUB;
+                case MULT:
+                    return MULT;
+                case DIV:
+                    return DIV;
+                case MIN:
+                    return MIN;
+                case MAX:
+                    return MAX;
+                case MOD:
+                    return MOD;
+                case POW:
+                    return POW;
+                default:
+                    throw new IllegalArgumentException("Unsupported function " + function);
+            }
+        }
+
+        private void push() {
+            stackDepth++;
+            maxStackDepth = Math.max(maxStackDepth, stackDepth);
+        }
+
+        private int constantIndex(Literal literal) {
+            if (literal.isInteger())
+                return integerIndexes.computeIfAbsent(literal.getIntegerValue(), value -> addConstant(literal));
+            return floatIndexes.computeIfAbsent(Float.floatToRawIntBits(literal.getValue()), bits -> addConstant(literal));
+        }
+
+        private int addConstant(Literal literal) {
+            constants.add(literal);
+            return constants.size() - 1;
+        }
+
+        private void emit(int... instruction) {
+            if (length + instruction.length > code.length)
+                code = Arrays.copyOf(code, Math.max(2 * code.length, length + instruction.length));
+            for (int value : instruction)
+                code[length++] = value;
+        }
+    }
+}
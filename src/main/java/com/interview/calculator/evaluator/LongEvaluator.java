@@ -0,0 +1,262 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Literal;
+
+import static com.interview.calculator.constants.Constants.*;
+import static com.interview.calculator.evaluator.Instructions.*;
+
+/**
+ * Evaluates a compiled expression with 64 bit integer arithmetic.
+ * <p>
+ * Approach : The expression tree is flattened by {@link Instructions}, without recursion, and the instructions are run
+ * in a single loop over a long[] operand stack and long[] slots, so that evaluation doesn't box values and deep
+ * expressions don't overflow the thread stack.
+ * - add, sub and mult use the exact methods of {@link Math}, an overflow is reported as OUT_OF_RANGE instead of
+ * wrapping around.
+ * - div truncates towards zero, dividing by zero throws the same ArithmeticException as the float evaluation, as does
+ * mod whose result has the sign of the dividend.
+ * - pow multiplies by squaring with exact multiplications, a negative exponent truncates the result like div.
+ * - functions of more than 2 operands are a chain of binary instructions, if runs only the branch selected by its
+ * condition.
+ * Custom functions work on floats, so expressions calling them are rejected.
+ * <p>
+ * The stack and slots are taken from an {@link EvaluationContext}, so evaluations don't allocate. Literals must have
+ * their exact integer value, so the expression should be compiled by
+ * {@link com.interview.calculator.parser.ExpressionCompiler} without being optimized (the optimizer folds in float).
+ */
+public final class LongEvaluator {
+
+    private final int[] code;
+    private final long[] constants;
+    private final int symbolCount;
+    private final int[] parameterSlots;
+    private final int maxStackDepth;
+
+    private LongEvaluator(int[] code, long[] constants, int symbolCount, int[] parameterSlots, int maxStackDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.symbolCount = symbolCount;
+        this.parameterSlots = parameterSlots;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * Compiles the expression for long evaluation.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if a literal of the expression isn't an exact integer or it calls a custom function
+     */
+    public static LongEvaluator compile(CompiledExpression expression) throws CalculatorException {
+        Instructions instructions = Instructions.compile(expression.getRoot());
+        if (instructions.functions.length > 0)
+            throw new CalculatorException(INVALID_FUNCTION);
+        long[] constants = new long[instructions.constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            Literal literal = instructions.constants[i];
+            if (!literal.isInteger())
+                throw new CalculatorException(INVALID_EXPRESSION);
+            constants[i] = literal.getIntegerValue();
+        }
+        return new LongEvaluator(instructions.code, constants, expression.getSymbolCount(), expression.getParameterSlots(),
+                instructions.maxStackDepth);
+    }
+
+    /**
+     * Computes the result of the expression, allocating its stack and slots.
+     *
+     * @return
+     * @throws CalculatorException if the expression has parameters or a result overflows
+     */
+    public long evaluate() throws CalculatorException {
+        if (parameterSlots.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return run(new long[maxStackDepth], new long[symbolCount]);
+    }
+
+    /**
+     * Computes the result of the expression using the scratch memory of the given context.
+     *
+     * @param context
+     * @return
+     * @throws CalculatorException if the expression has parameters or a result overflows
+     */
+    public long evaluate(EvaluationContext context) throws CalculatorException {
+        if (parameterSlots.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return run(context.longStack(maxStackDepth), context.longSlots(symbolCount));
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values, allocating its stack and slots.
+     *
+     * @param parameterValues : values indexed like {@link CompiledExpression#getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters or a result overflows
+     */
+    public long evaluate(long[] parameterValues) throws CalculatorException {
+        return evaluate(parameterValues, new long[maxStackDepth], new long[symbolCount]);
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values, using the scratch memory of the given
+     * context.
+     *
+     * @param context
+     * @param parameterValues : values indexed like {@link CompiledExpression#getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters or a result overflows
+     */
+    public long evaluate(EvaluationContext context, long[] parameterValues) throws CalculatorException {
+        return evaluate(parameterValues, context.longStack(maxStackDepth), context.longSlots(symbolCount));
+    }
+
+    private long evaluate(long[] parameterValues, long[] stack, long[] slots) throws CalculatorException {
+        if (parameterValues.length != parameterSlots.length)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        for (int i = 0; i < parameterSlots.length; i++)
+            slots[parameterSlots[i]] = parameterValues[i];
+        return run(stack, slots);
+    }
+
+    private long run(long[] stack, long[] slots) throws CalculatorException {
+        int[] code = this.code;
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case PUSH:
+                    stack[++top] = constants[code[pc++]];
+                    break;
+                case LOAD:
+                    stack[++top] = slots[code[pc++]];
+                    break;
+                case STORE:
+                    slots[code[pc++]] = stack[top--];
+                    break;
+                case ADD:
+                    top--;
+                    stack[top] = add(stack[top], stack[top + 1]);
+                    break;
+                case SUB:
+                    top--;
+                    stack[top] = sub(stack[top], stack[top + 1]);
+                    break;
+                case MULT:
+                    top--;
+                    stack[top] = mult(stack[top], stack[top + 1]);
+                    break;
+                case DIV:
+                    top--;
+                    stack[top] = div(stack[top], stack[top + 1]);
+                    break;
+                case MIN:
+                    top--;
+                    stack[top] = Math.min(stack[top], stack[top + 1]);
+                    break;
+                case MAX:
+                    top--;
+                    stack[top] = Math.max(stack[top], stack[top + 1]);
+                    break;
+                case MOD:
+                    top--;
+                    stack[top] = mod(stack[top], stack[top + 1]);
+                    break;
+                case POW:
+                    top--;
+                    stack[top] = pow(stack[top], stack[top + 1]);
+                    break;
+                case ABS:
+                    stack[top] = abs(stack[top]);
+                    break;
+                case JUMP_IF_ZERO:
+                    if (stack[top--] == 0)
+                        pc = code[pc];
+                    else
+                        pc++;
+                    break;
+                case JUMP:
+                    pc = code[pc];
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid instruction " + code[pc - 1]);
+            }
+        }
+        return stack[0];
+    }
+
+    private static long add(long operand1, long operand2) throws CalculatorException {
+        try {
+            return Math.addExact(operand1, operand2);
+        } catch (ArithmeticException e) {
+            throw new CalculatorException(OUT_OF_RANGE);
+        }
+    }
+
+    private static long sub(long operand1, long operand2) throws CalculatorException {
+        try {
+            return Math.subtractExact(operand1, operand2);
+        } catch (ArithmeticException e) {
+            throw new CalculatorException(OUT_OF_RANGE);
+        }
+    }
+
+    private static long mult(long operand1, long operand2) throws CalculatorException {
+        try {
+            return Math.multiplyExact(operand1, operand2);
+        } catch (ArithmeticException e) {
+            throw new CalculatorException(OUT_OF_RANGE);
+        }
+    }
+
+    private static long div(long operand1, long operand2) throws CalculatorException {
+        if (operand2 == 0) {
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        }
+        // Long.MIN_VALUE / -1 is the only overflowing division
+        if (operand1 == Long.MIN_VALUE && operand2 == -1)
+            throw new CalculatorException(OUT_OF_RANGE);
+        return operand1 / operand2;
+    }
+
+    private static long mod(long operand1, long operand2) {
+        if (operand2 == 0) {
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        }
+        return operand1 % operand2;
+    }
+
+    private static long pow(long base, long exponent) throws CalculatorException {
+        if (exponent < 0) {
+            // 1 / base^n truncated towards zero
+            if (base == 0)
+                throw new ArithmeticException(DIVIDE_BY_ZERO);
+            if (base == 1)
+                return 1;
+            if (base == -1)
+                return (exponent & 1) == 0 ? 1 : -1;
+            return 0;
+        }
+        long result = 1;
+        try {
+            while (exponent > 0) {
+                if ((exponent & 1) != 0)
+                    result = Math.multiplyExact(result, base);
+                exponent >>= 1;
+                if (exponent > 0)
+                    base = Math.multiplyExact(base, base);
+            }
+        } catch (ArithmeticException e) {
+            throw new CalculatorException(OUT_OF_RANGE);
+        }
+        return result;
+    }
+
+    private static long abs(long operand) throws CalculatorException {
+        if (operand == Long.MIN_VALUE)
+            throw new CalculatorException(OUT_OF_RANGE);
+        return Math.abs(operand);
+    }
+}
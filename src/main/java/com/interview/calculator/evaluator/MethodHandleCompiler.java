@@ -0,0 +1,213 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.ExpressionVisitor;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+
+/**
+ * Compiles an expression into a single method handle of type (float[] slots)float.
+ * <p>
+ * Approach : Every node becomes a method handle taking the variable slots, combined with method handle combinators :
+ * - literal is a constant handle ignoring the slots.
+ * - variable is an array element getter bound to its slot.
+ * - arithmetic function folds its first operand, then filters its second operand into the function, so that operands
+ * are evaluated from left to right as in the tree. Functions of more operands fold the result of the previous operands
+ * into the next one, and abs filters the value of its operand.
+ * - if expression is a guard testing whether its condition isn't 0, selecting the handle of one branch.
+ * - let expression folds an array element setter (storing its value into the slot) in front of its body.
+ * <p>
+ * The JVM spins the combined handle into generated classes, and once hot the JIT compiler inlines the whole expression
+ * into one compiled method without any virtual call per node. Only JDK facilities are used. Custom functions aren't
+ * compiled, as they may throw checked exceptions. Combined handles nest as deep as the tree, both when they are built and
+ * invoked, so expressions nested deeper than {@link CompiledExpression#MAXIMUM_RECURSIVE_DEPTH} aren't compiled either.
+ */
+public final class MethodHandleCompiler {
+
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(float.class, float.class, float.class);
+    private static final MethodHandle ADD;
+    private static final MethodHandle SUB;
+    private static final MethodHandle MULT;
+    private static final MethodHandle DIV;
+    private static final MethodHandle MIN;
+    private static final MethodHandle MAX;
+    private static final MethodHandle MOD;
+    private static final MethodHandle POW;
+    private static final MethodHandle ABS;
+    private static final MethodHandle NONZERO;
+    private static final MethodHandle GET = MethodHandles.arrayElementGetter(float[].class);
+    private static final MethodHandle SET = MethodHandles.arrayElementSetter(float[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ADD = lookup.findStatic(MethodHandleCompiler.class, "add", FUNCTION_TYPE);
+            SUB = lookup.findStatic(MethodHandleCompiler.class, "sub", FUNCTION_TYPE);
+            MULT = lookup.findStatic(MethodHandleCompiler.class, "mult", FUNCTION_TYPE);
+            DIV = lookup.findStatic(MethodHandleCompiler.class, "div", FUNCTION_TYPE);
+            MIN = lookup.findStatic(MethodHandleCompiler.class, "min", FUNCTION_TYPE);
+            MAX = lookup.findStatic(MethodHandleCompiler.class, "max", FUNCTION_TYPE);
+            MOD = lookup.findStatic(MethodHandleCompiler.class, "mod", FUNCTION_TYPE);
+            POW = lookup.findStatic(MethodHandleCompiler.class, "pow", FUNCTION_TYPE);
+            ABS = lookup.findStatic(MethodHandleCompiler.class, "abs", MethodType.methodType(float.class, float.class));
+            NONZERO = lookup.findStatic(MethodHandleCompiler.class, "nonzero", MethodType.methodType(boolean.class, float.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MethodHandleCompiler() {
+    }
+
+    /**
+     * Compiles the expression.
+     *
+     * @param expression
+     * @return method handle of type (float[])float evaluating the expression over the variable slots
+     * @throws IllegalArgumentException if the expression calls a custom function or is nested deeper than
+     *                                  {@link CompiledExpression#MAXIMUM_RECURSIVE_DEPTH}
+     */
+    public static MethodHandle compile(CompiledExpression expression) {
+        if (expression.getDepth() > CompiledExpression.MAXIMUM_RECURSIVE_DEPTH)
+            throw new IllegalArgumentException("Unsupported expression depth " + expression.getDepth());
+        return expression.getRoot().accept(new Builder());
+    }
+
+    private static float add(float operand1, float operand2) {
+        return operand1 + operand2;
+    }
+
+    private static float sub(float operand1, float operand2) {
+        return operand1 - operand2;
+    }
+
+    private static float mult(float operand1, float operand2) {
+        return operand1 * operand2;
+    }
+
+    private static float div(float operand1, float operand2) {
+        if (operand2 == 0) {
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        }
+        return operand1 / operand2;
+    }
+
+    private static float min(float operand1, float operand2) {
+        return Math.min(operand1, operand2);
+    }
+
+    private static float max(float operand1, float operand2) {
+        return Math.max(operand1, operand2);
+    }
+
+    private static float mod(float operand1, float operand2) {
+        if (operand2 == 0) {
+            throw new ArithmeticException(DIVIDE_BY_ZERO);
+        }
+        return operand1 % operand2;
+    }
+
+    private static float pow(float operand1, float operand2) {
+        return (float) Math.pow(operand1, operand2);
+    }
+
+    private static float abs(float operand) {
+        return Math.abs(operand);
+    }
+
+    private static boolean nonzero(float condition) {
+        return condition != 0;
+    }
+
+    /**
+     * Visitor returning the (float[])float method handle of every node.
+     */
+    private static final class Builder implements ExpressionVisitor<MethodHandle> {
+
+        @Override
+        public MethodHandle visitLiteral(Literal literal) {
+            return MethodHandles.dropArguments(MethodHandles.constant(float.class, literal.getValue()), 0, float[].class);
+        }
+
+        @Override
+        public MethodHandle visitVariable(VariableReference variable) {
+            return MethodHandles.insertArguments(GET, 1, variable.getSlot());
+        }
+
+        @Override
+        public MethodHandle visitOperation(Operation operation) {
+            MethodHandle function;
+            switch (operation.getFunction()) {
+                case ADD:
+                    function = ADD;
+                    break;
+                case SUB:
+                    function = SUB;
+                    break;
+                case MULT:
+                    function = MULT;
+                    break;
+                case DIV:
+                    function = DIV;
+                    break;
+                case MIN:
+                    function = MIN;
+                    break;
+                case MAX:
+                    function = MAX;
+                    break;
+                case MOD:
+                    function = MOD;
+                    break;
+                case POW:
+                    function = POW;
+                    break;
+                case ABS:
+                    return MethodHandles.filterReturnValue(operation.getOperand(0).accept(this), ABS);
+                default:
+                    throw new IllegalArgumentException("Unsupported function " + operation.getFunction());
+            }
+            MethodHandle result = operation.getOperand(0).accept(this);
+            for (int i = 1; i < operation.getOperandCount(); i++) {
+                // (float operand1, float[] slots)float, computing operand2 from the slots
+                MethodHandle withRight = MethodHandles.filterArguments(function, 1, operation.getOperand(i).accept(this));
+                // (float[] slots)float, computing operand1 first
+                result = MethodHandles.foldArguments(withRight, result);
+            }
+            return result;
+        }
+
+        @Override
+        public MethodHandle visitConditional(Conditional conditional) {
+            MethodHandle test = MethodHandles.filterReturnValue(conditional.getCondition().accept(this), NONZERO);
+            return MethodHandles.guardWithTest(test, conditional.getValue().accept(this),
+                    conditional.getOtherwise().accept(this));
+        }
+
+        @Override
+        public MethodHandle visitCall(FunctionCall call) {
+            throw new IllegalArgumentException("Unsupported function " + call.getFunction());
+        }
+
+        @Override
+        public MethodHandle visitLet(LetBinding let) {
+            // (float[] slots, float value)void storing the value in the slot of the variable
+            MethodHandle store = MethodHandles.insertArguments(SET, 1, let.getSlot());
+            // (float[] slots)void computing the value and storing it
+            MethodHandle assign = MethodHandles.permuteArguments(
+                    MethodHandles.filterArguments(store, 1, let.getValue().accept(this)),
+                    MethodType.methodType(void.class, float[].class), 0, 0);
+            return MethodHandles.foldArguments(let.getBody().accept(this), assign);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.function.RegisteredFunction;
+
+import static com.interview.calculator.constants.Constants.*;
+import static com.interview.calculator.evaluator.Instructions.*;
+
+/**
+ * Compiled expression flattened into a postfix instruction stream, evaluated with primitive arrays only.
+ * <p>
+ * Approach : The expression tree is flattened by {@link Instructions}, without recursion, and literals are converted
+ * to float once in the constant pool.
+ * <p>
+ * Evaluation runs the instructions in a single loop over a float[] operand stack and float[] slots taken from an
+ * {@link EvaluationContext}, so there is no boxing, no map lookup and no allocation per evaluation. Arguments of custom
+ * functions are copied to an array of the context too. Parameter values are copied to their slots before running the
+ * instructions.
+ */
+public final class Program {
+
+    private final int[] code;
+    private final float[] constants;
+    private final RegisteredFunction[] functions;
+    private final int symbolCount;
+    private final int[] parameterSlots;
+    private final int maxStackDepth;
+
+    private Program(int[] code, float[] constants, RegisteredFunction[] functions, int symbolCount, int[] parameterSlots,
+                    int maxStackDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.functions = functions;
+        this.symbolCount = symbolCount;
+        this.parameterSlots = parameterSlots;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * Flattens the compiled expression into a program.
+     *
+     * @param expression
+     * @return
+     */
+    public static Program compile(CompiledExpression expression) {
+        Instructions instructions = Instructions.compile(expression.getRoot());
+        float[] constants = new float[instructions.constants.length];
+        for (int i = 0; i < constants.length; i++)
+            constants[i] = instructions.constants[i].getValue();
+        return new Program(instructions.code, constants, instructions.functions, expression.getSymbolCount(),
+                expression.getParameterSlots(), instructions.maxStackDepth);
+    }
+
+    /**
+     * Computes the result of the program using the scratch memory of the given context.
+     *
+     * @param context
+     * @return
+     * @throws CalculatorException if the program has parameters
+     */
+    public float evaluate(EvaluationContext context) throws CalculatorException {
+        if (parameterSlots.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return run(context, context.stack(maxStackDepth), context.slots(symbolCount));
+    }
+
+    /**
+     * Computes the result of the program for the given parameter values, using the scratch memory of the given context.
+     *
+     * @param context
+     * @param parameterValues : values indexed like {@link CompiledExpression#getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters
+     */
+    public float evaluate(EvaluationContext context, float[] parameterValues) throws CalculatorException {
+        if (parameterValues.length != parameterSlots.length)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        float[] slots = context.slots(symbolCount);
+        for (int i = 0; i < parameterSlots.length; i++)
+            slots[parameterSlots[i]] = parameterValues[i];
+        return run(context, context.stack(maxStackDepth), slots);
+    }
+
+    private float run(EvaluationContext context, float[] stack, float[] slots) throws CalculatorException {
+        int[] code = this.code;
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case PUSH:
+                    stack[++top] = constants[code[pc++]];
+                    break;
+                case LOAD:
+                    stack[++top] = slots[code[pc++]];
+                    break;
+                case STORE:
+                    slots[code[pc++]] = stack[top--];
+                    break;
+                case ADD:
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                    break;
+                case SUB:
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                    break;
+                case MULT:
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                    break;
+                case DIV:
+                    top--;
+                    if (stack[top + 1] == 0) {
+                        throw new ArithmeticException(DIVIDE_BY_ZERO);
+                    }
+                    stack[top] = stack[top] / stack[top + 1];
+                    break;
+                case MIN:
+                    top--;
+                    stack[top] = Math.min(stack[top], stack[top + 1]);
+                    break;
+                case MAX:
+                    top--;
+                    stack[top] = Math.max(stack[top], stack[top + 1]);
+                    break;
+                case MOD:
+                    top--;
+                    if (stack[top + 1] == 0) {
+                        throw new ArithmeticException(DIVIDE_BY_ZERO);
+                    }
+                    stack[top] = stack[top] % stack[top + 1];
+                    break;
+                case POW:
+                    top--;
+                    stack[top] = (float) Math.pow(stack[top], stack[top + 1]);
+                    break;
+                case ABS:
+                    stack[top] = Math.abs(stack[top]);
+                    break;
+                case JUMP_IF_ZERO:
+                    if (stack[top--] == 0)
+                        pc = code[pc];
+                    else
+                        pc++;
+                    break;
+                case JUMP:
+                    pc = code[pc];
+                    break;
+                case CALL:
+                    RegisteredFunction function = functions[code[pc++]];
+                    int argumentCount = code[pc++];
+                    top -= argumentCount - 1;
+                    float[] arguments = context.arguments(argumentCount);
+                    System.arraycopy(stack, top, arguments, 0, argumentCount);
+                    stack[top] = function.getImplementation().apply(arguments);
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid instruction " + code[pc - 1]);
+            }
+        }
+        return stack[0];
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    public int getParameterCount() {
+        return parameterSlots.length;
+    }
+
+    public int getMaxStackDepth() {
+        return maxStackDepth;
+    }
+}
@@ -0,0 +1,180 @@
+package com.interview.calculator.evaluator;
+
+import ch.qos.logback.classic.Logger;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.ExpressionVisitor;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
+
+/**
+ * Evaluates an expression with the tree interpreter until it becomes hot, then with a method handle compiled by
+ * {@link MethodHandleCompiler}.
+ * <p>
+ * Approach : Evaluations are counted and once the count reaches the threshold the expression is compiled by the thread
+ * crossing it. If compilation fails (e.g. the expression is too large), the expression stays interpreted.
+ * Both tiers perform the same float operations in the same order, so results are bit identical.
+ */
+public final class TieredEvaluator {
+
+    public static final int DEFAULT_THRESHOLD = 1_000;
+    // Larger trees make method handle chains too deep to be worth compiling
+    static final int MAXIMUM_COMPILED_NODES = 2_000;
+    private static final float[] NO_PARAMETERS = new float[0];
+    private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(TieredEvaluator.class);
+
+    private final CompiledExpression expression;
+    private final int[] parameterSlots;
+    private final int threshold;
+    // Racy counter, a few lost increments only delay compilation
+    private int invocations;
+    private volatile MethodHandle compiled;
+    private volatile boolean interpretedOnly;
+
+    public TieredEvaluator(CompiledExpression expression) {
+        this(expression, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param expression
+     * @param threshold  : number of evaluations after which the expression is compiled
+     */
+    public TieredEvaluator(CompiledExpression expression, int threshold) {
+        this.expression = expression;
+        this.parameterSlots = expression.getParameterSlots();
+        this.threshold = threshold;
+        NodeCounter counter = new NodeCounter();
+        expression.getRoot().accept(counter);
+        this.interpretedOnly = counter.count > MAXIMUM_COMPILED_NODES;
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values.
+     *
+     * @param parameterValues : values indexed like {@link CompiledExpression#getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters
+     */
+    public float evaluate(float[] parameterValues) throws CalculatorException {
+        MethodHandle handle = compiled;
+        if (handle == null) {
+            if (interpretedOnly || ++invocations < threshold)
+                return expression.evaluate(parameterValues);
+            handle = compile();
+            if (handle == null)
+                return expression.evaluate(parameterValues);
+        }
+        if (parameterValues.length != parameterSlots.length)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        float[] slots = new float[expression.getSymbolCount()];
+        for (int i = 0; i < parameterSlots.length; i++)
+            slots[parameterSlots[i]] = parameterValues[i];
+        try {
+            return (float) handle.invokeExact(slots);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes the result of an expression without parameters.
+     *
+     * @return
+     * @throws CalculatorException if the expression has parameters
+     */
+    public float evaluate() throws CalculatorException {
+        if (parameterSlots.length > 0)
+            return expression.evaluate();
+        return evaluate(NO_PARAMETERS);
+    }
+
+    /**
+     * Whether the expression is evaluated by the compiled method handle.
+     *
+     * @return
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    private synchronized MethodHandle compile() {
+        if (compiled == null && !interpretedOnly) {
+            try {
+                compiled = MethodHandleCompiler.compile(expression);
+            } catch (RuntimeException | StackOverflowError e) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Unable to compile expression, keeping it interpreted : {}", e.toString());
+                interpretedOnly = true;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Counts the nodes of a tree, stopping once the maximum number of compiled nodes is exceeded.
+     */
+    private static final class NodeCounter implements ExpressionVisitor<Void> {
+
+        private int count;
+
+        @Override
+        public Void visitLiteral(Literal literal) {
+            count++;
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableReference variable) {
+            count++;
+            return null;
+        }
+
+        @Override
+        public Void visitOperation(Operation operation) {
+            if (++count <= MAXIMUM_COMPILED_NODES) {
+                for (int i = 0; i < operation.getOperandCount(); i++)
+                    operation.getOperand(i).accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitConditional(Conditional conditional) {
+            if (++count <= MAXIMUM_COMPILED_NODES) {
+                conditional.getCondition().accept(this);
+                conditional.getValue().accept(this);
+                conditional.getOtherwise().accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitCall(FunctionCall call) {
+            if (++count <= MAXIMUM_COMPILED_NODES) {
+                for (int i = 0; i < call.getArgumentCount(); i++)
+                    call.getArgument(i).accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitLet(LetBinding let) {
+            if (++count <= MAXIMUM_COMPILED_NODES) {
+                let.getValue().accept(this);
+                let.getBody().accept(this);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.exception.CalculatorException;
+
+import java.util.Map;
+
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
+import static com.interview.calculator.constants.Constants.MISSING_PARAMETER;
+
+/**
+ * Result of compiling an expression string : the root of the expression tree along with its symbol table.
+ * <p>
+ * A compiled expression is immutable and can be evaluated any number of times (also from different threads) without
+ * scanning the expression string again.
+ * <p>
+ * Expressions compiled with parameters may read variables which aren't assigned by any let expression before. Such
+ * variables are parameters, their values are given by the caller for every evaluation, either by name or as an array
+ * indexed like {@link #getParameters()}.
+ * <p>
+ * Expressions nested deeper than {@link #MAXIMUM_RECURSIVE_DEPTH} are evaluated iteratively, with an explicit stack.
+ */
+public final class CompiledExpression {
+
+    /**
+     * Nesting above which the tree is evaluated without recursion, so that deep expressions don't overflow the stack.
+     */
+    public static final int MAXIMUM_RECURSIVE_DEPTH = 1_000;
+    private static final float[] NO_SLOTS = new float[0];
+
+    private final CharSequence source;
+    private final Expression root;
+    private final String[] symbols;
+    private final int[] parameterSlots;
+    private final int depth;
+
+    /**
+     * @param source         : expression string
+     * @param root           : root of the expression tree
+     * @param symbols        : variable names, indexed by slot
+     * @param parameterSlots : slots of the parameters, in parameter order
+     * @param depth          : maximum nesting of functions in the expression string
+     */
+    public CompiledExpression(CharSequence source, Expression root, String[] symbols, int[] parameterSlots, int depth) {
+        this.source = source;
+        this.root = root;
+        this.symbols = symbols;
+        this.parameterSlots = parameterSlots;
+        this.depth = depth;
+    }
+
+    /**
+     * Expression this expression was compiled from, a String unless it was decoded from an archive, whose source is
+     * formatted from the tree.
+     *
+     * @return
+     */
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public Expression getRoot() {
+        return root;
+    }
+
+    /**
+     * Maximum nesting of functions in the expression string, e.g. 2 for add(1, mult(2,3)).
+     *
+     * @return
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Variable names of the expression, indexed by symbol id (slot).
+     *
+     * @return
+     */
+    public String[] getSymbols() {
+        return symbols.clone();
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * Names of the parameters, in the order their values are expected by {@link #evaluate(float[])}.
+     *
+     * @return
+     */
+    public String[] getParameters() {
+        String[] parameters = new String[parameterSlots.length];
+        for (int i = 0; i < parameterSlots.length; i++)
+            parameters[i] = symbols[parameterSlots[i]];
+        return parameters;
+    }
+
+    /**
+     * Slots of the parameters, in parameter order.
+     *
+     * @return
+     */
+    public int[] getParameterSlots() {
+        return parameterSlots.clone();
+    }
+
+    public int getParameterCount() {
+        return parameterSlots.length;
+    }
+
+    /**
+     * Computes the result of the expression.
+     *
+     * @return
+     * @throws CalculatorException if the expression has parameters
+     */
+    public float evaluate() throws CalculatorException {
+        if (parameterSlots.length > 0)
+            throw new CalculatorException(MISSING_PARAMETER);
+        return evaluateRoot(symbols.length == 0 ? NO_SLOTS : new float[symbols.length]);
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values.
+     *
+     * @param parameterValues : values indexed like {@link #getParameters()}
+     * @return
+     * @throws CalculatorException if the number of values doesn't match the number of parameters
+     */
+    public float evaluate(float[] parameterValues) throws CalculatorException {
+        if (parameterValues.length != parameterSlots.length)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        float[] slots = symbols.length == 0 ? NO_SLOTS : new float[symbols.length];
+        for (int i = 0; i < parameterSlots.length; i++)
+            slots[parameterSlots[i]] = parameterValues[i];
+        return evaluateRoot(slots);
+    }
+
+    /**
+     * Computes the result of the expression for the given parameter values.
+     *
+     * @param parameterValues : value of every parameter, by name
+     * @return
+     * @throws CalculatorException if a parameter has no value
+     */
+    public float evaluate(Map<String, ? extends Number> parameterValues) throws CalculatorException {
+        float[] slots = symbols.length == 0 ? NO_SLOTS : new float[symbols.length];
+        for (int slot : parameterSlots) {
+            Number value = parameterValues.get(symbols[slot]);
+            if (value == null)
+                throw new CalculatorException(MISSING_PARAMETER);
+            slots[slot] = value.floatValue();
+        }
+        return evaluateRoot(slots);
+    }
+
+    private float evaluateRoot(float[] slots) throws CalculatorException {
+        return depth > MAXIMUM_RECURSIVE_DEPTH ? IterativeEvaluator.evaluate(root, slots) : root.evaluate(slots);
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
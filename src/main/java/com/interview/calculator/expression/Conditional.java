@@ -0,0 +1,45 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.exception.CalculatorException;
+
+/**
+ * if(&lt;condition&gt;, &lt;value&gt;, &lt;otherwise&gt;)
+ * <p>
+ * The condition is evaluated first, then only the value if the condition isn't 0, or only otherwise if it is. Variables
+ * assigned by a let expression inside value or otherwise can't be read once the if expression is complete, as their
+ * value would depend on the condition.
+ */
+public final class Conditional extends Expression {
+
+    private final Expression condition;
+    private final Expression value;
+    private final Expression otherwise;
+
+    public Conditional(Expression condition, Expression value, Expression otherwise) {
+        this.condition = condition;
+        this.value = value;
+        this.otherwise = otherwise;
+    }
+
+    public Expression getCondition() {
+        return condition;
+    }
+
+    public Expression getValue() {
+        return value;
+    }
+
+    public Expression getOtherwise() {
+        return otherwise;
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visitConditional(this);
+    }
+
+    @Override
+    public float evaluate(float[] slots) throws CalculatorException {
+        return condition.evaluate(slots) != 0 ? value.evaluate(slots) : otherwise.evaluate(slots);
+    }
+}
@@ -0,0 +1,29 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.exception.CalculatorException;
+
+/**
+ * Immutable node of a compiled expression tree.
+ * <p>
+ * Nodes are created once by the compiler and can then be evaluated any number of times. Values of variables are kept
+ * in a slot array (one slot per variable name, see {@link CompiledExpression#getSymbols()}) which is passed down the tree.
+ */
+public abstract class Expression {
+
+    /**
+     * Evaluates this node.
+     *
+     * @param slots : current values of the variables, indexed by symbol id
+     * @return value of the node
+     * @throws CalculatorException
+     */
+    public abstract float evaluate(float[] slots) throws CalculatorException;
+
+    /**
+     * Calls the visitor method matching the type of this node.
+     *
+     * @param visitor
+     * @return result of the visitor
+     */
+    public abstract <R> R accept(ExpressionVisitor<R> visitor);
+}
@@ -0,0 +1,21 @@
+package com.interview.calculator.expression;
+
+/**
+ * Visitor over the nodes of an expression tree, used by the evaluators which don't walk the tree themselves.
+ *
+ * @param <R> : result of visiting a node
+ */
+public interface ExpressionVisitor<R> {
+
+    R visitLiteral(Literal literal);
+
+    R visitVariable(VariableReference variable);
+
+    R visitOperation(Operation operation);
+
+    R visitLet(LetBinding let);
+
+    R visitConditional(Conditional conditional);
+
+    R visitCall(FunctionCall call);
+}
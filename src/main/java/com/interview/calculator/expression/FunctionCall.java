@@ -0,0 +1,46 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.function.RegisteredFunction;
+
+/**
+ * Call of a custom function of a {@link com.interview.calculator.function.FunctionRegistry}, e.g. hypot(3, 4).
+ * <p>
+ * Arguments are evaluated from left to right before the function is called. Evaluating the tree allocates the array of
+ * arguments of every call, {@link com.interview.calculator.evaluator.Program} reuses one from its context.
+ */
+public final class FunctionCall extends Expression {
+
+    private final RegisteredFunction function;
+    private final Expression[] arguments;
+
+    public FunctionCall(RegisteredFunction function, Expression... arguments) {
+        this.function = function;
+        this.arguments = arguments;
+    }
+
+    public RegisteredFunction getFunction() {
+        return function;
+    }
+
+    public int getArgumentCount() {
+        return arguments.length;
+    }
+
+    public Expression getArgument(int index) {
+        return arguments[index];
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visitCall(this);
+    }
+
+    @Override
+    public float evaluate(float[] slots) throws CalculatorException {
+        float[] values = new float[arguments.length];
+        for (int i = 0; i < arguments.length; i++)
+            values[i] = arguments[i].evaluate(slots);
+        return function.getImplementation().apply(values);
+    }
+}
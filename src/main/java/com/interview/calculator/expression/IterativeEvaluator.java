@@ -0,0 +1,128 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.exception.CalculatorException;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates an expression tree without recursion, for trees too deep for the thread stack.
+ * <p>
+ * Approach : Nodes are visited in post order with an explicit stack of nodes, along with the number of children of
+ * every node which were already visited, and the values of visited nodes are kept on a separate operand stack :
+ * - literal and variable push their value.
+ * - arithmetic function (or custom function call) visits its operands from left to right, then replaces their values
+ * with its result.
+ * - if expression visits its condition, pops its value, then visits only the branch selected by it.
+ * - let expression visits its value, pops it into the variable slot, then visits its body whose value is its own.
+ * Both stacks grow with the depth of the tree only.
+ */
+final class IterativeEvaluator {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Expression[] nodes = new Expression[INITIAL_CAPACITY];
+    private int[] visited = new int[INITIAL_CAPACITY];
+    private int nodeCount;
+    private float[] values = new float[INITIAL_CAPACITY];
+    private int valueCount;
+
+    private IterativeEvaluator() {
+    }
+
+    /**
+     * Evaluates the tree.
+     *
+     * @param root
+     * @param slots : current values of the variables, indexed by symbol id
+     * @return value of the root
+     * @throws CalculatorException
+     */
+    static float evaluate(Expression root, float[] slots) throws CalculatorException {
+        return new IterativeEvaluator().run(root, slots);
+    }
+
+    private float run(Expression root, float[] slots) throws CalculatorException {
+        push(root);
+        while (nodeCount > 0) {
+            Expression node = nodes[nodeCount - 1];
+            if (node instanceof Literal) {
+                nodeCount--;
+                pushValue(((Literal) node).getValue());
+            } else if (node instanceof VariableReference) {
+                nodeCount--;
+                pushValue(slots[((VariableReference) node).getSlot()]);
+            } else if (node instanceof Operation) {
+                Operation operation = (Operation) node;
+                int operandCount = operation.getOperandCount();
+                int operand = visited[nodeCount - 1]++;
+                if (operand < operandCount) {
+                    push(operation.getOperand(operand));
+                } else {
+                    nodeCount--;
+                    valueCount -= operandCount;
+                    float result = values[valueCount];
+                    if (operandCount == 1)
+                        result = Operation.apply(operation.getFunction(), result);
+                    for (int i = 1; i < operandCount; i++)
+                        result = Operation.apply(operation.getFunction(), result, values[valueCount + i]);
+                    pushValue(result);
+                }
+            } else if (node instanceof Conditional) {
+                Conditional conditional = (Conditional) node;
+                switch (visited[nodeCount - 1]++) {
+                    case 0:
+                        push(conditional.getCondition());
+                        break;
+                    case 1:
+                        push(values[--valueCount] != 0 ? conditional.getValue() : conditional.getOtherwise());
+                        break;
+                    default:
+                        // Value of the branch is left on the operand stack as the value of the if expression
+                        nodeCount--;
+                }
+            } else if (node instanceof FunctionCall) {
+                FunctionCall call = (FunctionCall) node;
+                int argumentCount = call.getArgumentCount();
+                int argument = visited[nodeCount - 1]++;
+                if (argument < argumentCount) {
+                    push(call.getArgument(argument));
+                } else {
+                    nodeCount--;
+                    valueCount -= argumentCount;
+                    float[] arguments = Arrays.copyOfRange(values, valueCount, valueCount + argumentCount);
+                    pushValue(call.getFunction().getImplementation().apply(arguments));
+                }
+            } else {
+                LetBinding let = (LetBinding) node;
+                switch (visited[nodeCount - 1]++) {
+                    case 0:
+                        push(let.getValue());
+                        break;
+                    case 1:
+                        slots[let.getSlot()] = values[--valueCount];
+                        push(let.getBody());
+                        break;
+                    default:
+                        // Value of the body is left on the operand stack as the value of the let expression
+                        nodeCount--;
+                }
+            }
+        }
+        return values[0];
+    }
+
+    private void push(Expression node) {
+        if (nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * nodeCount);
+            visited = Arrays.copyOf(visited, 2 * nodeCount);
+        }
+        nodes[nodeCount] = node;
+        visited[nodeCount++] = 0;
+    }
+
+    private void pushValue(float value) {
+        if (valueCount == values.length)
+            values = Arrays.copyOf(values, 2 * valueCount);
+        values[valueCount++] = value;
+    }
+}
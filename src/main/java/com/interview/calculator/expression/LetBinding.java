@@ -0,0 +1,51 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.exception.CalculatorException;
+
+/**
+ * let(&lt;variable name&gt;, &lt;value expression&gt;, &lt;expression where variable is used&gt;)
+ * <p>
+ * The value is assigned to the variable slot before the body is evaluated. As with the original string parser the
+ * assignment is not undone once the body is evaluated, so the variable keeps its value for the rest of the expression.
+ */
+public final class LetBinding extends Expression {
+
+    private final String name;
+    private final int slot;
+    private final Expression value;
+    private final Expression body;
+
+    public LetBinding(String name, int slot, Expression value, Expression body) {
+        this.name = name;
+        this.slot = slot;
+        this.value = value;
+        this.body = body;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public Expression getValue() {
+        return value;
+    }
+
+    public Expression getBody() {
+        return body;
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visitLet(this);
+    }
+
+    @Override
+    public float evaluate(float[] slots) throws CalculatorException {
+        slots[slot] = value.evaluate(slots);
+        return body.evaluate(slots);
+    }
+}
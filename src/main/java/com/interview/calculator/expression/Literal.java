@@ -0,0 +1,59 @@
+package com.interview.calculator.expression;
+
+/**
+ * Number literal of an expression.
+ * <p>
+ * Literals written in the expression string are integers, their exact value is kept along with the float value so
+ * that the long and exact evaluators don't lose precision above 2^24. Literals computed by the optimizer only have a
+ * float value.
+ */
+public final class Literal extends Expression {
+
+    private final float value;
+    private final long integerValue;
+    private final boolean integer;
+
+    public Literal(float value) {
+        this.value = value;
+        this.integerValue = 0;
+        this.integer = false;
+    }
+
+    public Literal(long value) {
+        this.value = value;
+        this.integerValue = value;
+        this.integer = true;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * Whether the exact integer value of this literal is known.
+     *
+     * @return
+     */
+    public boolean isInteger() {
+        return integer;
+    }
+
+    /**
+     * Exact value of the literal, only meaningful if {@link #isInteger()}.
+     *
+     * @return
+     */
+    public long getIntegerValue() {
+        return integerValue;
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visitLiteral(this);
+    }
+
+    @Override
+    public float evaluate(float[] slots) {
+        return value;
+    }
+}
@@ -0,0 +1,115 @@
+package com.interview.calculator.expression;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.exception.CalculatorException;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static com.interview.calculator.constants.Constants.INVALID_FUNCTION;
+
+/**
+ * Arithmetic function applied to its operands, e.g. add(1, 2) or add(1, 2, 3).
+ * <p>
+ * Operands are evaluated from left to right, so any let expression inside the first operand is assigned before the
+ * second operand is evaluated. Functions taking more than 2 operands (add, mult, min, max) are reduced in a single
+ * pass, the result of the operands before being combined with the next one, as nested functions would.
+ */
+public final class Operation extends Expression {
+
+    private final ArithmeticFunctions function;
+    private final Expression[] operands;
+
+    public Operation(ArithmeticFunctions function, Expression... operands) {
+        this.function = function;
+        this.operands = operands;
+    }
+
+    public ArithmeticFunctions getFunction() {
+        return function;
+    }
+
+    public int getOperandCount() {
+        return operands.length;
+    }
+
+    public Expression getOperand(int index) {
+        return operands[index];
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visitOperation(this);
+    }
+
+    @Override
+    public float evaluate(float[] slots) throws CalculatorException {
+        float result = operands[0].evaluate(slots);
+        switch (function) {
+            case ADD:
+                for (int i = 1; i < operands.length; i++)
+                    result += operands[i].evaluate(slots);
+                return result;
+            case MULT:
+                for (int i = 1; i < operands.length; i++)
+                    result *= operands[i].evaluate(slots);
+                return result;
+            case ABS:
+                return apply(function, result);
+            default:
+                for (int i = 1; i < operands.length; i++)
+                    result = apply(function, result, operands[i].evaluate(slots));
+                return result;
+        }
+    }
+
+    /**
+     * Returns the calculated value after performing the respective arithmetic operation.
+     *
+     * @param function
+     * @param operand1 : first argument of the function
+     * @param operand2 : second argument of the function
+     * @return
+     * @throws CalculatorException
+     */
+    public static float apply(ArithmeticFunctions function, float operand1, float operand2) throws CalculatorException {
+        switch (function) {
+            case ADD:
+                return operand1 + operand2;
+            case SUB:
+                return operand1 - operand2;
+            case MULT:
+                return operand1 * operand2;
+            case DIV:
+                if (operand2 == 0) {
+                    throw new ArithmeticException(DIVIDE_BY_ZERO);
+                }
+                return operand1 / operand2;
+            case MIN:
+                return Math.min(operand1, operand2);
+            case MAX:
+                return Math.max(operand1, operand2);
+            case MOD:
+                if (operand2 == 0) {
+                    throw new ArithmeticException(DIVIDE_BY_ZERO);
+                }
+                return operand1 % operand2;
+            case POW:
+                return (float) Math.pow(operand1, operand2);
+            default:
+                throw new CalculatorException(INVALID_FUNCTION);
+        }
+    }
+
+    /**
+     * Returns the calculated value of a function of a single argument.
+     *
+     * @param function
+     * @param operand
+     * @return
+     * @throws CalculatorException
+     */
+    public static float apply(ArithmeticFunctions function, float operand) throws CalculatorException {
+        if (function == ArithmeticFunctions.ABS)
+            return Math.abs(operand);
+        throw new CalculatorException(INVALID_FUNCTION);
+    }
+}
@@ -0,0 +1,33 @@
+package com.interview.calculator.expression;
+
+/**
+ * Reference to a variable assigned by an enclosing or preceding let expression.
+ */
+public final class VariableReference extends Expression {
+
+    private final String name;
+    private final int slot;
+
+    public VariableReference(String name, int slot) {
+        this.name = name;
+        this.slot = slot;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public <R> R accept(ExpressionVisitor<R> visitor) {
+        return visitor.visitVariable(this);
+    }
+
+    @Override
+    public float evaluate(float[] slots) {
+        return slots[slot];
+    }
+}
@@ -0,0 +1,21 @@
+package com.interview.calculator.function;
+
+import com.interview.calculator.exception.CalculatorException;
+
+/**
+ * Implementation of a function registered in a {@link FunctionRegistry}.
+ * <p>
+ * The array of arguments is only valid during the call, evaluators reuse it for the following calls.
+ */
+@FunctionalInterface
+public interface CustomFunction {
+
+    /**
+     * Computes the value of the function.
+     *
+     * @param arguments : values of the arguments, their number is within the bounds the function was registered with
+     * @return
+     * @throws CalculatorException
+     */
+    float apply(float[] arguments) throws CalculatorException;
+}
@@ -0,0 +1,79 @@
+package com.interview.calculator.function;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Functions which can be called from expressions besides the built-in {@link ArithmeticFunctions}.
+ * <p>
+ * Approach : The compiler looks a function name up in the trie of the built-in functions first, and only looks it up
+ * in the registry when it isn't a built-in function, so registering functions doesn't slow down the dispatch of the
+ * built-in ones, which keep their own nodes and switch over the enum. A call of a custom function is compiled into a
+ * {@link com.interview.calculator.expression.FunctionCall} node holding the function itself, so evaluation doesn't look
+ * the name up again.
+ * <p>
+ * Names are case insensitive like built-in function names, and can't hide a built-in function. Registries are thread
+ * safe, but a function registered after an expression is compiled isn't seen by that expression.
+ */
+public final class FunctionRegistry {
+
+    private static final FunctionRegistry DEFAULT = new FunctionRegistry();
+
+    private final Map<String, RegisteredFunction> functions = new ConcurrentHashMap<>();
+
+    /**
+     * Registry used when compiling expressions without giving one.
+     *
+     * @return
+     */
+    public static FunctionRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers a function, replacing any custom function with the same name.
+     *
+     * @param name             : letters only, not the name of a built-in function
+     * @param minimumArguments
+     * @param maximumArguments
+     * @param implementation
+     * @return the registered function
+     * @throws IllegalArgumentException if the name or number of arguments isn't valid
+     */
+    public RegisteredFunction register(String name, int minimumArguments, int maximumArguments,
+                                       CustomFunction implementation) {
+        if (name == null || name.isEmpty() || !name.chars().allMatch(Character::isLetter))
+            throw new IllegalArgumentException("Invalid function name " + name);
+        if (ArithmeticFunctions.lookup(name, 0, name.length()) != null)
+            throw new IllegalArgumentException("Built-in function " + name);
+        if (minimumArguments < 1 || maximumArguments < minimumArguments || implementation == null)
+            throw new IllegalArgumentException("Invalid function " + name);
+        RegisteredFunction function = new RegisteredFunction(name.toLowerCase(Locale.ROOT), minimumArguments,
+                maximumArguments, implementation);
+        functions.put(function.getName(), function);
+        return function;
+    }
+
+    /**
+     * Removes a function, expressions already compiled keep calling it.
+     *
+     * @param name
+     * @return true if the function was registered
+     */
+    public boolean unregister(String name) {
+        return functions.remove(name.toLowerCase(Locale.ROOT)) != null;
+    }
+
+    /**
+     * Finds the function with the given name, ignoring case.
+     *
+     * @param name
+     * @return the function, null if there is no function with that name
+     */
+    public RegisteredFunction lookup(String name) {
+        return functions.get(name.toLowerCase(Locale.ROOT));
+    }
+}
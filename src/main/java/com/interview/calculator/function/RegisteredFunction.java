@@ -0,0 +1,40 @@
+package com.interview.calculator.function;
+
+/**
+ * Custom function along with its name and number of arguments.
+ */
+public final class RegisteredFunction {
+
+    private final String name;
+    private final int minimumArguments;
+    private final int maximumArguments;
+    private final CustomFunction implementation;
+
+    RegisteredFunction(String name, int minimumArguments, int maximumArguments, CustomFunction implementation) {
+        this.name = name;
+        this.minimumArguments = minimumArguments;
+        this.maximumArguments = maximumArguments;
+        this.implementation = implementation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMinimumArguments() {
+        return minimumArguments;
+    }
+
+    public int getMaximumArguments() {
+        return maximumArguments;
+    }
+
+    public CustomFunction getImplementation() {
+        return implementation;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,269 @@
+package com.interview.calculator.metrics;
+
+import ch.qos.logback.classic.Logger;
+import com.interview.calculator.cache.ExpressionCache;
+import com.interview.calculator.expression.CompiledExpression;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.interview.calculator.constants.Constants.*;
+
+/**
+ * Counters and histograms of the calculator : parse and evaluation times, expression length and depth, and errors by
+ * message.
+ * <p>
+ * Metrics are disabled by default, callers check {@link #isEnabled()} before reading the clock so that disabled
+ * metrics cost a single volatile read. They can be enabled with the system property calculator.metrics=true, through
+ * JMX or with {@link #setEnabled(boolean)}. Recording only uses striped counters ({@link LongAdder}, {@link Histogram}),
+ * so threads never wait for each other.
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMBean {
+
+    public static final String OBJECT_NAME = "com.interview.calculator:type=CalculatorMetrics";
+    private static final double MICROS = 1_000;
+    private static final CalculatorMetrics DEFAULT = new CalculatorMetrics(Boolean.getBoolean("calculator.metrics"));
+
+    private volatile boolean enabled;
+    private final LongAdder evaluations = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Histogram parseTime = new Histogram();
+    private final Histogram evaluationTime = new Histogram();
+    private final Histogram expressionLength = new Histogram();
+    private final Histogram expressionDepth = new Histogram();
+    private ScheduledExecutorService reporter;
+
+    public CalculatorMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Metrics recorded by the parser, the cache and the evaluators.
+     *
+     * @return
+     */
+    public static CalculatorMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records the compilation of an expression.
+     *
+     * @param expression
+     * @param nanos      : time spent parsing and optimizing the expression
+     */
+    public void recordParse(CompiledExpression expression, long nanos) {
+        parseTime.record(nanos);
+        expressionLength.record(expression.getSource().length());
+        expressionDepth.record(expression.getDepth());
+    }
+
+    /**
+     * Records a successful evaluation.
+     *
+     * @param nanos : time spent evaluating the expression
+     */
+    public void recordEvaluation(long nanos) {
+        evaluations.increment();
+        evaluationTime.record(nanos);
+    }
+
+    /**
+     * Records an expression which failed to compile or to evaluate, by error message.
+     *
+     * @param error
+     */
+    public void recordError(Exception error) {
+        String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+        errors.computeIfAbsent(message, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Number of errors with the given message.
+     *
+     * @param message
+     * @return
+     */
+    public long getErrorCount(String message) {
+        LongAdder count = errors.get(message);
+        return count == null ? 0 : count.sum();
+    }
+
+    @Override
+    public long getInvalidExpressionCount() {
+        return getErrorCount(INVALID_EXPRESSION);
+    }
+
+    @Override
+    public long getInvalidFunctionCount() {
+        return getErrorCount(INVALID_FUNCTION);
+    }
+
+    @Override
+    public long getDivideByZeroCount() {
+        return getErrorCount(DIVIDE_BY_ZERO);
+    }
+
+    @Override
+    public long getOutOfRangeCount() {
+        return getErrorCount(OUT_OF_RANGE);
+    }
+
+    @Override
+    public long getMissingParameterCount() {
+        return getErrorCount(MISSING_PARAMETER);
+    }
+
+    @Override
+    public long getParseCount() {
+        return parseTime.getCount();
+    }
+
+    @Override
+    public double getParseTimeP50() {
+        return parseTime.getPercentile(50) / MICROS;
+    }
+
+    @Override
+    public double getParseTimeP99() {
+        return parseTime.getPercentile(99) / MICROS;
+    }
+
+    @Override
+    public double getEvaluationTimeP50() {
+        return evaluationTime.getPercentile(50) / MICROS;
+    }
+
+    @Override
+    public double getEvaluationTimeP99() {
+        return evaluationTime.getPercentile(99) / MICROS;
+    }
+
+    @Override
+    public double getEvaluationTimeMax() {
+        return evaluationTime.getMax() / MICROS;
+    }
+
+    @Override
+    public long getExpressionLengthP99() {
+        return expressionLength.getPercentile(99);
+    }
+
+    @Override
+    public long getExpressionDepthP99() {
+        return expressionDepth.getPercentile(99);
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return ExpressionCache.getDefault().getHitCount();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return ExpressionCache.getDefault().getMissCount();
+    }
+
+    @Override
+    public long getCacheEvictionCount() {
+        return ExpressionCache.getDefault().getEvictionCount();
+    }
+
+    @Override
+    public String dump() {
+        Map<String, Long> errorCounts = new TreeMap<>();
+        errors.forEach((message, count) -> errorCounts.put(message, count.sum()));
+        return "evaluations=" + getEvaluationCount() + " errors=" + getErrorCount() + " " + errorCounts + '\n'
+                + "parseTime(us) " + parseTime.summary(MICROS) + '\n'
+                + "evaluationTime(us) " + evaluationTime.summary(MICROS) + '\n'
+                + "expressionLength " + expressionLength.summary(1) + '\n'
+                + "expressionDepth " + expressionDepth.summary(1) + '\n'
+                + "cache hits=" + getCacheHitCount() + " misses=" + getCacheMissCount()
+                + " evictions=" + getCacheEvictionCount();
+    }
+
+    @Override
+    public void reset() {
+        evaluations.reset();
+        errors.clear();
+        parseTime.reset();
+        evaluationTime.reset();
+        expressionLength.reset();
+        expressionDepth.reset();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, if not registered already.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            LoggerHolder.LOGGER.warn("Unable to register calculator metrics : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Logs a text dump of the metrics periodically, until {@link #stopReporting()} is called.
+     *
+     * @param period
+     * @param unit
+     */
+    public synchronized void startReporting(long period, TimeUnit unit) {
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "calculator-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            if (LoggerHolder.LOGGER.isInfoEnabled())
+                LoggerHolder.LOGGER.info("Calculator metrics :\n{}", dump());
+        }, period, period, unit);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    // Initialized on first use, getting the default metrics doesn't initialize logging
+    private static final class LoggerHolder {
+        private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(CalculatorMetrics.class);
+    }
+}
@@ -0,0 +1,57 @@
+package com.interview.calculator.metrics;
+
+/**
+ * JMX view of the {@link CalculatorMetrics}, registered as com.interview.calculator:type=CalculatorMetrics.
+ * Times are in microseconds.
+ */
+public interface CalculatorMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getEvaluationCount();
+
+    long getErrorCount();
+
+    long getInvalidExpressionCount();
+
+    long getInvalidFunctionCount();
+
+    long getDivideByZeroCount();
+
+    long getOutOfRangeCount();
+
+    long getMissingParameterCount();
+
+    long getParseCount();
+
+    double getParseTimeP50();
+
+    double getParseTimeP99();
+
+    double getEvaluationTimeP50();
+
+    double getEvaluationTimeP99();
+
+    double getEvaluationTimeMax();
+
+    long getExpressionLengthP99();
+
+    long getExpressionDepthP99();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    long getCacheEvictionCount();
+
+    /**
+     * Text dump of every metric.
+     *
+     * @return
+     */
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,130 @@
+package com.interview.calculator.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non negative values (latencies in nanoseconds, lengths etc.) with a bounded relative error.
+ * <p>
+ * Approach : As in HDR histograms, buckets are log-linear : values are grouped by their highest bit (powers of two) and
+ * every power of two is split in 16 linear sub-buckets, so a bucket is at most 1/16 of its value wide, whatever the
+ * magnitude of the value. Recording is a single atomic increment of the bucket, in a stripe chosen by the recording
+ * thread, so that threads recording at the same time rarely update the same memory.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int MAXIMUM_STRIPES = 8;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram() {
+        int stripeCount = Math.min(MAXIMUM_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+        this.stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records a value, negative values are recorded as 0.
+     *
+     * @param value
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        stripes[(int) Thread.currentThread().getId() & stripeMask].incrementAndGet(bucketOf(value));
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (AtomicLongArray stripe : stripes)
+            for (int i = 0; i < BUCKETS; i++)
+                count += stripe.get(i);
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : sum.sum() / (double) count;
+    }
+
+    /**
+     * Value under which the given percentage of recorded values are, within the precision of the buckets.
+     *
+     * @param percentile : between 0 and 100
+     * @return highest value of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+                total += stripe.get(i);
+            }
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(max.get(), highestValueOf(i));
+        }
+        return max.get();
+    }
+
+    /**
+     * Resets every bucket. Values recorded meanwhile may be partially lost.
+     */
+    public void reset() {
+        for (AtomicLongArray stripe : stripes)
+            for (int i = 0; i < BUCKETS; i++)
+                stripe.set(i, 0);
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Count, mean and percentiles of the histogram, values divided by the given unit (e.g. 1000 for ns to us).
+     *
+     * @param unit
+     * @return
+     */
+    public String summary(double unit) {
+        return String.format("count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f", getCount(), getMean() / unit,
+                getPercentile(50) / unit, getPercentile(90) / unit, getPercentile(99) / unit, getMax() / unit);
+    }
+}
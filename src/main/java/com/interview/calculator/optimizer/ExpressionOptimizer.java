@@ -0,0 +1,345 @@
+package com.interview.calculator.optimizer;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.ExpressionVisitor;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Simplifies compiled expressions before they are evaluated many times.
+ * <p>
+ * Approach : The tree is rewritten in two passes, both visiting the nodes in evaluation order :
+ * - folding : functions whose operands are literals are replaced by their value, variables assigned a literal (or a let
+ * expression resulting in a literal) are replaced by that literal, and multiplying/dividing by 1 or subtracting 0 are removed.
+ * An if expression whose condition is a literal is replaced by the branch it selects.
+ * - dead let removal : a let whose variable is never read is replaced by the expression where variable is used,
+ * provided its value expression can't fail and doesn't assign any variable which is read.
+ * Both passes are repeated as removing a let can make more functions constant.
+ * <p>
+ * Division (or modulo) by zero and custom functions are never folded, so they still throw when the optimized expression
+ * is evaluated, and folding uses the same float arithmetic as the evaluation, so results are unchanged.
+ * <p>
+ * Passes recurse over the tree, so expressions nested deeper than {@link CompiledExpression#MAXIMUM_RECURSIVE_DEPTH}
+ * are left as they are.
+ */
+public class ExpressionOptimizer {
+
+    private static final int MAXIMUM_ROUNDS = 4;
+
+    private ExpressionOptimizer() {
+    }
+
+    /**
+     * Returns the optimized form of the expression, which evaluates to the same value.
+     *
+     * @param expression
+     * @return
+     */
+    public static CompiledExpression optimize(CompiledExpression expression) {
+        if (expression.getDepth() > CompiledExpression.MAXIMUM_RECURSIVE_DEPTH)
+            return expression;
+        int symbolCount = expression.getSymbolCount();
+        Expression optimized = expression.getRoot();
+        // Removing a let can make its enclosing function constant, so passes are repeated until nothing changes
+        for (int round = 0; round < MAXIMUM_ROUNDS; round++) {
+            Expression folded = optimized.accept(new Folder(symbolCount));
+            UsageCollector usages = new UsageCollector(symbolCount);
+            folded.accept(usages);
+            Expression result = folded.accept(new DeadLetRemover(usages.used));
+            if (result == optimized)
+                break;
+            optimized = result;
+        }
+        return new CompiledExpression(expression.getSource(), optimized, expression.getSymbols(),
+                expression.getParameterSlots(), expression.getDepth());
+    }
+
+    private static boolean isLiteral(Expression expression, float value) {
+        return expression instanceof Literal && ((Literal) expression).getValue() == value;
+    }
+
+    /**
+     * Folds constant functions, tracking which variables are currently assigned a literal.
+     */
+    private static final class Folder implements ExpressionVisitor<Expression> {
+
+        // Literal currently assigned to every variable, null if the variable isn't constant
+        private final Literal[] values;
+
+        private Folder(int symbolCount) {
+            this.values = new Literal[symbolCount];
+        }
+
+        @Override
+        public Expression visitLiteral(Literal literal) {
+            return literal;
+        }
+
+        @Override
+        public Expression visitVariable(VariableReference variable) {
+            Literal value = values[variable.getSlot()];
+            return value != null ? value : variable;
+        }
+
+        @Override
+        public Expression visitOperation(Operation operation) {
+            Expression[] operands = new Expression[operation.getOperandCount()];
+            boolean changed = false;
+            boolean constant = true;
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = operation.getOperand(i).accept(this);
+                changed |= operands[i] != operation.getOperand(i);
+                constant &= operands[i] instanceof Literal;
+            }
+            ArithmeticFunctions function = operation.getFunction();
+            boolean divisor = function == ArithmeticFunctions.DIV || function == ArithmeticFunctions.MOD;
+            if (constant && !(divisor && isLiteral(operands[1], 0))) {
+                try {
+                    float result = ((Literal) operands[0]).getValue();
+                    if (operands.length == 1)
+                        result = Operation.apply(function, result);
+                    for (int i = 1; i < operands.length; i++)
+                        result = Operation.apply(function, result, ((Literal) operands[i]).getValue());
+                    return new Literal(result);
+                } catch (CalculatorException e) {
+                    // Not an arithmetic function, left for the evaluation to fail
+                    return new Operation(function, operands);
+                }
+            }
+            if (operands.length == 2) {
+                Expression left = operands[0];
+                Expression right = operands[1];
+                // x * 1, 1 * x and x / 1 are exactly x, as is x - 0
+                if ((function == ArithmeticFunctions.MULT || function == ArithmeticFunctions.DIV) && isLiteral(right, 1)
+                        || function == ArithmeticFunctions.SUB && isLiteral(right, 0) && !isNegativeZero(right))
+                    return left;
+                if (function == ArithmeticFunctions.MULT && isLiteral(left, 1))
+                    return right;
+            }
+            return changed ? new Operation(function, operands) : operation;
+        }
+
+        @Override
+        public Expression visitConditional(Conditional conditional) {
+            Expression condition = conditional.getCondition().accept(this);
+            if (condition instanceof Literal)
+                return (((Literal) condition).getValue() != 0 ? conditional.getValue() : conditional.getOtherwise()).accept(this);
+            // Variables assigned in a branch can't be read after the if expression, so both branches start from the
+            // values assigned before it
+            Literal[] before = values.clone();
+            Expression value = conditional.getValue().accept(this);
+            System.arraycopy(before, 0, values, 0, values.length);
+            Expression otherwise = conditional.getOtherwise().accept(this);
+            System.arraycopy(before, 0, values, 0, values.length);
+            if (condition == conditional.getCondition() && value == conditional.getValue()
+                    && otherwise == conditional.getOtherwise())
+                return conditional;
+            return new Conditional(condition, value, otherwise);
+        }
+
+        @Override
+        public Expression visitCall(FunctionCall call) {
+            Expression[] arguments = new Expression[call.getArgumentCount()];
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = call.getArgument(i).accept(this);
+                changed |= arguments[i] != call.getArgument(i);
+            }
+            return changed ? new FunctionCall(call.getFunction(), arguments) : call;
+        }
+
+        @Override
+        public Expression visitLet(LetBinding let) {
+            Expression value = let.getValue().accept(this);
+            int slot = let.getSlot();
+            values[slot] = constantResult(value);
+            Expression body = let.getBody().accept(this);
+            if (value == let.getValue() && body == let.getBody())
+                return let;
+            return new LetBinding(let.getName(), slot, value, body);
+        }
+
+        /**
+         * Value of a literal, or of nested let expressions whose innermost body is a literal.
+         *
+         * @param expression
+         * @return the literal or null if the value isn't constant
+         */
+        private static Literal constantResult(Expression expression) {
+            while (expression instanceof LetBinding)
+                expression = ((LetBinding) expression).getBody();
+            return expression instanceof Literal ? (Literal) expression : null;
+        }
+
+        private static boolean isNegativeZero(Expression expression) {
+            return Float.floatToRawIntBits(((Literal) expression).getValue()) == Float.floatToRawIntBits(-0f);
+        }
+    }
+
+    /**
+     * Collects the let expressions whose assigned value is read by a variable.
+     */
+    private static final class UsageCollector implements ExpressionVisitor<Void> {
+
+        private final LetBinding[] assignments;
+        private final Set<LetBinding> used = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private UsageCollector(int symbolCount) {
+            this.assignments = new LetBinding[symbolCount];
+        }
+
+        @Override
+        public Void visitLiteral(Literal literal) {
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableReference variable) {
+            LetBinding assignment = assignments[variable.getSlot()];
+            if (assignment != null)
+                used.add(assignment);
+            return null;
+        }
+
+        @Override
+        public Void visitOperation(Operation operation) {
+            for (int i = 0; i < operation.getOperandCount(); i++)
+                operation.getOperand(i).accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitConditional(Conditional conditional) {
+            conditional.getCondition().accept(this);
+            // Otherwise reads the variables assigned before the if expression, not those assigned by value
+            LetBinding[] before = assignments.clone();
+            conditional.getValue().accept(this);
+            System.arraycopy(before, 0, assignments, 0, assignments.length);
+            conditional.getOtherwise().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitCall(FunctionCall call) {
+            for (int i = 0; i < call.getArgumentCount(); i++)
+                call.getArgument(i).accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLet(LetBinding let) {
+            let.getValue().accept(this);
+            assignments[let.getSlot()] = let;
+            let.getBody().accept(this);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces unused let expressions by their body, when dropping the value expression doesn't change the result.
+     */
+    private static final class DeadLetRemover implements ExpressionVisitor<Expression> {
+
+        private final Set<LetBinding> used;
+
+        private DeadLetRemover(Set<LetBinding> used) {
+            this.used = used;
+        }
+
+        @Override
+        public Expression visitLiteral(Literal literal) {
+            return literal;
+        }
+
+        @Override
+        public Expression visitVariable(VariableReference variable) {
+            return variable;
+        }
+
+        @Override
+        public Expression visitOperation(Operation operation) {
+            Expression[] operands = new Expression[operation.getOperandCount()];
+            boolean changed = false;
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = operation.getOperand(i).accept(this);
+                changed |= operands[i] != operation.getOperand(i);
+            }
+            return changed ? new Operation(operation.getFunction(), operands) : operation;
+        }
+
+        @Override
+        public Expression visitConditional(Conditional conditional) {
+            Expression condition = conditional.getCondition().accept(this);
+            Expression value = conditional.getValue().accept(this);
+            Expression otherwise = conditional.getOtherwise().accept(this);
+            if (condition == conditional.getCondition() && value == conditional.getValue()
+                    && otherwise == conditional.getOtherwise())
+                return conditional;
+            return new Conditional(condition, value, otherwise);
+        }
+
+        @Override
+        public Expression visitCall(FunctionCall call) {
+            Expression[] arguments = new Expression[call.getArgumentCount()];
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = call.getArgument(i).accept(this);
+                changed |= arguments[i] != call.getArgument(i);
+            }
+            return changed ? new FunctionCall(call.getFunction(), arguments) : call;
+        }
+
+        @Override
+        public Expression visitLet(LetBinding let) {
+            Expression body = let.getBody().accept(this);
+            if (!used.contains(let) && isRemovable(let.getValue()))
+                return body;
+            Expression value = let.getValue().accept(this);
+            if (value == let.getValue() && body == let.getBody())
+                return let;
+            return new LetBinding(let.getName(), let.getSlot(), value, body);
+        }
+
+        /**
+         * A value expression can be dropped if it can't throw and doesn't assign any variable which is read.
+         *
+         * @param expression
+         * @return
+         */
+        private boolean isRemovable(Expression expression) {
+            if (expression instanceof Operation) {
+                Operation operation = (Operation) expression;
+                ArithmeticFunctions function = operation.getFunction();
+                if ((function == ArithmeticFunctions.DIV || function == ArithmeticFunctions.MOD)
+                        && !(operation.getOperand(1) instanceof Literal && ((Literal) operation.getOperand(1)).getValue() != 0))
+                    return false;
+                for (int i = 0; i < operation.getOperandCount(); i++)
+                    if (!isRemovable(operation.getOperand(i)))
+                        return false;
+                return true;
+            } else if (expression instanceof Conditional) {
+                Conditional conditional = (Conditional) expression;
+                return isRemovable(conditional.getCondition()) && isRemovable(conditional.getValue())
+                        && isRemovable(conditional.getOtherwise());
+            } else if (expression instanceof FunctionCall) {
+                // Custom functions may throw
+                return false;
+            } else if (expression instanceof LetBinding) {
+                LetBinding let = (LetBinding) expression;
+                return !used.contains(let) && isRemovable(let.getValue()) && isRemovable(let.getBody());
+            }
+            return true;
+        }
+    }
+}
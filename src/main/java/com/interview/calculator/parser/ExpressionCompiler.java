@@ -0,0 +1,482 @@
+package com.interview.calculator.parser;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.constants.Dialect;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import com.interview.calculator.function.FunctionRegistry;
+import com.interview.calculator.function.RegisteredFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.interview.calculator.constants.Constants.*;
+
+/**
+ * Compiles an expression string into an immutable {@link CompiledExpression} tree.
+ * <p>
+ * Approach : The characters are split into tokens (numbers, names, brackets and commas) and parsed top down in a
+ * single pass, without recursion, so that time is linear in the length of the expression and only the stack of open
+ * functions is kept besides the tree :
+ * - a number is a literal, it should be within Integer range.
+ * - a name followed by open bracket '(' is a function, it's pushed on the stack of open functions until its arguments
+ * are parsed. Function names are found with the trie of {@link ArithmeticFunctions#lookup}, without copying them, and
+ * only names which aren't built-in functions are looked up in the {@link FunctionRegistry}.
+ * - a name without bracket is a variable, it should be assigned by a let expression evaluated before it, unless the
+ * expression is compiled with parameters.
+ * - once an argument is complete, it's given to the innermost open function, which either waits for its next argument
+ * (after a comma, up to its maximum number of arguments) or is complete itself.
+ * - variables assigned by a let expression inside a branch of an if expression can't be read after the if expression
+ * (unless assigned again), as whether they were assigned depends on the condition.
+ * - every variable name gets a slot (symbol id), so that evaluation doesn't need a map lookup.
+ * <p>
+ * Any {@link CharSequence} can be compiled, e.g. a CharBuffer decoded from a mapped file, its characters are read once
+ * with charAt while parsing. The compiled expression keeps a String copy of its source, so that it doesn't change with
+ * a mutable sequence nor keep its backing buffer alive.
+ * <p>
+ * To stay compatible with the character by character parser, any other character (white spaces, '-' etc.) is ignored,
+ * function names are case insensitive, closing brackets missing at the end of the expression are assumed and a let
+ * expression may be left open before the next argument of its enclosing function. Expressions are read in the
+ * {@link Dialect#LEGACY} dialect unless another one is given : a let variable written as the last operand of sub or
+ * div is made its first operand, and numbers are range checked on their float value, as that parser did.
+ */
+public class ExpressionCompiler {
+
+    private enum Token {
+        NUMBER, NAME, OPEN_BRACKET, CLOSE_BRACKET, COMMA, END
+    }
+
+    /**
+     * Function whose arguments are being parsed.
+     */
+    private static final class OpenFunction {
+        private ArithmeticFunctions function;
+        // Custom function, when function is null
+        private RegisteredFunction call;
+        private int minimumArguments;
+        private int maximumArguments;
+        // Arguments already parsed, the first one being the value of a let expression
+        private Expression[] arguments = new Expression[3];
+        private int argumentCount;
+        private String variable;
+        private int slot;
+        // Slots assigned before the branches of an if expression, and number of let slots assigned before them (before
+        // the function for other functions)
+        private BitSet assignedBefore;
+        private int letMark;
+    }
+
+    private final CharSequence expression;
+    private final int length;
+    private final boolean allowParameters;
+    private final FunctionRegistry registry;
+    private final Dialect dialect;
+    private final Map<String, Integer> slots;
+    private final List<String> symbols;
+    private final List<Integer> parameters;
+    private final BitSet parameterSlots;
+    // Slots which are already assigned at the current position of the expression
+    private final BitSet assigned;
+    // Slots assigned in a branch of a complete if expression, which can't be read until assigned again
+    private final BitSet conditional;
+    // Slots assigned by let expressions, in order
+    private int[] letSlots;
+    private int letCount;
+    private OpenFunction[] openFunctions;
+    private int position;
+    // Current and maximum nesting of functions
+    private int depth;
+    private int maxDepth;
+    private Token token;
+    private int nameStart;
+    private int nameEnd;
+    private long number;
+
+    private ExpressionCompiler(CharSequence expression, boolean allowParameters, FunctionRegistry registry,
+                               Dialect dialect) {
+        this.expression = expression;
+        this.length = expression.length();
+        this.allowParameters = allowParameters;
+        this.registry = registry;
+        this.dialect = dialect;
+        this.slots = new HashMap<>();
+        this.symbols = new ArrayList<>();
+        this.parameters = new ArrayList<>();
+        this.parameterSlots = new BitSet();
+        this.assigned = new BitSet();
+        this.conditional = new BitSet();
+        this.letSlots = new int[16];
+        this.openFunctions = new OpenFunction[16];
+    }
+
+    /**
+     * Compiles the expression.
+     *
+     * @param expression
+     * @return compiled expression which can be evaluated any number of times
+     * @throws CalculatorException if the expression is not valid
+     */
+    public static CompiledExpression compile(CharSequence expression) throws CalculatorException {
+        return compile(expression, false, FunctionRegistry.getDefault(), Dialect.LEGACY);
+    }
+
+    /**
+     * Compiles the expression read in the given dialect.
+     *
+     * @param expression
+     * @param dialect
+     * @return compiled expression which can be evaluated any number of times
+     * @throws CalculatorException if the expression is not valid
+     */
+    public static CompiledExpression compile(CharSequence expression, Dialect dialect) throws CalculatorException {
+        return compile(expression, false, FunctionRegistry.getDefault(), dialect);
+    }
+
+    /**
+     * Compiles the expression, calling the custom functions of the given registry.
+     *
+     * @param expression
+     * @param registry
+     * @return compiled expression which can be evaluated any number of times
+     * @throws CalculatorException if the expression is not valid
+     */
+    public static CompiledExpression compile(CharSequence expression, FunctionRegistry registry) throws CalculatorException {
+        return compile(expression, false, registry, Dialect.LEGACY);
+    }
+
+    /**
+     * Compiles the expression, variables read before being assigned by a let expression are parameters of the
+     * compiled expression, their values are given when evaluating it.
+     *
+     * @param expression
+     * @return compiled expression which can be evaluated any number of times
+     * @throws CalculatorException if the expression is not valid
+     */
+    public static CompiledExpression compileWithParameters(CharSequence expression) throws CalculatorException {
+        return compile(expression, true, FunctionRegistry.getDefault(), Dialect.LEGACY);
+    }
+
+    /**
+     * Compiles the expression with parameters, read in the given dialect.
+     *
+     * @param expression
+     * @param dialect
+     * @return compiled expression which can be evaluated any number of times
+     * @throws CalculatorException if the expression is not valid
+     */
+    public static CompiledExpression compileWithParameters(CharSequence expression, Dialect dialect)
+            throws CalculatorException {
+        return compile(expression, true, FunctionRegistry.getDefault(), dialect);
+    }
+
+    /**
+     * Compiles the expression with parameters, calling the custom functions of the given registry.
+     *
+     * @param expression
+     * @param registry
+     * @return compiled expression which can be evaluated any number of times
+     * @throws CalculatorException if the expression is not valid
+     */
+    public static CompiledExpression compileWithParameters(CharSequence expression, FunctionRegistry registry)
+            throws CalculatorException {
+        return compile(expression, true, registry, Dialect.LEGACY);
+    }
+
+    private static CompiledExpression compile(CharSequence expression, boolean allowParameters, FunctionRegistry registry,
+                                              Dialect dialect) throws CalculatorException {
+        if (null == expression || expression.length() == 0)
+            throw new CalculatorException(INVALID_EXPRESSION);
+        ExpressionCompiler compiler = new ExpressionCompiler(expression, allowParameters, registry, dialect);
+        compiler.nextToken();
+        Expression root = compiler.parseExpression();
+        // Any extra closing bracket is ignored, anything else after the expression is invalid.
+        while (compiler.token == Token.CLOSE_BRACKET)
+            compiler.nextToken();
+        if (compiler.token != Token.END)
+            throw new CalculatorException(INVALID_EXPRESSION);
+        int[] parameterSlots = compiler.parameters.stream().mapToInt(Integer::intValue).toArray();
+        return new CompiledExpression(expression.toString(), root, compiler.symbols.toArray(new String[0]),
+                parameterSlots, compiler.maxDepth);
+    }
+
+    private Expression parseExpression() throws CalculatorException {
+        while (true) {
+            Expression argument = parseArgument();
+            if (argument == null)
+                // A function was opened, parsing its first argument
+                continue;
+            // Giving the complete argument to the innermost open function, until one needs another argument
+            while (argument != null) {
+                if (depth == 0)
+                    return argument;
+                argument = complete(openFunctions[depth - 1], argument);
+            }
+        }
+    }
+
+    /**
+     * Parses a literal or a variable, or opens a function.
+     *
+     * @return the argument, null if a function was opened
+     * @throws CalculatorException
+     */
+    private Expression parseArgument() throws CalculatorException {
+        switch (token) {
+            case NUMBER:
+                validateNumber(number);
+                Literal literal = new Literal(number);
+                nextToken();
+                return literal;
+            case NAME:
+                int start = nameStart;
+                int end = nameEnd;
+                nextToken();
+                if (token == Token.OPEN_BRACKET) {
+                    nextToken();
+                    ArithmeticFunctions function = ArithmeticFunctions.lookup(expression, start, end);
+                    if (function != null) {
+                        open(function, null, function.getMinimumArguments(), function.getMaximumArguments());
+                    } else {
+                        RegisteredFunction call = registry.lookup(expression.subSequence(start, end).toString());
+                        if (call == null)
+                            throw new CalculatorException(INVALID_FUNCTION);
+                        open(null, call, call.getMinimumArguments(), call.getMaximumArguments());
+                    }
+                    return null;
+                }
+                return parseVariable(expression.subSequence(start, end).toString());
+            default:
+                throw new CalculatorException(INVALID_EXPRESSION);
+        }
+    }
+
+    private void open(ArithmeticFunctions function, RegisteredFunction call, int minimumArguments, int maximumArguments)
+            throws CalculatorException {
+        if (depth == openFunctions.length)
+            openFunctions = Arrays.copyOf(openFunctions, 2 * depth);
+        OpenFunction open = openFunctions[depth];
+        if (open == null)
+            open = openFunctions[depth] = new OpenFunction();
+        open.function = function;
+        open.call = call;
+        open.minimumArguments = minimumArguments;
+        open.maximumArguments = maximumArguments;
+        open.argumentCount = 0;
+        open.letMark = letCount;
+        maxDepth = Math.max(maxDepth, ++depth);
+        if (function == ArithmeticFunctions.LET) {
+            if (token != Token.NAME)
+                throw new CalculatorException(INVALID_EXPRESSION);
+            open.variable = expression.subSequence(nameStart, nameEnd).toString();
+            nextToken();
+            expect(Token.COMMA);
+        }
+    }
+
+    /**
+     * Adds a parsed argument to the open function.
+     *
+     * @param open
+     * @param argument
+     * @return the function once complete, or null if it needs another argument
+     * @throws CalculatorException
+     */
+    private Expression complete(OpenFunction open, Expression argument) throws CalculatorException {
+        if (open.argumentCount == open.arguments.length)
+            open.arguments = Arrays.copyOf(open.arguments, 2 * open.argumentCount);
+        open.arguments[open.argumentCount++] = argument;
+        if (open.function == ArithmeticFunctions.LET)
+            return completeLet(open);
+        if (open.function == ArithmeticFunctions.IF)
+            enterBranch(open);
+        if (open.argumentCount < open.minimumArguments) {
+            expect(Token.COMMA);
+            return null;
+        }
+        if (open.argumentCount < open.maximumArguments && token == Token.COMMA) {
+            nextToken();
+            return null;
+        }
+        Expression[] arguments = Arrays.copyOf(open.arguments, open.argumentCount);
+        // Releasing the arguments, which are now referenced by the result only
+        Arrays.fill(open.arguments, 0, open.argumentCount, null);
+        depth--;
+        Expression result;
+        if (open.function == ArithmeticFunctions.IF)
+            result = new Conditional(arguments[0], arguments[1], arguments[2]);
+        else if (open.function != null)
+            result = new Operation(open.function, legacyOrder(open, arguments));
+        else
+            result = new FunctionCall(open.call, arguments);
+        // Closing bracket can be missing at the end of expression
+        if (token != Token.END)
+            expect(Token.CLOSE_BRACKET);
+        return result;
+    }
+
+    /**
+     * The character by character parser pops a variable read as the last operand before the other operand, so sub and
+     * div get their operands swapped in that case. That parser has no parameters, so they keep their order. The swapped
+     * operands are evaluated in the swapped order too, so operands assigning variables with a let expression keep their
+     * order, as the variable would be read before being assigned.
+     *
+     * @param open
+     * @param arguments
+     * @return
+     */
+    private Expression[] legacyOrder(OpenFunction open, Expression[] arguments) {
+        if (dialect == Dialect.LEGACY && arguments.length == 2 && arguments[1] instanceof VariableReference
+                && (open.function == ArithmeticFunctions.SUB || open.function == ArithmeticFunctions.DIV)
+                && !parameterSlots.get(((VariableReference) arguments[1]).getSlot()) && letCount == open.letMark) {
+            Expression first = arguments[0];
+            arguments[0] = arguments[1];
+            arguments[1] = first;
+        }
+        return arguments;
+    }
+
+    private Expression completeLet(OpenFunction open) throws CalculatorException {
+        if (open.argumentCount == 1) {
+            expect(Token.COMMA);
+            // Variable is assigned only once its value expression is evaluated
+            open.slot = slotOf(open.variable);
+            assigned.set(open.slot);
+            conditional.clear(open.slot);
+            if (letCount == letSlots.length)
+                letSlots = Arrays.copyOf(letSlots, 2 * letCount);
+            letSlots[letCount++] = open.slot;
+            return null;
+        }
+        Expression result = new LetBinding(open.variable, open.slot, open.arguments[0], open.arguments[1]);
+        open.arguments[0] = open.arguments[1] = null;
+        depth--;
+        // Closing bracket of let can be missing, the character by character parser assigns the variable
+        // as soon as its value is computed and doesn't need the let to be closed.
+        if (token != Token.COMMA && token != Token.END)
+            expect(Token.CLOSE_BRACKET);
+        return result;
+    }
+
+    /**
+     * Tracks the variables assigned by the branches of an if expression : both branches start from the variables
+     * assigned before them, and variables assigned in either branch can't be read once the if expression is complete.
+     *
+     * @param open
+     */
+    private void enterBranch(OpenFunction open) {
+        if (open.argumentCount == 1) {
+            if (open.assignedBefore == null)
+                open.assignedBefore = new BitSet();
+            open.assignedBefore.clear();
+            open.assignedBefore.or(assigned);
+            open.letMark = letCount;
+            return;
+        }
+        assigned.clear();
+        assigned.or(open.assignedBefore);
+        if (open.argumentCount == 3) {
+            for (int i = open.letMark; i < letCount; i++) {
+                assigned.clear(letSlots[i]);
+                conditional.set(letSlots[i]);
+            }
+        }
+    }
+
+    private Expression parseVariable(String variable) throws CalculatorException {
+        Integer slot = slots.get(variable);
+        if (slot == null || !assigned.get(slot)) {
+            if (!allowParameters || slot != null && conditional.get(slot))
+                throw new CalculatorException(INVALID_EXPRESSION);
+            // Variable read before any assignment, its value is given by the caller
+            slot = slotOf(variable);
+            if (!parameterSlots.get(slot)) {
+                parameterSlots.set(slot);
+                parameters.add(slot);
+            }
+            assigned.set(slot);
+        }
+        return new VariableReference(variable, slot);
+    }
+
+    private int slotOf(String variable) {
+        Integer slot = slots.get(variable);
+        if (slot == null) {
+            slot = symbols.size();
+            symbols.add(variable);
+            slots.put(variable, slot);
+        }
+        return slot;
+    }
+
+    private void expect(Token expected) throws CalculatorException {
+        if (token != expected)
+            throw new CalculatorException(INVALID_EXPRESSION);
+        nextToken();
+    }
+
+    /**
+     * Reads the next token of the expression, skipping every character which isn't part of a token.
+     * Every character is read once, names are only kept as their start and end index.
+     */
+    private void nextToken() {
+        while (position < length) {
+            char c = expression.charAt(position);
+            if (Character.isDigit(c)) {
+                number = 0;
+                while (position < length && Character.isDigit(c = expression.charAt(position))) {
+                    // Numbers out of Integer range are rejected anyway, so stop accumulating to avoid overflow
+                    if (number <= Integer.MAX_VALUE)
+                        number = 10 * number + Character.digit(c, 10);
+                    position++;
+                }
+                token = Token.NUMBER;
+                return;
+            } else if (Character.isLetter(c)) {
+                nameStart = position;
+                while (position < length && Character.isLetter(expression.charAt(position)))
+                    position++;
+                nameEnd = position;
+                token = Token.NAME;
+                return;
+            }
+            position++;
+            if (c == OPEN_BRACKET) {
+                token = Token.OPEN_BRACKET;
+                return;
+            } else if (c == CLOSE_BRACKET) {
+                token = Token.CLOSE_BRACKET;
+                return;
+            } else if (c == COMMA) {
+                token = Token.COMMA;
+                return;
+            }
+        }
+        token = Token.END;
+    }
+
+    /**
+     * Validates the input numbers.
+     * Number should be within Integer range. The legacy dialect checks its float value, which rounds numbers from
+     * 2147483584 up to Integer.MAX_VALUE, the standard dialect checks the number itself so that the long and exact
+     * modes can use every number up to Integer.MAX_VALUE - 1.
+     *
+     * @param number
+     * @throws CalculatorException
+     */
+    private void validateNumber(long number) throws CalculatorException {
+        if (number >= Integer.MAX_VALUE || number <= Integer.MIN_VALUE
+                || dialect == Dialect.LEGACY && (int) (float) number >= Integer.MAX_VALUE)
+            throw new CalculatorException(OUT_OF_RANGE);
+    }
+}
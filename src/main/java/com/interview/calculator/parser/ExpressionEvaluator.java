@@ -0,0 +1,167 @@
+package com.interview.calculator.parser;
+
+import ch.qos.logback.classic.Logger;
+import com.interview.calculator.cache.ExpressionCache;
+import com.interview.calculator.constants.NumericMode;
+import com.interview.calculator.evaluator.EvaluationContext;
+import com.interview.calculator.evaluator.ExactEvaluator;
+import com.interview.calculator.evaluator.LongEvaluator;
+import com.interview.calculator.evaluator.Program;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.metrics.CalculatorMetrics;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+
+import static com.interview.calculator.constants.Constants.INVALID_EXPRESSION;
+
+/**
+ * Thread safe evaluator of expression strings, a single instance being shared by every thread instead of creating an
+ * {@link ExpressionParser} per expression.
+ * <p>
+ * Approach : The evaluator itself holds no state of any evaluation. Expressions are compiled once into a
+ * {@link Program}, or a {@link LongEvaluator} or {@link ExactEvaluator} for the other modes, kept by the
+ * {@link ExpressionCache}, and every thread runs them in its own {@link EvaluationContext}, so concurrent evaluations
+ * neither share scratch memory nor wait for each other, and once warmed up a float or long evaluation of a cached
+ * expression doesn't allocate.
+ * A context is taken from its thread for the time of an evaluation, so that an evaluation started by a custom function
+ * while another one is running on the same thread uses a new context instead of overwriting the running one.
+ */
+public final class ExpressionEvaluator {
+
+    private static final ExpressionEvaluator DEFAULT = new ExpressionEvaluator(ExpressionCache.getDefault());
+
+    private final ExpressionCache cache;
+    // Context of every thread, null while one of its evaluations is using it
+    private final ThreadLocal<EvaluationContext> contexts = ThreadLocal.withInitial(EvaluationContext::new);
+
+    /**
+     * @param cache : cache of compiled expressions and their programs
+     */
+    public ExpressionEvaluator(ExpressionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Evaluator using the shared cache of compiled expressions.
+     *
+     * @return
+     */
+    public static ExpressionEvaluator getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Computes the result of the expression.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is invalid
+     */
+    public float evaluate(String expression) throws CalculatorException {
+        CalculatorMetrics metrics = CalculatorMetrics.getDefault();
+        if (!metrics.isEnabled())
+            return run(expression);
+        long start = System.nanoTime();
+        try {
+            float result = run(expression);
+            metrics.recordEvaluation(System.nanoTime() - start);
+            return result;
+        } catch (CalculatorException | ArithmeticException e) {
+            metrics.recordError(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the result of the expression with 64 bit integer arithmetic, see {@link LongEvaluator}.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is invalid or a result doesn't fit in a long
+     */
+    public long evaluateLong(String expression) throws CalculatorException {
+        validateExpression(expression);
+        LongEvaluator evaluator = cache.getLongEvaluator(expression);
+        EvaluationContext context = acquireContext();
+        try {
+            return evaluator.evaluate(context);
+        } finally {
+            contexts.set(context);
+        }
+    }
+
+    /**
+     * Computes the exact result of the expression, see {@link ExactEvaluator}.
+     *
+     * @param expression
+     * @return
+     * @throws CalculatorException if the expression is invalid
+     */
+    public BigDecimal evaluateExact(String expression) throws CalculatorException {
+        validateExpression(expression);
+        ExactEvaluator evaluator = cache.getExactEvaluator(expression);
+        EvaluationContext context = acquireContext();
+        try {
+            return evaluator.evaluate(context);
+        } finally {
+            contexts.set(context);
+        }
+    }
+
+    /**
+     * Computes the result of the expression with the arithmetic of the given mode.
+     *
+     * @param expression
+     * @param mode
+     * @return float, long or BigDecimal result depending on the mode
+     * @throws CalculatorException
+     */
+    public Number evaluate(String expression, NumericMode mode) throws CalculatorException {
+        switch (mode) {
+            case LONG:
+                return evaluateLong(expression);
+            case EXACT:
+                return evaluateExact(expression);
+            default:
+                return evaluate(expression);
+        }
+    }
+
+    private float run(String expression) throws CalculatorException {
+        validateExpression(expression);
+        Program program = cache.getProgram(expression);
+        EvaluationContext context = acquireContext();
+        try {
+            return program.evaluate(context);
+        } finally {
+            contexts.set(context);
+        }
+    }
+
+    /**
+     * Takes the context of the thread, to be given back once the evaluation is done.
+     *
+     * @return
+     */
+    private EvaluationContext acquireContext() {
+        EvaluationContext context = contexts.get();
+        if (context == null)
+            // Nested evaluation, the context of the thread is used by the evaluation which started this one
+            return new EvaluationContext();
+        contexts.set(null);
+        return context;
+    }
+
+    private static void validateExpression(String expression) throws CalculatorException {
+        if (null == expression || expression.length() == 0) {
+            LoggerHolder.LOGGER.info("Invalid expression : {}", expression);
+            throw new CalculatorException(INVALID_EXPRESSION);
+        }
+    }
+
+    // Initialized on first use, as only invalid expressions are logged
+    private static final class LoggerHolder {
+        private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(ExpressionEvaluator.class);
+    }
+}
@@ -0,0 +1,149 @@
+package com.interview.calculator.parser;
+
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.interview.calculator.constants.ArithmeticFunctions.IF;
+import static com.interview.calculator.constants.ArithmeticFunctions.LET;
+
+/**
+ * Writes an expression tree back as an expression string, which {@link ExpressionCompiler} compiles into the same tree
+ * in the {@link com.interview.calculator.constants.Dialect#STANDARD} dialect, as operands are written in their order.
+ * <p>
+ * Approach : The tree is written in evaluation order with an explicit stack holding the nodes and the separators still
+ * to write, so that deep trees don't overflow the thread stack. Every function is written with its brackets and
+ * arguments separated by ", ", so the text of equal trees is equal.
+ * <p>
+ * Literals written in an expression are integers of the Integer range, but the optimizer may compute other values. Those
+ * are written as a function computing exactly the same float : sub(0, x) for a negative value, m * 2^e with m an
+ * integer for a value with a fraction or out of the Integer range, and pow functions for infinities and NaN.
+ */
+public final class ExpressionFormatter {
+
+    private static final String SEPARATOR = ", ";
+    private static final String END = ")";
+    // Largest power of 2 whose float value isn't infinite is 2^127, smaller values are divided in steps
+    private static final int MAXIMUM_POWER = 100;
+
+    private ExpressionFormatter() {
+    }
+
+    /**
+     * Writes the compiled expression as an expression string.
+     *
+     * @param expression
+     * @return
+     */
+    public static String format(CompiledExpression expression) {
+        return format(expression.getRoot());
+    }
+
+    /**
+     * Writes the expression tree as an expression string.
+     *
+     * @param root
+     * @return
+     */
+    public static String format(Expression root) {
+        StringBuilder text = new StringBuilder();
+        // Nodes still to write, or strings written as they are
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Object next = pending.pop();
+            if (next instanceof String) {
+                text.append((String) next);
+            } else if (next instanceof Literal) {
+                appendLiteral(text, (Literal) next);
+            } else if (next instanceof VariableReference) {
+                text.append(((VariableReference) next).getName());
+            } else if (next instanceof Operation) {
+                Operation operation = (Operation) next;
+                Expression[] operands = new Expression[operation.getOperandCount()];
+                for (int i = 0; i < operands.length; i++)
+                    operands[i] = operation.getOperand(i);
+                pushFunction(pending, text, operation.getFunction().getValue(), operands);
+            } else if (next instanceof LetBinding) {
+                LetBinding let = (LetBinding) next;
+                text.append(LET.getValue()).append('(').append(let.getName()).append(SEPARATOR);
+                pending.push(END);
+                pending.push(let.getBody());
+                pending.push(SEPARATOR);
+                pending.push(let.getValue());
+            } else if (next instanceof Conditional) {
+                Conditional conditional = (Conditional) next;
+                pushFunction(pending, text, IF.getValue(), conditional.getCondition(), conditional.getValue(),
+                        conditional.getOtherwise());
+            } else {
+                FunctionCall call = (FunctionCall) next;
+                Expression[] arguments = new Expression[call.getArgumentCount()];
+                for (int i = 0; i < arguments.length; i++)
+                    arguments[i] = call.getArgument(i);
+                pushFunction(pending, text, call.getFunction().getName(), arguments);
+            }
+        }
+        return text.toString();
+    }
+
+    private static void pushFunction(Deque<Object> pending, StringBuilder text, String name, Expression... arguments) {
+        text.append(name).append('(');
+        pending.push(END);
+        for (int i = arguments.length - 1; i >= 0; i--) {
+            pending.push(arguments[i]);
+            if (i > 0)
+                pending.push(SEPARATOR);
+        }
+    }
+
+    private static void appendLiteral(StringBuilder text, Literal literal) {
+        if (literal.isInteger() && literal.getIntegerValue() >= 0 && literal.getIntegerValue() < Integer.MAX_VALUE)
+            text.append(literal.getIntegerValue());
+        else
+            appendNumber(text, literal.isInteger() ? literal.getIntegerValue() : literal.getValue());
+    }
+
+    private static void appendNumber(StringBuilder text, float value) {
+        if (Float.isNaN(value)) {
+            // (-1)^0.5
+            text.append("pow(sub(0, 1), div(1, 2))");
+        } else if (Float.floatToRawIntBits(value) == Float.floatToRawIntBits(-0f)) {
+            text.append("mult(sub(0, 1), 0)");
+        } else if (value < 0) {
+            text.append("sub(0, ");
+            appendNumber(text, -value);
+            text.append(')');
+        } else if (Float.isInfinite(value)) {
+            text.append("pow(2, 128)");
+        } else if (value == (int) value && value < Integer.MAX_VALUE) {
+            text.append((int) value);
+        } else {
+            // value = mantissa * 2^exponent, the mantissa being an odd integer of at most 24 bits
+            int exponent = Math.max(Math.getExponent(value), Float.MIN_EXPONENT) - 23;
+            int mantissa = (int) Math.scalb(value, -exponent);
+            while ((mantissa & 1) == 0) {
+                mantissa >>= 1;
+                exponent++;
+            }
+            if (exponent >= 0) {
+                text.append("mult(").append(mantissa).append(", pow(2, ").append(exponent).append("))");
+                return;
+            }
+            // Dividing in steps whose power of 2 is finite, every step being exact as the result is representable
+            int steps = (-exponent + MAXIMUM_POWER - 1) / MAXIMUM_POWER;
+            for (int i = 0; i < steps; i++)
+                text.append("div(");
+            text.append(mantissa);
+            for (int remaining = -exponent; remaining > 0; remaining -= MAXIMUM_POWER)
+                text.append(", pow(2, ").append(Math.min(remaining, MAXIMUM_POWER)).append("))");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.interview.calculator.serialization;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+
+/**
+ * Constants of the binary format of compiled expressions.
+ * <p>
+ * An archive starts with a header : magic number, format version and number of expressions (4 byte ints, big endian),
+ * followed by the offset of every expression record and the offset of the end of the last one, relative to the end of
+ * the offset table. Every record is a sequence of unsigned variable length integers (7 bits per byte, the high bit
+ * telling whether more bytes follow) :
+ * - symbol table : number of symbols, then the length and UTF-8 bytes of every variable name, indexed by slot.
+ * - parameter slots : number of parameters, then the slot of every parameter.
+ * - function table : number of custom functions, then the length and UTF-8 bytes of every function name.
+ * - constant pool : number of constants, then a tag byte and the value of every constant, a zigzag encoded integer for
+ * literals of the expression string or the 4 bytes of a float for literals computed by the optimizer.
+ * - code : number of bytes, then the opcodes of the nodes in postfix order (operands before their function), each one
+ * followed by its arguments.
+ * <p>
+ * The depth of the expression isn't written, it's computed again while decoding so that a corrupted record can't
+ * claim a depth low enough for recursive evaluation of a deep tree.
+ * <p>
+ * Codes of the functions are part of the format, so that reordering the enum doesn't change the meaning of archives
+ * already written. Any change to the layout increments the version.
+ */
+final class BinaryFormat {
+
+    static final int MAGIC = 0x43414C43;
+    static final int VERSION = 1;
+    // Magic number, version and expression count
+    static final int HEADER_SIZE = 12;
+
+    static final byte INTEGER = 0;
+    static final byte FLOAT = 1;
+
+    // Constant index
+    static final int LITERAL = 0;
+    // Slot
+    static final int VARIABLE = 1;
+    // Slot, then pops the value and the body
+    static final int LET = 2;
+    // Pops the condition, value and otherwise
+    static final int IF = 3;
+    // Function table index and argument count, then pops the arguments
+    static final int CALL = 4;
+    // Opcode of a built-in function is OPERATION + its code, followed by the operand count, then pops the operands
+    static final int OPERATION = 16;
+
+    static final ArithmeticFunctions[] FUNCTIONS = {
+            ArithmeticFunctions.ADD, ArithmeticFunctions.SUB, ArithmeticFunctions.MULT, ArithmeticFunctions.DIV,
+            ArithmeticFunctions.MIN, ArithmeticFunctions.MAX, ArithmeticFunctions.MOD, ArithmeticFunctions.POW,
+            ArithmeticFunctions.ABS
+    };
+
+    private BinaryFormat() {
+    }
+
+    static int codeOf(ArithmeticFunctions function) {
+        for (int code = 0; code < FUNCTIONS.length; code++)
+            if (FUNCTIONS[code] == function)
+                return code;
+        throw new IllegalArgumentException("Unsupported function " + function);
+    }
+}
@@ -0,0 +1,175 @@
+package com.interview.calculator.serialization;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.function.FunctionRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
+import static com.interview.calculator.constants.Constants.INVALID_FORMAT;
+import static com.interview.calculator.serialization.BinaryFormat.*;
+
+/**
+ * Set of compiled expressions in a compact binary form, so that processes evaluating the same expressions don't parse
+ * their text again. The layout is described by {@link BinaryFormat}.
+ * <p>
+ * Approach : An archive is written once from compiled expressions. Reading it only checks its header : the file is
+ * mapped in memory and expressions are decoded on demand straight from the mapped buffer, their offset being found in
+ * the offset table, so opening an archive of any size takes constant time and memory, and the pages of the file are
+ * shared by all the processes mapping it. Expressions are decoded into the same trees they were compiled into, the
+ * text of an expression being formatted from its tree by {@link com.interview.calculator.parser.ExpressionFormatter}
+ * in the standard dialect.
+ * <p>
+ * Archives are immutable and can be read by several threads at once.
+ */
+public final class ExpressionArchive {
+
+    private final ByteBuffer buffer;
+    private final int count;
+    // Offset of the first record, right after the offset table
+    private final int recordStart;
+
+    private ExpressionArchive(ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+        this.recordStart = HEADER_SIZE + 4 * (count + 1);
+    }
+
+    /**
+     * Writes the expressions as an archive.
+     *
+     * @param expressions
+     * @param out
+     * @throws IOException
+     */
+    public static void write(Collection<CompiledExpression> expressions, OutputStream out) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] offsets = new int[expressions.size() + 1];
+        int index = 0;
+        for (CompiledExpression expression : expressions) {
+            ExpressionEncoder.encode(expression, records);
+            offsets[++index] = records.size();
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(expressions.size());
+        for (int offset : offsets)
+            data.writeInt(offset);
+        records.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Writes the expressions as an archive file.
+     *
+     * @param expressions
+     * @param path
+     * @throws IOException
+     */
+    public static void write(Collection<CompiledExpression> expressions, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(expressions, out);
+        }
+    }
+
+    /**
+     * Returns the archive of the expressions.
+     *
+     * @param expressions
+     * @return
+     */
+    public static byte[] toByteArray(Collection<CompiledExpression> expressions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(expressions, out);
+        } catch (IOException e) {
+            // Not thrown by a byte array stream
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Maps an archive file in memory, expressions are read from the mapped file when decoded.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     * @throws CalculatorException if the file isn't an archive of this version
+     */
+    public static ExpressionArchive open(Path path) throws IOException, CalculatorException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new CalculatorException(INVALID_FORMAT);
+            // The mapping stays valid once the channel is closed
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads an archive from the remaining bytes of the buffer, which are read in place and shouldn't be modified.
+     *
+     * @param buffer
+     * @return
+     * @throws CalculatorException if the buffer doesn't hold an archive of this version
+     */
+    public static ExpressionArchive wrap(ByteBuffer buffer) throws CalculatorException {
+        // Big endian view whose index 0 is the start of the archive, leaving the caller's buffer untouched
+        ByteBuffer archive = buffer.slice();
+        if (archive.limit() < HEADER_SIZE || archive.getInt(0) != MAGIC || archive.getInt(4) != VERSION)
+            throw new CalculatorException(INVALID_FORMAT);
+        int count = archive.getInt(8);
+        if (count < 0 || count > (archive.limit() - HEADER_SIZE) / 4 - 1)
+            throw new CalculatorException(INVALID_FORMAT);
+        return new ExpressionArchive(archive, count);
+    }
+
+    /**
+     * Number of expressions of the archive.
+     *
+     * @return
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes an expression, custom functions are looked up in the default registry.
+     *
+     * @param index
+     * @return
+     * @throws CalculatorException if the expression can't be decoded
+     */
+    public CompiledExpression get(int index) throws CalculatorException {
+        return get(index, FunctionRegistry.getDefault());
+    }
+
+    /**
+     * Decodes an expression.
+     *
+     * @param index
+     * @param registry : registry of the custom functions called by the expression
+     * @return
+     * @throws CalculatorException if the expression can't be decoded or calls a function which isn't registered
+     */
+    public CompiledExpression get(int index, FunctionRegistry registry) throws CalculatorException {
+        if (index < 0 || index >= count)
+            throw new CalculatorException(INVALID_ARGUMENTS);
+        int start = buffer.getInt(HEADER_SIZE + 4 * index);
+        int end = buffer.getInt(HEADER_SIZE + 4 * index + 4);
+        if (start < 0 || start > end || end > buffer.limit() - recordStart)
+            throw new CalculatorException(INVALID_FORMAT);
+        return ExpressionDecoder.decode(buffer, recordStart + start, recordStart + end, registry);
+    }
+}
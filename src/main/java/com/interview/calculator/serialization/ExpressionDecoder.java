@@ -0,0 +1,271 @@
+package com.interview.calculator.serialization;
+
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import com.interview.calculator.function.FunctionRegistry;
+import com.interview.calculator.function.RegisteredFunction;
+import com.interview.calculator.parser.ExpressionFormatter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.interview.calculator.constants.Constants.INVALID_FORMAT;
+import static com.interview.calculator.constants.Constants.INVALID_FUNCTION;
+import static com.interview.calculator.serialization.BinaryFormat.*;
+
+/**
+ * Reads the record of a compiled expression, see {@link BinaryFormat}.
+ * <p>
+ * Approach : The record is read in place with the absolute get methods of the buffer, so a mapped file isn't copied to
+ * the heap and the buffer can be shared by threads. The postfix code is turned back into a tree with a stack of nodes :
+ * a literal or variable is pushed, a function pops its operands and pushes itself. Only variable and function names
+ * are copied, into Strings.
+ * <p>
+ * The source of a decoded expression is formatted from its tree when first read, so decoding doesn't pay for it.
+ */
+final class ExpressionDecoder {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final FunctionRegistry registry;
+    private int position;
+    private Expression[] stack = new Expression[16];
+    // Nesting of functions of every node of the stack
+    private int[] depths = new int[16];
+    private int stackSize;
+    private int poppedDepth;
+
+    private ExpressionDecoder(ByteBuffer buffer, int position, int limit, FunctionRegistry registry) {
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
+        this.registry = registry;
+    }
+
+    /**
+     * Reads the record between the given offsets of the buffer.
+     *
+     * @param buffer
+     * @param start    : offset of the record
+     * @param end      : offset after the record
+     * @param registry : registry of the custom functions called by the expression
+     * @return
+     * @throws CalculatorException if the record is invalid or calls a function which isn't registered
+     */
+    static CompiledExpression decode(ByteBuffer buffer, int start, int end, FunctionRegistry registry)
+            throws CalculatorException {
+        try {
+            return new ExpressionDecoder(buffer, start, end, registry).decode();
+        } catch (IndexOutOfBoundsException | ClassCastException | NegativeArraySizeException e) {
+            throw new CalculatorException(INVALID_FORMAT);
+        }
+    }
+
+    private CompiledExpression decode() throws CalculatorException {
+        String[] symbols = new String[readSize()];
+        for (int i = 0; i < symbols.length; i++)
+            symbols[i] = readString();
+        int[] parameterSlots = new int[readSize()];
+        for (int i = 0; i < parameterSlots.length; i++)
+            parameterSlots[i] = readSlot(symbols);
+        RegisteredFunction[] functions = new RegisteredFunction[readSize()];
+        for (int i = 0; i < functions.length; i++) {
+            functions[i] = registry.lookup(readString());
+            if (functions[i] == null)
+                throw new CalculatorException(INVALID_FUNCTION);
+        }
+        Literal[] constants = new Literal[readSize()];
+        for (int i = 0; i < constants.length; i++) {
+            byte tag = readByte();
+            if (tag == INTEGER) {
+                long value = readVarint();
+                constants[i] = new Literal(value >>> 1 ^ -(value & 1));
+            } else if (tag == FLOAT) {
+                constants[i] = new Literal(Float.intBitsToFloat(buffer.getInt(checked(4))));
+            } else {
+                throw new CalculatorException(INVALID_FORMAT);
+            }
+        }
+        int codeEnd = readCount();
+        codeEnd += position;
+        if (codeEnd != limit)
+            throw new CalculatorException(INVALID_FORMAT);
+        while (position < codeEnd) {
+            int opcode = readByte() & 0xFF;
+            switch (opcode) {
+                case LITERAL:
+                    push(constants[readCount()], 0);
+                    break;
+                case VARIABLE:
+                    int slot = readSlot(symbols);
+                    push(new VariableReference(symbols[slot], slot), 0);
+                    break;
+                case LET:
+                    slot = readSlot(symbols);
+                    Expression[] operands = pop(2);
+                    push(new LetBinding(symbols[slot], slot, operands[0], operands[1]), poppedDepth + 1);
+                    break;
+                case IF:
+                    operands = pop(3);
+                    push(new Conditional(operands[0], operands[1], operands[2]), poppedDepth + 1);
+                    break;
+                case CALL:
+                    RegisteredFunction function = functions[readCount()];
+                    operands = pop(readArgumentCount(function.getMinimumArguments(), function.getMaximumArguments()));
+                    push(new FunctionCall(function, operands), poppedDepth + 1);
+                    break;
+                default:
+                    if (opcode < OPERATION || opcode >= OPERATION + FUNCTIONS.length)
+                        throw new CalculatorException(INVALID_FORMAT);
+                    ArithmeticFunctions arithmetic = FUNCTIONS[opcode - OPERATION];
+                    operands = pop(readArgumentCount(arithmetic.getMinimumArguments(), arithmetic.getMaximumArguments()));
+                    push(new Operation(arithmetic, operands), poppedDepth + 1);
+            }
+        }
+        if (stackSize != 1)
+            throw new CalculatorException(INVALID_FORMAT);
+        Expression root = stack[0];
+        return new CompiledExpression(new FormattedSource(root), root, symbols, parameterSlots, depths[0]);
+    }
+
+    private void push(Expression node, int depth) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stackSize);
+            depths = Arrays.copyOf(depths, 2 * stackSize);
+        }
+        depths[stackSize] = depth;
+        stack[stackSize++] = node;
+    }
+
+    /**
+     * Pops the operands of a function, keeping their maximum depth in poppedDepth.
+     */
+    private Expression[] pop(int count) throws CalculatorException {
+        if (count == 0 || count > stackSize)
+            throw new CalculatorException(INVALID_FORMAT);
+        stackSize -= count;
+        Expression[] operands = Arrays.copyOfRange(stack, stackSize, stackSize + count);
+        Arrays.fill(stack, stackSize, stackSize + count, null);
+        poppedDepth = 0;
+        for (int i = stackSize; i < stackSize + count; i++)
+            poppedDepth = Math.max(poppedDepth, depths[i]);
+        return operands;
+    }
+
+    private int readArgumentCount(int minimum, int maximum) throws CalculatorException {
+        int count = readCount();
+        if (count < minimum || count > maximum)
+            throw new CalculatorException(INVALID_FORMAT);
+        return count;
+    }
+
+    private int readSlot(String[] symbols) throws CalculatorException {
+        int slot = readCount();
+        if (slot >= symbols.length)
+            throw new CalculatorException(INVALID_FORMAT);
+        return slot;
+    }
+
+    private String readString() throws CalculatorException {
+        int length = readCount();
+        int start = checked(length);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte readByte() {
+        return buffer.get(checked(1));
+    }
+
+    /**
+     * Reads a count, size or index, which fits in a positive int.
+     */
+    private int readCount() throws CalculatorException {
+        long value = readVarint();
+        if (value > Integer.MAX_VALUE)
+            throw new CalculatorException(INVALID_FORMAT);
+        return (int) value;
+    }
+
+    /**
+     * Reads the size of a table, every entry taking at least one byte, so that a corrupted size can't allocate more
+     * than the size of the record.
+     */
+    private int readSize() throws CalculatorException {
+        int size = readCount();
+        if (size > limit - position)
+            throw new CalculatorException(INVALID_FORMAT);
+        return size;
+    }
+
+    private long readVarint() throws CalculatorException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new CalculatorException(INVALID_FORMAT);
+    }
+
+    /**
+     * Moves past the given number of bytes.
+     *
+     * @return offset of the first byte
+     */
+    private int checked(int length) {
+        if (length > limit - position)
+            throw new IndexOutOfBoundsException();
+        int start = position;
+        position += length;
+        return start;
+    }
+
+    /**
+     * Text of a decoded expression, formatted from its tree once needed.
+     */
+    private static final class FormattedSource implements CharSequence {
+
+        private final Expression root;
+        private volatile String text;
+
+        private FormattedSource(Expression root) {
+            this.root = root;
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            String value = text;
+            if (value == null)
+                text = value = ExpressionFormatter.format(root);
+            return value;
+        }
+    }
+}
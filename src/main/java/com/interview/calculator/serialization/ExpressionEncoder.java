@@ -0,0 +1,164 @@
+package com.interview.calculator.serialization;
+
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import com.interview.calculator.function.RegisteredFunction;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.interview.calculator.serialization.BinaryFormat.*;
+
+/**
+ * Writes the record of a compiled expression, see {@link BinaryFormat}.
+ * <p>
+ * Approach : The nodes are listed with an explicit stack, every node followed by its operands from the last to the first
+ * one, so that the list read backwards is the postfix order, without recursion over deep trees. Constants and custom
+ * functions are added to their table the first time they are met.
+ */
+final class ExpressionEncoder {
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Literal> constants = new ArrayList<>();
+    private final Map<Long, Integer> integerIndexes = new HashMap<>();
+    private final Map<Integer, Integer> floatIndexes = new HashMap<>();
+    private final Map<RegisteredFunction, Integer> functions = new LinkedHashMap<>();
+
+    private ExpressionEncoder() {
+    }
+
+    /**
+     * Appends the record of the expression.
+     *
+     * @param expression
+     * @param out
+     */
+    static void encode(CompiledExpression expression, ByteArrayOutputStream out) {
+        ExpressionEncoder encoder = new ExpressionEncoder();
+        List<Expression> nodes = reversePostfix(expression.getRoot());
+        for (int i = nodes.size() - 1; i >= 0; i--)
+            encoder.writeNode(nodes.get(i));
+
+        String[] symbols = expression.getSymbols();
+        writeVarint(out, symbols.length);
+        for (String symbol : symbols)
+            writeString(out, symbol);
+        int[] parameterSlots = expression.getParameterSlots();
+        writeVarint(out, parameterSlots.length);
+        for (int slot : parameterSlots)
+            writeVarint(out, slot);
+        writeVarint(out, encoder.functions.size());
+        for (RegisteredFunction function : encoder.functions.keySet())
+            writeString(out, function.getName());
+        writeVarint(out, encoder.constants.size());
+        for (Literal constant : encoder.constants) {
+            if (constant.isInteger()) {
+                out.write(INTEGER);
+                long value = constant.getIntegerValue();
+                // Zigzag encoding, so that small negative values take few bytes too
+                writeVarint(out, value << 1 ^ value >> 63);
+            } else {
+                out.write(FLOAT);
+                int bits = Float.floatToRawIntBits(constant.getValue());
+                out.write(bits >>> 24);
+                out.write(bits >>> 16);
+                out.write(bits >>> 8);
+                out.write(bits);
+            }
+        }
+        byte[] code = encoder.code.toByteArray();
+        writeVarint(out, code.length);
+        out.write(code, 0, code.length);
+    }
+
+    private static List<Expression> reversePostfix(Expression root) {
+        List<Expression> nodes = new ArrayList<>();
+        Deque<Expression> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expression node = pending.pop();
+            nodes.add(node);
+            if (node instanceof Operation) {
+                Operation operation = (Operation) node;
+                for (int i = 0; i < operation.getOperandCount(); i++)
+                    pending.push(operation.getOperand(i));
+            } else if (node instanceof LetBinding) {
+                pending.push(((LetBinding) node).getValue());
+                pending.push(((LetBinding) node).getBody());
+            } else if (node instanceof Conditional) {
+                Conditional conditional = (Conditional) node;
+                pending.push(conditional.getCondition());
+                pending.push(conditional.getValue());
+                pending.push(conditional.getOtherwise());
+            } else if (node instanceof FunctionCall) {
+                FunctionCall call = (FunctionCall) node;
+                for (int i = 0; i < call.getArgumentCount(); i++)
+                    pending.push(call.getArgument(i));
+            }
+        }
+        return nodes;
+    }
+
+    private void writeNode(Expression node) {
+        if (node instanceof Literal) {
+            code.write(LITERAL);
+            writeVarint(code, constantIndex((Literal) node));
+        } else if (node instanceof VariableReference) {
+            code.write(VARIABLE);
+            writeVarint(code, ((VariableReference) node).getSlot());
+        } else if (node instanceof LetBinding) {
+            code.write(LET);
+            writeVarint(code, ((LetBinding) node).getSlot());
+        } else if (node instanceof Conditional) {
+            code.write(IF);
+        } else if (node instanceof Operation) {
+            Operation operation = (Operation) node;
+            code.write(OPERATION + codeOf(operation.getFunction()));
+            writeVarint(code, operation.getOperandCount());
+        } else {
+            FunctionCall call = (FunctionCall) node;
+            code.write(CALL);
+            writeVarint(code, functions.computeIfAbsent(call.getFunction(), function -> functions.size()));
+            writeVarint(code, call.getArgumentCount());
+        }
+    }
+
+    private int constantIndex(Literal literal) {
+        if (literal.isInteger())
+            return integerIndexes.computeIfAbsent(literal.getIntegerValue(), value -> addConstant(literal));
+        // Keyed by bits, so that 0 and -0 or different NaNs are kept apart
+        return floatIndexes.computeIfAbsent(Float.floatToRawIntBits(literal.getValue()), bits -> addConstant(literal));
+    }
+
+    private int addConstant(Literal literal) {
+        constants.add(literal);
+        return constants.size() - 1;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,381 @@
+package com.interview.calculator.server;
+
+import ch.qos.logback.classic.Logger;
+import com.interview.calculator.batch.BatchEvaluator;
+import com.interview.calculator.batch.EvaluationResult;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.stream.ExpressionStreamProcessor;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.interview.calculator.constants.Constants.LINE_TOO_LONG;
+
+/**
+ * Long running server evaluating expressions sent over a local TCP socket.
+ * <p>
+ * Protocol : Clients send newline delimited expressions and receive one result line per expression, in the same order
+ * and in the same format as the --stream mode (OK and the value, or ERROR and the error message, tab separated).
+ * Requests can be pipelined : a client may send any number of expressions before reading the results.
+ * A line longer than the maximum line length is answered with an error and the connection is closed.
+ * <p>
+ * Approach : A single selector thread accepts the connections on the loopback address, reads their bytes and splits
+ * them into lines, and writes the results back, without ever blocking on a client. Lines are evaluated by a fixed pool
+ * of worker threads, at most one task per connection at a time so that results keep the order of the expressions :
+ * - a worker evaluates every line received so far and hands the results of all of them to the selector thread, so
+ * pipelined requests are answered with few writes.
+ * - reading from a connection is paused while it has too many lines waiting or the client doesn't read its results,
+ * so a client can't make the server buffer an unbounded amount of data.
+ * - connections above the maximum number of connections are closed as soon as they are accepted.
+ * Idle connections only cost their buffers, whatever their number the server uses the same threads.
+ */
+public class CalculatorServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_MAXIMUM_CONNECTIONS = 4_096;
+    public static final int DEFAULT_MAXIMUM_LINE_LENGTH = 1 << 16;
+    private static final Logger LOGGER = (Logger) LoggerFactory.getLogger(CalculatorServer.class);
+    private static final int BUFFER_SIZE = 1 << 14;
+    private static final int INITIAL_LINE_LENGTH = 256;
+    // Lines of a connection waiting for a worker before reading from it is paused
+    private static final int MAXIMUM_PENDING_LINES = 1_024;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final BatchEvaluator evaluator;
+    private final ExecutorService workers;
+    private final int maximumConnections;
+    private final int maximumLineLength;
+    // Connections whose results are ready, written by the selector thread
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Thread selectorThread;
+    private int connectionCount;
+    private volatile boolean running;
+
+    /**
+     * Binds the server to the given port of the loopback address, port 0 picks any free port.
+     *
+     * @param port
+     * @throws IOException
+     */
+    public CalculatorServer(int port) throws IOException {
+        this(port, new BatchEvaluator());
+    }
+
+    public CalculatorServer(int port, BatchEvaluator evaluator) throws IOException {
+        this(port, evaluator, Runtime.getRuntime().availableProcessors(), DEFAULT_MAXIMUM_CONNECTIONS,
+                DEFAULT_MAXIMUM_LINE_LENGTH);
+    }
+
+    /**
+     * @param port               : port of the loopback address, 0 picks any free port
+     * @param evaluator          : evaluator of the expressions
+     * @param workers            : number of threads evaluating expressions
+     * @param maximumConnections : connections above this number are closed once accepted
+     * @param maximumLineLength  : maximum length of a line in bytes, without its line separator
+     * @throws IOException
+     */
+    public CalculatorServer(int port, BatchEvaluator evaluator, int workers, int maximumConnections,
+                            int maximumLineLength) throws IOException {
+        if (workers <= 0 || maximumConnections <= 0 || maximumLineLength <= 0)
+            throw new IllegalArgumentException("Workers, connections and line length should be positive");
+        this.evaluator = evaluator;
+        this.maximumConnections = maximumConnections;
+        this.maximumLineLength = maximumLineLength;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "calculator-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selectorThread = new Thread(this::select, "calculator-selector");
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        running = true;
+        selectorThread.start();
+        LOGGER.info("Calculator server listening on port : {}", getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the connections being served.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (running) {
+            running = false;
+            selector.wakeup();
+            try {
+                selectorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            closeChannels();
+        }
+        workers.shutdownNow();
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = writable.poll()) != null)
+                    write(connection);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else if (key.isReadable())
+                        read((Connection) key.attachment());
+                    else if (key.isWritable())
+                        write((Connection) key.attachment());
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running)
+                LOGGER.error("Calculator server stopped : {}", e.getMessage());
+        } finally {
+            closeChannels();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (connectionCount >= maximumConnections) {
+                LOGGER.warn("Connection refused, {} connections already open", connectionCount);
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connectionCount++;
+        }
+    }
+
+    /**
+     * Reads the bytes available from the connection, and hands the complete lines to a worker.
+     */
+    private void read(Connection connection) {
+        int count;
+        try {
+            input.clear();
+            count = connection.channel.read(input);
+        } catch (IOException e) {
+            LOGGER.debug("Connection closed : {}", e.getMessage());
+            close(connection);
+            return;
+        }
+        input.flip();
+        List<String> lines = new ArrayList<>();
+        boolean tooLong = false;
+        while (input.hasRemaining() && !tooLong) {
+            byte b = input.get();
+            if (b == '\n') {
+                lines.add(connection.takeLine());
+            } else if (connection.lineLength == maximumLineLength) {
+                tooLong = true;
+            } else {
+                connection.append(b);
+            }
+        }
+        // End of the input, the last line may have no line separator
+        boolean ended = count < 0;
+        if (ended && connection.lineLength > 0)
+            lines.add(connection.takeLine());
+        boolean evaluate;
+        synchronized (connection) {
+            connection.lines.addAll(lines);
+            if (tooLong)
+                connection.lineTooLong = true;
+            if (ended || tooLong)
+                connection.closing = true;
+            evaluate = !connection.evaluating && (!connection.lines.isEmpty() || tooLong);
+            if (evaluate)
+                connection.evaluating = true;
+            if (connection.closing || connection.lines.size() >= MAXIMUM_PENDING_LINES)
+                connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+        if (evaluate)
+            workers.execute(() -> evaluate(connection));
+        else if (connection.closing)
+            write(connection);
+    }
+
+    /**
+     * Evaluates the lines of the connection until none is left, run by a worker.
+     */
+    private void evaluate(Connection connection) {
+        while (true) {
+            String[] lines;
+            boolean tooLong;
+            synchronized (connection) {
+                if (connection.lines.isEmpty() && !connection.lineTooLong) {
+                    connection.evaluating = false;
+                    break;
+                }
+                lines = connection.lines.toArray(new String[0]);
+                connection.lines.clear();
+                tooLong = connection.lineTooLong;
+                connection.lineTooLong = false;
+            }
+            StringBuilder results = new StringBuilder();
+            for (String line : lines)
+                results.append(ExpressionStreamProcessor.format(evaluator.evaluate(line))).append('\n');
+            if (tooLong)
+                results.append(ExpressionStreamProcessor.format(
+                        EvaluationResult.failure(null, new CalculatorException(LINE_TOO_LONG)))).append('\n');
+            connection.output.add(ByteBuffer.wrap(results.toString().getBytes(StandardCharsets.UTF_8)));
+            writable.add(connection);
+            selector.wakeup();
+        }
+        // Results of the last lines may be written already, the connection may have to be closed now
+        writable.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Writes the results of the connection, run by the selector thread.
+     * Reading is paused until every result is written, and resumed unless the connection is closing.
+     */
+    private void write(Connection connection) {
+        if (!connection.key.isValid())
+            return;
+        try {
+            ByteBuffer output;
+            while ((output = connection.output.peek()) != null) {
+                connection.channel.write(output);
+                if (output.hasRemaining()) {
+                    connection.key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.output.poll();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Connection closed : {}", e.getMessage());
+            close(connection);
+            return;
+        }
+        synchronized (connection) {
+            if (!connection.closing) {
+                connection.key.interestOps(connection.lines.size() < MAXIMUM_PENDING_LINES ? SelectionKey.OP_READ : 0);
+                return;
+            }
+            if (connection.evaluating || !connection.lines.isEmpty() || connection.lineTooLong) {
+                connection.key.interestOps(0);
+                return;
+            }
+        }
+        close(connection);
+    }
+
+    private void close(Connection connection) {
+        if (!connection.key.isValid())
+            return;
+        connection.key.cancel();
+        connectionCount--;
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to close connection : {}", e.getMessage());
+        }
+    }
+
+    private void closeChannels() {
+        try {
+            for (SelectionKey key : selector.keys())
+                key.channel().close();
+            selector.close();
+            serverChannel.close();
+        } catch (IOException | ClosedSelectorException e) {
+            LOGGER.warn("Unable to stop calculator server : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * State of a client connection.
+     * The line being read is only used by the selector thread, the lines waiting for a worker and the flags are guarded
+     * by the connection itself.
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private byte[] line = new byte[INITIAL_LINE_LENGTH];
+        private int lineLength;
+        private final Deque<String> lines = new ArrayDeque<>();
+        // A worker is evaluating the lines of this connection
+        private boolean evaluating;
+        // The last line was too long, the error is answered after the results of the lines before it
+        private boolean lineTooLong;
+        // The client won't send more lines, the connection is closed once every result is written
+        private boolean closing;
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void append(byte b) {
+            if (lineLength == line.length)
+                line = Arrays.copyOf(line, 2 * line.length);
+            line[lineLength++] = b;
+        }
+
+        private String takeLine() {
+            int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+            lineLength = 0;
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.interview.calculator.server;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for the {@link CalculatorServer}, measuring latency percentiles of the requests.
+ * <p>
+ * Approach : Every client opens its own connection and sends the expression, waits for the result and sends it
+ * again, recording the latency of every request. Latencies of all the clients are then merged and sorted to compute
+ * the percentiles.
+ */
+public class LoadGenerator {
+
+    private final String host;
+    private final int port;
+    private final int clients;
+    private final int requestsPerClient;
+    private final byte[] request;
+
+    public LoadGenerator(String host, int port, int clients, int requestsPerClient, String expression) {
+        if (clients <= 0 || requestsPerClient <= 0)
+            throw new IllegalArgumentException("Clients and requests should be positive");
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.requestsPerClient = requestsPerClient;
+        this.request = (expression + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs every client until all the requests are answered.
+     *
+     * @return
+     * @throws IOException          if a client can't connect or the connection is closed
+     * @throws InterruptedException
+     */
+    public Report run() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            long start = System.nanoTime();
+            List<Future<ClientResult>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++)
+                futures.add(executor.submit(this::runClient));
+            long[] latencies = new long[clients * requestsPerClient];
+            int errors = 0;
+            for (int i = 0; i < clients; i++) {
+                ClientResult result = futures.get(i).get();
+                System.arraycopy(result.latencies, 0, latencies, i * requestsPerClient, requestsPerClient);
+                errors += result.errors;
+            }
+            return new Report(latencies, errors, System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ClientResult runClient() throws IOException {
+        ClientResult result = new ClientResult(requestsPerClient);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream output = socket.getOutputStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < requestsPerClient; i++) {
+                long start = System.nanoTime();
+                output.write(request);
+                output.flush();
+                String response = reader.readLine();
+                result.latencies[i] = System.nanoTime() - start;
+                if (response == null)
+                    throw new EOFException("Connection closed by server");
+                if (!response.startsWith("OK"))
+                    result.errors++;
+            }
+        }
+        return result;
+    }
+
+    private static final class ClientResult {
+        private final long[] latencies;
+        private int errors;
+
+        private ClientResult(int requests) {
+            this.latencies = new long[requests];
+        }
+    }
+
+    /**
+     * Throughput and latency percentiles of a load test.
+     */
+    public static final class Report {
+
+        private final long[] latencies;
+        private final int errors;
+        private final long elapsedNanos;
+
+        private Report(long[] latencies, int errors, long elapsedNanos) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            Arrays.sort(latencies);
+        }
+
+        public int getRequestCount() {
+            return latencies.length;
+        }
+
+        public int getErrorCount() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return latencies.length * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * Latency in microseconds under which the given percentage of requests completed.
+         *
+         * @param percentile : between 0 and 100
+         * @return
+         */
+        public double getLatencyMicros(double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throughput=%.0f/s p50=%.1fus p99=%.1fus max=%.1fus",
+                    getRequestCount(), errors, getThroughput(), getLatencyMicros(50), getLatencyMicros(99),
+                    getLatencyMicros(100));
+        }
+    }
+}
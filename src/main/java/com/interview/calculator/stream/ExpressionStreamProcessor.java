@@ -0,0 +1,192 @@
+package com.interview.calculator.stream;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import com.interview.calculator.batch.EvaluationResult;
+import com.interview.calculator.exception.CalculatorException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.interview.calculator.constants.Constants.LINE_TOO_LONG;
+
+/**
+ * Evaluates newline delimited expressions read from a stream and writes one result line per expression.
+ * <p>
+ * Approach : Lines are read in chunks of a fixed number of expressions, every chunk is evaluated in parallel by the
+ * {@link BatchEvaluator} and its results are written before the next chunk is read. Memory use only depends on the
+ * chunk size, not on the size of the input, and results are written in input order.
+ * <p>
+ * Lines are split from the characters read in blocks, so that a line longer than the maximum line length is never
+ * buffered whole : its characters are skipped up to the next line separator and its result is an error.
+ * <p>
+ * Result lines have two tab separated fields : OK and the value, or ERROR and the error message, e.g.
+ * <pre>
+ * OK    3.0
+ * ERROR Can't divide by zero
+ * </pre>
+ */
+public class ExpressionStreamProcessor {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+    // In characters, without line separator
+    public static final int DEFAULT_MAXIMUM_LINE_LENGTH = 1 << 16;
+    static final String OK = "OK";
+    static final String ERROR = "ERROR";
+    private static final char SEPARATOR = '\t';
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private final BatchEvaluator evaluator;
+    private final int chunkSize;
+    private final int maximumLineLength;
+
+    public ExpressionStreamProcessor() {
+        this(new BatchEvaluator(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ExpressionStreamProcessor(BatchEvaluator evaluator, int chunkSize) {
+        this(evaluator, chunkSize, DEFAULT_MAXIMUM_LINE_LENGTH);
+    }
+
+    /**
+     * @param evaluator         : evaluator of the expressions
+     * @param chunkSize         : number of lines evaluated at once
+     * @param maximumLineLength : maximum length of a line in characters, without its line separator
+     */
+    public ExpressionStreamProcessor(BatchEvaluator evaluator, int chunkSize, int maximumLineLength) {
+        if (chunkSize <= 0 || maximumLineLength <= 0)
+            throw new IllegalArgumentException("Chunk size and line length should be positive");
+        this.evaluator = evaluator;
+        this.chunkSize = chunkSize;
+        this.maximumLineLength = maximumLineLength;
+    }
+
+    /**
+     * Evaluates every line of the reader and writes the results to the writer. The writer is flushed, not closed.
+     * Lines longer than the maximum line length aren't evaluated, their result is a line too long error.
+     *
+     * @param reader
+     * @param writer
+     * @return number of lines, evaluated or too long
+     * @throws IOException
+     */
+    public long process(BufferedReader reader, Writer writer) throws IOException {
+        // Lines too long are kept as null, so that their error is written in input order
+        List<String> chunk = new ArrayList<>(chunkSize);
+        long count = 0;
+        LineReader lines = new LineReader(reader, maximumLineLength);
+        while (lines.next()) {
+            chunk.add(lines.line());
+            if (chunk.size() == chunkSize) {
+                count += write(chunk, writer);
+                chunk.clear();
+            }
+        }
+        count += write(chunk, writer);
+        writer.flush();
+        return count;
+    }
+
+    private int write(List<String> chunk, Writer writer) throws IOException {
+        List<String> expressions = new ArrayList<>(chunk.size());
+        for (String line : chunk)
+            if (line != null)
+                expressions.add(line);
+        List<EvaluationResult> results = evaluator.evaluate(expressions);
+        int next = 0;
+        for (String line : chunk) {
+            EvaluationResult result = line != null ? results.get(next++)
+                    : EvaluationResult.failure(null, new CalculatorException(LINE_TOO_LONG));
+            writer.append(format(result)).append('\n');
+        }
+        return chunk.size();
+    }
+
+    /**
+     * Formats the result as a line of output, without line separator.
+     *
+     * @param result
+     * @return
+     */
+    public static String format(EvaluationResult result) {
+        if (result.isSuccess())
+            return OK + SEPARATOR + result.getValue();
+        return ERROR + SEPARATOR + result.getError().getMessage();
+    }
+
+    /**
+     * Splits lines ended by \n, \r or \r\n like {@link BufferedReader#readLine()}, keeping at most the maximum line
+     * length of a line.
+     */
+    private static final class LineReader {
+
+        private final Reader reader;
+        private final int maximumLength;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        // Previous line ended with \r, a \n following it ends no line
+        private boolean skipLineFeed;
+        private boolean tooLong;
+
+        private LineReader(Reader reader, int maximumLength) {
+            this.reader = reader;
+            this.maximumLength = maximumLength;
+        }
+
+        /**
+         * Reads the next line.
+         *
+         * @return false at the end of the input
+         * @throws IOException
+         */
+        private boolean next() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            boolean started = false;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(0, reader.read(buffer, 0, buffer.length));
+                    position = 0;
+                    if (limit == 0)
+                        return started;
+                }
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (buffer[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+                started = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n' && buffer[position] != '\r')
+                    position++;
+                if (!tooLong) {
+                    tooLong = line.length() + position - start > maximumLength;
+                    if (tooLong)
+                        line.setLength(0);
+                    else
+                        line.append(buffer, start, position - start);
+                }
+                if (position < limit) {
+                    skipLineFeed = buffer[position++] == '\r';
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Line read by {@link #next()}.
+         *
+         * @return null if the line is longer than the maximum length
+         */
+        private String line() {
+            return tooLong ? null : line.toString();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.interview.calculator.batch;
+
+import com.interview.calculator.cache.ExpressionCache;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.function.FunctionRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.interview.calculator.constants.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchEvaluatorTest {
+
+    @Test
+    void resultsInInputOrder() {
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++)
+            expressions.add("let(a, " + i + ", add(a, 1))");
+        List<EvaluationResult> results = new BatchEvaluator().evaluate(expressions);
+        assertEquals(expressions.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(expressions.get(i), results.get(i).getExpression());
+            assertEquals(i + 1, results.get(i).getValue());
+        }
+    }
+
+    @Test
+    void invalidExpressionsDontAbortBatch() {
+        List<EvaluationResult> results = new BatchEvaluator().evaluate(
+                Arrays.asList("add(1,2)", "div(6, 0)", "sqrt(1, 2)", "", "mult(2,3)"));
+        assertEquals(3, results.get(0).getValue());
+        assertEquals(ArithmeticException.class, results.get(1).getError().getClass());
+        assertEquals(DIVIDE_BY_ZERO, results.get(1).getError().getMessage());
+        assertEquals(CalculatorException.class, results.get(2).getError().getClass());
+        assertEquals(INVALID_FUNCTION, results.get(2).getError().getMessage());
+        assertEquals(INVALID_EXPRESSION, results.get(3).getError().getMessage());
+        assertFalse(results.get(3).isSuccess());
+        assertThrows(IllegalStateException.class, () -> results.get(3).getValue());
+        assertEquals(6, results.get(4).getValue());
+    }
+
+    @Test
+    void failingCustomFunctionsDontAbortBatch() {
+        FunctionRegistry registry = FunctionRegistry.getDefault();
+        registry.register("fails", 1, 1, arguments -> {
+            throw new IllegalStateException("Failed on " + arguments[0]);
+        });
+        registry.register("overflows", 1, 1, arguments -> {
+            throw new StackOverflowError();
+        });
+        try {
+            List<EvaluationResult> results = new BatchEvaluator().evaluate(
+                    Arrays.asList("add(1,2)", "fails(1)", "overflows(1)", "mult(2,3)"));
+            assertEquals(3, results.get(0).getValue());
+            assertEquals(IllegalStateException.class, results.get(1).getError().getClass());
+            assertEquals("Failed on 1.0", results.get(1).getError().getMessage());
+            assertEquals(TOO_DEEP, results.get(2).getError().getMessage());
+            assertEquals(6, results.get(3).getValue());
+        } finally {
+            registry.unregister("fails");
+            registry.unregister("overflows");
+        }
+    }
+
+    @Test
+    void sharedEvaluation() {
+        List<String> expressions = Arrays.asList("add(mult(2,3), 1)", "sqrt(1, 2)", "sub(mult(3, 2), 1)", "div(mult(2,3), 0)");
+        List<EvaluationResult> results = new BatchEvaluator().evaluateShared(expressions);
+        assertEquals(7, results.get(0).getValue());
+        assertEquals(INVALID_FUNCTION, results.get(1).getError().getMessage());
+        assertEquals(5, results.get(2).getValue());
+        assertEquals(DIVIDE_BY_ZERO, results.get(3).getError().getMessage());
+    }
+
+    @Test
+    void sharedEvaluationOfUnsupportedExpressions() {
+        FunctionRegistry registry = FunctionRegistry.getDefault();
+        registry.register("twice", 1, 1, arguments -> 2 * arguments[0]);
+        // Counts the tasks run, a single chunk is needed for the unsupported expressions
+        AtomicInteger tasks = new AtomicInteger();
+        BatchEvaluator evaluator = new BatchEvaluator(task -> {
+            tasks.incrementAndGet();
+            task.run();
+        }, 1, new ExpressionCache(100));
+        try {
+            List<String> expressions = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                expressions.add("add(mult(2,3), " + i + ")");
+            expressions.set(2, "if(1, mult(2,3), 0)");
+            expressions.set(5, "twice(mult(2,3))");
+            List<EvaluationResult> results = evaluator.evaluateShared(expressions);
+            assertEquals(1, tasks.get());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expressions.get(i), results.get(i).getExpression());
+                assertEquals(i == 2 || i == 5 ? (i == 2 ? 6 : 12) : 6 + i, results.get(i).getValue());
+            }
+        } finally {
+            registry.unregister("twice");
+        }
+    }
+
+    @Test
+    void sharedEvaluationOfDeepExpression() {
+        int depth = 100_000;
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            deep.append("add(1, ");
+        deep.append('1');
+        for (int i = 0; i < depth; i++)
+            deep.append(')');
+        List<EvaluationResult> results = new BatchEvaluator().evaluateShared(Arrays.asList("add(1, 1)", deep.toString()));
+        assertEquals(2, results.get(0).getValue());
+        assertEquals(depth + 1, results.get(1).getValue());
+    }
+
+    @Test
+    void customExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BatchEvaluator evaluator = new BatchEvaluator(executor, 3, new ExpressionCache(100));
+            List<EvaluationResult> results = evaluator.evaluate(IntStream.range(0, 100).mapToObj(i -> "mult(" + i + ", 2)"));
+            for (int i = 0; i < results.size(); i++)
+                assertEquals(2 * i, results.get(i).getValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void emptyBatch() {
+        assertTrue(new BatchEvaluator().evaluate(new ArrayList<>()).isEmpty());
+    }
+}
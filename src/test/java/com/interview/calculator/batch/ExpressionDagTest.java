@@ -0,0 +1,128 @@
+package com.interview.calculator.batch;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionDagTest {
+
+    private static ExpressionDag compile(String... expressions) throws CalculatorException {
+        List<CompiledExpression> compiled = new ArrayList<>();
+        for (String expression : expressions)
+            compiled.add(ExpressionCompiler.compileWithParameters(expression));
+        return ExpressionDag.compile(compiled);
+    }
+
+    @Test
+    void repeatedSubexpressionIsShared() throws CalculatorException {
+        ExpressionDag dag = compile("add(mult(a,b), mult(b,a))");
+        // a, b, mult and add
+        assertEquals(4, dag.getNodeCount());
+        assertEquals(24, dag.evaluate(new float[]{3, 4}).get(0).getValue());
+    }
+
+    @Test
+    void subexpressionsSharedAcrossExpressions() throws CalculatorException {
+        ExpressionDag dag = compile("let(c, mult(price, qty), add(c, 10))", "sub(mult(price, qty), 10)", "mult(qty, price)");
+        assertArrayEquals(new String[]{"price", "qty"}, dag.getInputs());
+        // price, qty, mult, 10, add and sub
+        assertEquals(6, dag.getNodeCount());
+        List<EvaluationResult> results = dag.evaluate(new float[]{2.5f, 4});
+        assertEquals(20, results.get(0).getValue());
+        assertEquals(0, results.get(1).getValue());
+        assertEquals(10, results.get(2).getValue());
+        assertEquals("sub(mult(price, qty), 10)", results.get(1).getExpression());
+    }
+
+    @Test
+    void reassignedVariablesAreNotShared() throws CalculatorException {
+        ExpressionDag dag = compile("let(a, 1, add(let(b, a, mult(b, b)), let(a, 2, let(b, a, mult(b, b)))))");
+        assertEquals(5, dag.evaluate().get(0).getValue());
+    }
+
+    @Test
+    void divisionByZeroFailsOnlyItsExpressions() throws CalculatorException {
+        ExpressionDag dag = compile("div(x, y)", "add(x, y)", "let(a, div(1, y), x)");
+        List<EvaluationResult> results = dag.evaluate(new float[]{1, 0});
+        assertEquals(DIVIDE_BY_ZERO, results.get(0).getError().getMessage());
+        assertEquals(1, results.get(1).getValue());
+        // Value of the let is never read, but still evaluated as by the tree
+        assertFalse(results.get(2).isSuccess());
+    }
+
+    @Test
+    void sameResultsAsTree() throws CalculatorException {
+        String[] expressions = {
+                "div(mult(add(sub(5,4),mult(2,3)),div(9,3)), add(10, 11))",
+                "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b)))",
+                "let(a, let(b, let(c, 5, add(c,c)), add(b,c)), mult(b, a))",
+                "let(c, mult(price, qty), let(d, div(c, add(qty, 3)), sub(add(c, d), mult(d, 7))))",
+                "add(price, let(price, div(price, 3), mult(price, price)))"
+        };
+        List<CompiledExpression> compiled = new ArrayList<>();
+        for (String expression : expressions)
+            compiled.add(ExpressionCompiler.compileWithParameters(expression));
+        ExpressionDag dag = ExpressionDag.compile(compiled);
+        for (int row = 0; row < 50; row++) {
+            float[] inputs = {row * 0.37f, row * 1.5f + 1};
+            List<EvaluationResult> results = dag.evaluate(inputs);
+            for (int i = 0; i < expressions.length; i++) {
+                CompiledExpression expression = compiled.get(i);
+                float[] parameters = new float[expression.getParameterCount()];
+                for (int p = 0; p < parameters.length; p++)
+                    parameters[p] = inputs[Arrays.asList(dag.getInputs()).indexOf(expression.getParameters()[p])];
+                assertEquals(expression.evaluate(parameters), results.get(i).getValue());
+            }
+        }
+        assertTrue(ExpressionDag.compile(Collections.emptyList()).evaluate().isEmpty());
+    }
+
+    @Test
+    void variadicFunctionsShareTheirPrefix() throws CalculatorException {
+        ExpressionDag dag = compile("add(a, b, c)", "mult(add(b, a), abs(c))", "mod(a, sub(c, c))");
+        // a, b, c, add(a, b), add(a, b, c), abs, mult, sub and mod
+        assertEquals(9, dag.getNodeCount());
+        List<EvaluationResult> results = dag.evaluate(new float[]{1, 2, -3});
+        assertEquals(0, results.get(0).getValue());
+        assertEquals(9, results.get(1).getValue());
+        assertFalse(results.get(2).isSuccess());
+    }
+
+    @Test
+    void conditionalIsNotSupported() throws CalculatorException {
+        assertThrows(IllegalArgumentException.class, () -> compile("if(a, 1, 2)"));
+        assertFalse(ExpressionDag.supports(ExpressionCompiler.compileWithParameters("let(b, add(a, 1), mult(b, if(a, 1, 2)))")));
+        assertTrue(ExpressionDag.supports(ExpressionCompiler.compileWithParameters("let(b, add(a, 1), mult(b, abs(a)))")));
+        BatchEvaluator evaluator = new BatchEvaluator();
+        List<EvaluationResult> results = evaluator.evaluateShared(Arrays.asList("add(1, 2)", "if(0, 1, 2)"));
+        assertEquals(3, results.get(0).getValue());
+        assertEquals(2, results.get(1).getValue());
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        int depth = 100_000;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append("add(1, ");
+        expression.append('1');
+        for (int i = 0; i < depth; i++)
+            expression.append(')');
+        ExpressionDag dag = ExpressionDag.compile(Arrays.asList(
+                ExpressionCompiler.compile(expression), ExpressionCompiler.compile("add(1, 1)")));
+        // Literal 1 and one node per level, the innermost add(1, 1) being shared by the second expression
+        assertEquals(depth + 1, dag.getNodeCount());
+        List<EvaluationResult> results = dag.evaluate();
+        assertEquals(depth + 1, results.get(0).getValue());
+        assertEquals(2, results.get(1).getValue());
+    }
+}
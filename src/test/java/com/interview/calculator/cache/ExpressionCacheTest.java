@@ -0,0 +1,82 @@
+package com.interview.calculator.cache;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static com.interview.calculator.constants.Constants.INVALID_EXPRESSION;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionCacheTest {
+
+    @Test
+    void hitAfterMiss() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(10);
+        CompiledExpression compiled = cache.get("let(a, 5, add(a,a))");
+        assertSame(compiled, cache.get("let(a, 5, add(a,a))"));
+        assertEquals(10, compiled.evaluate());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void evaluatorsAreCached() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(10);
+        String expression = "let(a, 16777217, mult(a, 3))";
+        assertSame(cache.getProgram(expression), cache.getProgram(expression));
+        assertSame(cache.getLongEvaluator(expression), cache.getLongEvaluator(expression));
+        assertSame(cache.getExactEvaluator(expression), cache.getExactEvaluator(expression));
+        // Compiled from the expression before optimization, which would fold it in float
+        assertEquals(16777217L * 3, cache.getLongEvaluator(expression).evaluate());
+        assertEquals(BigDecimal.valueOf(16777217L * 3), cache.getExactEvaluator(expression).evaluate());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void sizeIsBounded() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(100);
+        for (int i = 0; i < 10_000; i++)
+            cache.get("add(" + i + ", 1)");
+        assertTrue(cache.size() <= 100);
+        assertEquals(10_000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(2);
+        CompiledExpression first = cache.get("add(1, 1)");
+        cache.get("add(2, 2)");
+        // Using first expression again, so that the second one is the least recently used
+        cache.get("add(1, 1)");
+        cache.get("add(3, 3)");
+        assertSame(first, cache.get("add(1, 1)"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void longExpressionsAreNotCached() throws CalculatorException {
+        ExpressionCache cache = new ExpressionCache(10, 8);
+        cache.get("add(100, 200)");
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void invalidExpressionsAreNotCached() {
+        ExpressionCache cache = new ExpressionCache(10);
+        Exception exception = assertThrows(CalculatorException.class, () -> cache.get("add(1"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidArguments() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(0));
+        assertEquals("Cache size should be positive", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(10, -1));
+        assertEquals("Maximum expression length should not be negative", exception.getMessage());
+    }
+}
@@ -1,15 +1,66 @@
 package com.interview.calculator.controller;
 
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import com.interview.calculator.exception.CalculatorException;
 import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.NoSuchFileException;
+
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
 import static com.interview.calculator.constants.Constants.INVALID_EXPRESSION;
 import static com.interview.calculator.constants.Constants.INVALID_LOG_LEVEL;
+import static com.interview.calculator.constants.Constants.MODE_OPTION;
+import static com.interview.calculator.constants.Constants.PRINT_OPTION;
+import static com.interview.calculator.constants.Constants.STREAM_OPTION;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class MainControllerTest {
 
+    @Test
+    public void resultLogged() throws Exception {
+        Logger logger = (Logger) LoggerFactory.getLogger(MainController.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            MainController.main(new String[]{"let(a, 5, add(a, a))", "info"});
+            MainController.main(new String[]{MODE_OPTION, "long", "mult(123456789, 1000)", "info"});
+        } finally {
+            logger.detachAppender(appender);
+        }
+        assertEquals(2, appender.list.size());
+        assertEquals("Result of the expression : let(a, 5, add(a, a)) is : 10.0",
+                appender.list.get(0).getFormattedMessage());
+        assertEquals("Result of the expression : mult(123456789, 1000) is : 123456789000",
+                appender.list.get(1).getFormattedMessage());
+    }
+
+    @Test
+    public void resultPrinted() throws Exception {
+        Logger logger = (Logger) LoggerFactory.getLogger(MainController.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            MainController.main(new String[]{PRINT_OPTION, "let(a, 5, add(a, a))"});
+            MainController.main(new String[]{PRINT_OPTION, MODE_OPTION, "long", "mult(123456789, 1000)"});
+        } finally {
+            System.setOut(out);
+            logger.detachAppender(appender);
+        }
+        assertEquals("10.0" + System.lineSeparator() + "123456789000" + System.lineSeparator(), printed.toString());
+        assertEquals(0, appender.list.size());
+    }
+
     @Test
     public void invalidLogLevel() {
         String args[] = {"add(-1,-3)", "test"};
@@ -30,4 +81,24 @@ class MainControllerTest {
         Exception exception = assertThrows(CalculatorException.class, () -> MainController.main(args));
         assertEquals(INVALID_EXPRESSION, exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void invalidNumericMode() {
+        String args[] = {MODE_OPTION, "double", "add(1,3)"};
+        Exception exception = assertThrows(CalculatorException.class, () -> MainController.main(args));
+        assertEquals(INVALID_ARGUMENTS, exception.getMessage());
+    }
+
+    @Test
+    public void streamInvalidLogLevel() {
+        String args[] = {STREAM_OPTION, "-", "test"};
+        Exception exception = assertThrows(CalculatorException.class, () -> MainController.main(args));
+        assertEquals(INVALID_LOG_LEVEL, exception.getMessage());
+    }
+
+    @Test
+    public void streamMissingFile() {
+        String args[] = {STREAM_OPTION, "missing-expressions.txt"};
+        assertThrows(NoSuchFileException.class, () -> MainController.main(args));
+    }
+}
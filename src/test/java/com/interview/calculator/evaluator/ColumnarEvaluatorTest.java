@@ -0,0 +1,127 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.interview.calculator.constants.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarEvaluatorTest {
+
+    private static final String EXPRESSION = "let(c, mult(price, qty), let(d, div(c, add(qty, 1)), sub(add(c, d), mult(d, 2))))";
+
+    @Test
+    void sameResultsAsRowByRow() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters(EXPRESSION);
+        int rows = 5 * ColumnarEvaluator.BLOCK_SIZE + 17;
+        float[] price = new float[rows];
+        int[] qty = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            price[i] = i * 0.5f;
+            qty[i] = i % 13;
+        }
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("price", price);
+        columns.put("qty", qty);
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(compiled);
+        float[] sequential = evaluator.evaluate(columns);
+        float[] parallel = evaluator.evaluateParallel(columns);
+        for (int i = 0; i < rows; i++) {
+            float expected = compiled.evaluate(new float[]{price[i], qty[i]});
+            assertEquals(expected, sequential[i]);
+            assertEquals(expected, parallel[i]);
+        }
+    }
+
+    @Test
+    void constantExpression() throws CalculatorException {
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(ExpressionCompiler.compile("let(a, 5, add(a,a))"));
+        assertArrayEquals(new float[]{10, 10, 10}, evaluator.evaluate(Collections.singletonMap("x", new int[3])));
+    }
+
+    @Test
+    void divideByZero() throws CalculatorException {
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(ExpressionCompiler.compileWithParameters("div(10, x)"));
+        Exception exception = assertThrows(ArithmeticException.class,
+                () -> evaluator.evaluate(Collections.singletonMap("x", new float[]{1, 2, 0})));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void constantOperands() throws CalculatorException {
+        String[] expressions = {"sub(1, x)", "div(2, x)", "mod(7, x)", "pow(2, x)", "min(3, x)", "sub(x, 15)",
+                "mult(x, 3)", "abs(-3)", "sub(3, 2)", "let(a, 4, add(x, a, a))", "let(a, 4, sub(a, x))", "8"};
+        float[] x = {1, 2, -3, 0.5f, 100};
+        for (String expression : expressions) {
+            CompiledExpression compiled = ExpressionCompiler.compileWithParameters(expression);
+            float[] results = new ColumnarEvaluator(compiled).evaluate(Collections.singletonMap("x", x));
+            for (int i = 0; i < x.length; i++) {
+                float expected = compiled.getParameters().length == 0 ? compiled.evaluate()
+                        : compiled.evaluate(new float[]{x[i]});
+                assertEquals(expected, results[i], expression);
+            }
+        }
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(ExpressionCompiler.compileWithParameters("div(x, 0)"));
+        Exception exception = assertThrows(ArithmeticException.class,
+                () -> evaluator.evaluate(Collections.singletonMap("x", x)));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void literalsTakeNoRegister() throws CalculatorException {
+        int literals = 100_000;
+        StringBuilder expression = new StringBuilder("add(x");
+        for (int i = 0; i < literals; i++)
+            expression.append(", 1");
+        expression.append(')');
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(ExpressionCompiler.compileWithParameters(expression));
+        assertTrue(evaluator.getRegisterCount() <= 2);
+        int[] x = new int[4 * ColumnarEvaluator.BLOCK_SIZE];
+        for (int i = 0; i < x.length; i++)
+            x[i] = i;
+        float[] results = evaluator.evaluateParallel(Collections.singletonMap("x", x));
+        for (int i = 0; i < x.length; i++)
+            assertEquals(i + literals, results[i]);
+    }
+
+    @Test
+    void invalidColumns() throws CalculatorException {
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(ExpressionCompiler.compileWithParameters("add(x, y)"));
+        Exception exception = assertThrows(CalculatorException.class,
+                () -> evaluator.evaluate(Collections.singletonMap("x", new float[2])));
+        assertEquals(MISSING_PARAMETER, exception.getMessage());
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("x", new float[2]);
+        columns.put("y", new float[3]);
+        exception = assertThrows(CalculatorException.class, () -> evaluator.evaluate(columns));
+        assertEquals(INVALID_ARGUMENTS, exception.getMessage());
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        int depth = 100_000;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append(i % 2 == 0 ? "sub(x, " : "add(1, ");
+        expression.append('1');
+        for (int i = 0; i < depth; i++)
+            expression.append(')');
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters(expression);
+        ColumnarEvaluator evaluator = new ColumnarEvaluator(compiled);
+        float[] x = {0, 1, -1};
+        float[] results = evaluator.evaluate(Collections.singletonMap("x", x));
+        for (int i = 0; i < x.length; i++) {
+            float expected = 1;
+            for (int level = depth - 1; level >= 0; level--)
+                expected = level % 2 == 0 ? x[i] - expected : 1 + expected;
+            assertEquals(expected, results[i]);
+            assertEquals(compiled.evaluate(new float[]{x[i]}), results[i]);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.constants.NumericMode;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.parser.ExpressionCompiler;
+import com.interview.calculator.parser.ExpressionParser;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static com.interview.calculator.constants.Constants.MISSING_PARAMETER;
+import static com.interview.calculator.constants.Constants.OUT_OF_RANGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExactEvaluatorTest {
+
+    private static BigDecimal evaluate(String expression) throws CalculatorException {
+        return ExactEvaluator.compile(ExpressionCompiler.compile(expression)).evaluate();
+    }
+
+    @Test
+    void noOverflow() throws CalculatorException {
+        String expression = "let(a, 2147483583, let(b, mult(a, a), mult(b, mult(a, a))))";
+        assertEquals(BigDecimal.valueOf(2147483583L).pow(4), evaluate(expression));
+    }
+
+    @Test
+    void decimalDivision() throws CalculatorException {
+        assertEquals(new BigDecimal("2.5"), evaluate("div(5, 2)"));
+        assertEquals(new BigDecimal("0.3333333333333333333333333333333333"), evaluate("div(1, 3)"));
+        assertEquals(new BigDecimal("0.1"), evaluate("div(add(7, 3), 100)"));
+        Exception exception = assertThrows(ArithmeticException.class, () -> evaluate("div(1, sub(2, 2))"));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void parameters() throws CalculatorException {
+        ExactEvaluator evaluator = ExactEvaluator.compile(ExpressionCompiler.compileWithParameters("mult(price, qty)"));
+        assertEquals(new BigDecimal("30.30"), evaluator.evaluate(new BigDecimal[]{new BigDecimal("10.10"), BigDecimal.valueOf(3)}));
+    }
+
+    @Test
+    void numericModes() throws CalculatorException {
+        ExpressionParser parser = new ExpressionParser("add(16777216, 1)");
+        assertEquals(16777216f, parser.getResult(NumericMode.FLOAT));
+        assertEquals(16777217L, parser.getResult(NumericMode.LONG));
+        assertEquals(BigDecimal.valueOf(16777217), parser.getResult(NumericMode.EXACT));
+    }
+
+    @Test
+    void extendedFunctions() throws CalculatorException {
+        assertEquals(new BigDecimal("1267650600228229401496703205376"),
+                ExactEvaluator.compile(ExpressionCompiler.compile("pow(2, 100)")).evaluate());
+        assertEquals(new BigDecimal("0.125"), ExactEvaluator.compile(ExpressionCompiler.compile("pow(2, sub(0, 3))")).evaluate());
+        assertEquals(0, new BigDecimal("1.5").compareTo(
+                ExactEvaluator.compile(ExpressionCompiler.compile("mod(div(7, 2), 2)")).evaluate()));
+        assertEquals(BigDecimal.valueOf(3), ExactEvaluator.compile(ExpressionCompiler.compile("max(1, abs(sub(0, 3)), 2)")).evaluate());
+        Exception exception = assertThrows(CalculatorException.class,
+                () -> ExactEvaluator.compile(ExpressionCompiler.compile("pow(2, div(1, 2))")).evaluate());
+        assertEquals(OUT_OF_RANGE, exception.getMessage());
+    }
+
+    @Test
+    void resultSizeIsBounded() throws CalculatorException {
+        assertEquals(BigDecimal.valueOf(9).pow(ExactEvaluator.MAXIMUM_EXPONENT), evaluate("pow(9, 9999)"));
+        assertEquals(BigDecimal.valueOf(81).pow(ExactEvaluator.MAXIMUM_EXPONENT),
+                evaluate("let(a, pow(9, 9999), mult(a, a))"));
+        String[] expressions = {"pow(pow(9, 9999), 9999)", "let(a, pow(9, 9999), let(b, mult(a, a), mult(b, b)))",
+                "let(a, pow(9, 9999), let(b, mult(a, a), add(mult(b, pow(9, 2000)), 1)))",
+                "pow(div(1, 3), 9999)",
+                "let(a, pow(div(1, 10), 9999), mult(a, a, a))", "let(a, pow(10, 9999), div(1, mult(a, a, a)))"};
+        for (String expression : expressions) {
+            Exception exception = assertThrows(CalculatorException.class,
+                    () -> assertTimeoutPreemptively(Duration.ofSeconds(10), () -> evaluate(expression)), expression);
+            assertEquals(OUT_OF_RANGE, exception.getMessage(), expression);
+        }
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        int depth = 100_000;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append("add(2147483583, ");
+        expression.append('1');
+        for (int i = 0; i < depth; i++)
+            expression.append(')');
+        BigDecimal expected = BigDecimal.valueOf(2147483583L).multiply(BigDecimal.valueOf(depth)).add(BigDecimal.ONE);
+        assertEquals(expected, evaluate(expression.toString()));
+        assertEquals(expected, new ExpressionParser(expression.toString()).getExactResult());
+    }
+
+    @Test
+    void contextIsReused() throws CalculatorException {
+        ExactEvaluator evaluator = ExactEvaluator.compile(ExpressionCompiler.compileWithParameters("let(a, div(x, 4), add(a, y))"));
+        EvaluationContext context = new EvaluationContext();
+        assertEquals(new BigDecimal("2.25"), evaluator.evaluate(context, new BigDecimal[]{BigDecimal.ONE, BigDecimal.valueOf(2)}));
+        Exception exception = assertThrows(CalculatorException.class,
+                () -> evaluator.evaluate(context, new BigDecimal[]{BigDecimal.ONE, null}));
+        assertEquals(MISSING_PARAMETER, exception.getMessage());
+        assertEquals(new BigDecimal("3.5"), evaluator.evaluate(context, new BigDecimal[]{BigDecimal.TEN, BigDecimal.ONE}));
+    }
+}
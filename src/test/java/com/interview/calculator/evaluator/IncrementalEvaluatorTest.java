@@ -0,0 +1,100 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static com.interview.calculator.constants.Constants.INVALID_ARGUMENTS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalEvaluatorTest {
+
+    @Test
+    void onlyAffectedFunctionsAreRecomputed() throws CalculatorException {
+        // Price of 3 independent lines, only the second line depends on qty
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(ExpressionCompiler.compile(
+                "let(rate, 2, let(qty, 5, add(add(mult(rate, 10), mult(qty, 20)), mult(add(rate, 1), 30))))"));
+        assertArrayEquals(new String[]{"rate", "qty"}, evaluator.getInputs());
+        assertEquals(2 * 10 + 5 * 20 + 3 * 30, evaluator.getResult());
+        assertEquals(6, evaluator.getRecomputedCount());
+        evaluator.set("qty", 7);
+        assertEquals(2 * 10 + 7 * 20 + 3 * 30, evaluator.getResult());
+        // mult(qty, 20), the first add and the root add
+        assertEquals(3, evaluator.getRecomputedCount());
+        assertEquals(2 * 10 + 7 * 20 + 3 * 30, evaluator.getResult());
+        assertEquals(0, evaluator.getRecomputedCount());
+    }
+
+    @Test
+    void unchangedValueStopsPropagation() throws CalculatorException {
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(ExpressionCompiler.compile(
+                "let(a, 3, let(b, mult(a, 0), add(add(b, 1), add(b, 2))))"));
+        assertEquals(3, evaluator.getResult());
+        evaluator.set("a", 4);
+        assertEquals(3, evaluator.getResult());
+        assertEquals(1, evaluator.getRecomputedCount());
+    }
+
+    @Test
+    void sameResultsAsFullEvaluation() throws CalculatorException {
+        String expression = "let(c, mult(price, qty), let(d, div(c, add(qty, 3)), sub(add(c, d), mult(d, 7))))";
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters(expression);
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(compiled);
+        Map<String, Float> values = new HashMap<>();
+        for (int row = 0; row < 100; row++) {
+            String name = row % 3 == 0 ? "qty" : "price";
+            float value = row * 0.37f + 1;
+            values.put(name, value);
+            values.putIfAbsent("qty", 0f);
+            values.putIfAbsent("price", 0f);
+            evaluator.set(name, value);
+            assertEquals(compiled.evaluate(values), evaluator.getResult());
+        }
+    }
+
+    @Test
+    void reassignedVariable() throws CalculatorException {
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(ExpressionCompiler.compile(
+                "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b)))"));
+        assertEquals(40, evaluator.getResult());
+        // Both assignments of b are inputs
+        evaluator.set("b", 1);
+        assertEquals(3, evaluator.getResult());
+    }
+
+    @Test
+    void failedNodeIsRetried() throws CalculatorException {
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(ExpressionCompiler.compileWithParameters("div(10, x)"));
+        Exception exception = assertThrows(ArithmeticException.class, evaluator::getResult);
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+        evaluator.set("x", 4);
+        assertEquals(2.5f, evaluator.getResult());
+        exception = assertThrows(CalculatorException.class, () -> evaluator.set("y", 1));
+        assertEquals(INVALID_ARGUMENTS, exception.getMessage());
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        int depth = 100_000;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append(i % 2 == 0 ? "sub(x, " : "add(1, ");
+        expression.append('1');
+        for (int i = 0; i < depth; i++)
+            expression.append(')');
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters(expression);
+        IncrementalEvaluator evaluator = new IncrementalEvaluator(compiled);
+        assertEquals(compiled.evaluate(new float[]{0}), evaluator.getResult());
+        evaluator.set("x", 5);
+        assertEquals(compiled.evaluate(new float[]{5}), evaluator.getResult());
+        assertTrue(evaluator.getRecomputedCount() > 0);
+        evaluator.set("x", 5);
+        assertEquals(compiled.evaluate(new float[]{5}), evaluator.getResult());
+        assertEquals(0, evaluator.getRecomputedCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.function.FunctionRegistry;
+import com.interview.calculator.optimizer.ExpressionOptimizer;
+import com.interview.calculator.parser.ExpressionCompiler;
+import com.interview.calculator.parser.ExpressionParser;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.interview.calculator.constants.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LongEvaluatorTest {
+
+    private static long evaluate(String expression) throws CalculatorException {
+        return LongEvaluator.compile(ExpressionCompiler.compile(expression)).evaluate();
+    }
+
+    @Test
+    void exactAboveFloatPrecision() throws CalculatorException {
+        assertEquals(123456789L + 987654321L, evaluate("add(123456789, 987654321)"));
+        assertEquals(16777217L * 1000, evaluate("let(a, 16777217, mult(a, 1000))"));
+        assertEquals(16777217L * 1000, new ExpressionParser("let(a, 16777217, mult(a, 1000))").getLongResult());
+    }
+
+    @Test
+    void divisionTruncates() throws CalculatorException {
+        assertEquals(3, evaluate("div(10, 3)"));
+        assertEquals(-2, evaluate("div(sub(0, 5), 2)"));
+        Exception exception = assertThrows(ArithmeticException.class, () -> evaluate("div(1, sub(2, 2))"));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void overflowIsOutOfRange() {
+        String expression = "let(a, 2147483646, let(b, mult(a, a), mult(b, mult(a, a))))";
+        Exception exception = assertThrows(CalculatorException.class, () -> evaluate(expression));
+        assertEquals(OUT_OF_RANGE, exception.getMessage());
+    }
+
+    @Test
+    void parameters() throws CalculatorException {
+        LongEvaluator evaluator = LongEvaluator.compile(ExpressionCompiler.compileWithParameters("sub(mult(price, qty), discount)"));
+        assertEquals(3_000_000_000L - 7, evaluator.evaluate(new long[]{1_000_000_000L, 3, 7}));
+        Exception exception = assertThrows(CalculatorException.class, evaluator::evaluate);
+        assertEquals(MISSING_PARAMETER, exception.getMessage());
+    }
+
+    @Test
+    void foldedLiteralsAreRejected() throws CalculatorException {
+        CompiledExpression folded = ExpressionOptimizer.optimize(ExpressionCompiler.compile("add(1, 2)"));
+        Exception exception = assertThrows(CalculatorException.class, () -> LongEvaluator.compile(folded));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+        // Inlined literals keep their exact value
+        CompiledExpression inlined = ExpressionOptimizer.optimize(ExpressionCompiler.compileWithParameters("let(a, 16777217, mult(a, x))"));
+        assertEquals(16777217L * 3, LongEvaluator.compile(inlined).evaluate(new long[]{3}));
+    }
+
+    @Test
+    void extendedFunctions() throws CalculatorException {
+        assertEquals(6_000_000_000L, evaluate("mult(1000, 2000, 3000)"));
+        assertEquals(-1, evaluate("mod(sub(0, 7), 3)"));
+        assertEquals(1L << 62, evaluate("pow(2, 62)"));
+        assertEquals(0, evaluate("pow(2, sub(0, 1))"));
+        assertEquals(-1, evaluate("pow(sub(0, 1), sub(0, 3))"));
+        assertEquals(2, evaluate("min(5, 2, 9)"));
+        assertEquals(7, evaluate("abs(sub(0, 7))"));
+        assertEquals(5, evaluate("if(sub(2, 2), div(1, 0), 5)"));
+        Exception exception = assertThrows(CalculatorException.class, () -> evaluate("pow(2, 63)"));
+        assertEquals(OUT_OF_RANGE, exception.getMessage());
+    }
+
+    @Test
+    void customFunctionIsRejected() {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("twice", 1, 1, arguments -> 2 * arguments[0]);
+        Exception exception = assertThrows(CalculatorException.class,
+                () -> LongEvaluator.compile(ExpressionCompiler.compile("twice(3)", registry)));
+        assertEquals(INVALID_FUNCTION, exception.getMessage());
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        int depth = 100_000;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append(i % 2 == 0 ? "add(16777217, " : "let(a, 2, sub(a, ");
+        expression.append('1');
+        for (int i = 0; i < depth; i++)
+            expression.append(i % 2 == 0 ? ")" : "))");
+        // 16777217 + (2 - (16777217 + (2 - ... 1))) alternates between 16777217 + 1 and 16777218 - 1, checking directly
+        long expected = 1;
+        for (int i = depth - 1; i >= 0; i--)
+            expected = i % 2 == 0 ? 16777217 + expected : 2 - expected;
+        assertEquals(expected, evaluate(expression.toString()));
+        assertEquals(expected, new ExpressionParser(expression.toString()).getLongResult());
+    }
+
+    @Test
+    void contextIsReused() throws CalculatorException {
+        LongEvaluator evaluator = LongEvaluator.compile(ExpressionCompiler.compileWithParameters("let(a, mult(x, 3), add(a, y))"));
+        EvaluationContext context = new EvaluationContext();
+        assertEquals(3_000_000_000L + 1, evaluator.evaluate(context, new long[]{1_000_000_000L, 1}));
+        assertEquals(6 + 2, evaluator.evaluate(context, new long[]{2, 2}));
+        Exception exception = assertThrows(CalculatorException.class, () -> evaluator.evaluate(context, new long[]{1}));
+        assertEquals(INVALID_ARGUMENTS, exception.getMessage());
+        exception = assertThrows(CalculatorException.class, () -> evaluator.evaluate(context));
+        assertEquals(MISSING_PARAMETER, exception.getMessage());
+    }
+
+    /**
+     * Once the context is warmed up, evaluations shouldn't allocate any memory.
+     */
+    @Test
+    void noAllocationPerEvaluation() throws CalculatorException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        LongEvaluator evaluator = LongEvaluator.compile(ExpressionCompiler.compile(
+                "let(a, 123456789, add(mult(a, 1000), if(sub(a, 1), mod(a, 7), 0), pow(2, 40)))"));
+        EvaluationContext context = new EvaluationContext();
+        long sum = 0;
+        for (int i = 0; i < 10_000; i++)
+            sum += evaluator.evaluate(context);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++)
+            sum += evaluator.evaluate(context);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(123456789L * 1000 + 123456789L % 7 + (1L << 40), evaluator.evaluate(context));
+        assertTrue(sum > 0);
+        assertTrue(allocated < 1_000, "Allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,120 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.function.FunctionRegistry;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProgramTest {
+
+    private static final String[] EXPRESSIONS = {
+            "add(1,2)",
+            "div(mult(add(sub(5,4),mult(2,3)),div(9,3)), add(10, 11))",
+            "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b))",
+            "let(a, let(b, 10, mult(add(b,b), sub(-b, 2)), mult(a, a))",
+            "let(a, let(b, let(c, 5, add(c,c)), add(b,c)), mult(b, a))",
+            "let(a, 3, sub(1, div(a, 4)))",
+            "add(1, 2, mult(3, 4, 5), min(7, 2, 9), max(1, 8, 3))",
+            "let(a, 7, add(mod(a, 3), pow(a, 2), abs(sub(0, a))))",
+            "let(a, 7, mult(if(sub(a, 7), div(1, 0), 2), if(a, add(a, 1), 0)))",
+            "let(a, 2, if(a, let(b, 3, mult(a, b)), let(b, 4, add(a, b))))"
+    };
+
+    @Test
+    void sameResultAsTree() throws CalculatorException {
+        EvaluationContext context = new EvaluationContext();
+        for (String expression : EXPRESSIONS) {
+            Program program = Program.compile(ExpressionCompiler.compile(expression));
+            assertEquals(ExpressionCompiler.compile(expression).evaluate(), program.evaluate(context), expression);
+        }
+    }
+
+    @Test
+    void stackDepth() throws CalculatorException {
+        Program program = Program.compile(ExpressionCompiler.compile("add(1, add(2, add(3, 4)))"));
+        assertEquals(4, program.getMaxStackDepth());
+        assertEquals(10, program.evaluate(new EvaluationContext()));
+    }
+
+    @Test
+    void parameters() throws CalculatorException {
+        Program program = Program.compile(ExpressionCompiler.compileWithParameters("let(c, mult(price, qty), sub(c, discount))"));
+        EvaluationContext context = new EvaluationContext();
+        float[] row = new float[3];
+        for (int i = 0; i < 10; i++) {
+            row[0] = i;
+            row[1] = 2;
+            row[2] = 1;
+            assertEquals(2 * i - 1, program.evaluate(context, row));
+        }
+    }
+
+    @Test
+    void divideByZero() throws CalculatorException {
+        Program program = Program.compile(ExpressionCompiler.compile("let(a, 0, div(6, add(a, a)))"));
+        Exception exception = assertThrows(ArithmeticException.class, () -> program.evaluate(new EvaluationContext()));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    /**
+     * Once the context is warmed up, evaluations shouldn't allocate any memory.
+     */
+    @Test
+    void noAllocationPerEvaluation() throws CalculatorException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threadBean);
+        Program program = Program.compile(ExpressionCompiler.compile(EXPRESSIONS[4]));
+        EvaluationContext context = new EvaluationContext();
+        float sum = 0;
+        for (int i = 0; i < 10_000; i++)
+            sum += program.evaluate(context);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++)
+            sum += program.evaluate(context);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(150, program.evaluate(context));
+        assertTrue(sum > 0);
+        // Allowing a few bytes for the measurement itself, far less than one byte per evaluation
+        assertTrue(allocated < 1_000, "Allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void noAllocationPerCustomFunctionCall() throws CalculatorException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threadBean);
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("hypot", 2, 2, arguments -> (float) Math.hypot(arguments[0], arguments[1]));
+        registry.register("avg", 1, Integer.MAX_VALUE, arguments -> {
+            float sum = 0;
+            for (float argument : arguments)
+                sum += argument;
+            return sum / arguments.length;
+        });
+        Program program = Program.compile(ExpressionCompiler.compile(
+                "let(a, 3, add(hypot(a, 4), avg(a, hypot(6, 8), 5), avg(a)))", registry));
+        EvaluationContext context = new EvaluationContext();
+        float sum = 0;
+        for (int i = 0; i < 10_000; i++)
+            sum += program.evaluate(context);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++)
+            sum += program.evaluate(context);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(14, program.evaluate(context));
+        assertTrue(sum > 0);
+        assertTrue(allocated < 1_000, "Allocated " + allocated + " bytes");
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean threadBean) {
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+}
@@ -0,0 +1,79 @@
+package com.interview.calculator.evaluator;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.function.FunctionRegistry;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredEvaluatorTest {
+
+    private static final String[] EXPRESSIONS = {
+            "div(mult(add(sub(5,4),mult(2,3)),div(9,3)), add(10, 11))",
+            "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b))",
+            "let(a, let(b, let(c, 5, add(c,c)), add(b,c)), mult(b, a))",
+            "let(c, mult(price, qty), let(d, div(c, add(qty, 3)), sub(add(c, d), mult(d, 7))))",
+            "add(x, let(x, div(x, 3), mult(x, x)))",
+            "add(x, mult(x, 3, y), min(x, y, 2), max(y, 1, x), mod(x, add(y, 1)), pow(x, 2), abs(sub(y, 50)))",
+            "if(sub(x, 20), let(a, div(x, y), add(a, a)), mult(y, 2))"
+    };
+
+    @Test
+    void compiledAfterThreshold() throws CalculatorException {
+        TieredEvaluator evaluator = new TieredEvaluator(ExpressionCompiler.compile("add(1, mult(2,3))"), 10);
+        for (int i = 0; i < 9; i++)
+            assertEquals(7, evaluator.evaluate());
+        assertFalse(evaluator.isCompiled());
+        assertEquals(7, evaluator.evaluate());
+        assertTrue(evaluator.isCompiled());
+        assertEquals(7, evaluator.evaluate());
+    }
+
+    @Test
+    void bitIdenticalResults() throws CalculatorException {
+        for (String expression : EXPRESSIONS) {
+            CompiledExpression compiled = ExpressionCompiler.compileWithParameters(expression);
+            TieredEvaluator evaluator = new TieredEvaluator(compiled, 1);
+            float[] parameters = new float[compiled.getParameterCount()];
+            for (int row = 0; row < 200; row++) {
+                for (int i = 0; i < parameters.length; i++)
+                    parameters[i] = row * 0.37f + i;
+                assertEquals(Float.floatToRawIntBits(compiled.evaluate(parameters)),
+                        Float.floatToRawIntBits(evaluator.evaluate(parameters)), expression);
+            }
+            assertTrue(evaluator.isCompiled());
+        }
+    }
+
+    @Test
+    void divideByZero() throws CalculatorException {
+        TieredEvaluator evaluator = new TieredEvaluator(ExpressionCompiler.compileWithParameters("div(1, x)"), 1);
+        Exception exception = assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new float[]{0}));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+        assertTrue(evaluator.isCompiled());
+    }
+
+    @Test
+    void customFunctionStaysInterpreted() throws CalculatorException {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("twice", 1, 1, arguments -> 2 * arguments[0]);
+        TieredEvaluator evaluator = new TieredEvaluator(ExpressionCompiler.compile("add(twice(3), 1)", registry), 1);
+        assertEquals(7, evaluator.evaluate());
+        assertEquals(7, evaluator.evaluate());
+        assertFalse(evaluator.isCompiled());
+    }
+
+    @Test
+    void largeExpressionStaysInterpreted() throws CalculatorException {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < TieredEvaluator.MAXIMUM_COMPILED_NODES; i++)
+            expression.append("add(1, ");
+        expression.append('1');
+        TieredEvaluator evaluator = new TieredEvaluator(ExpressionCompiler.compile(expression.toString()), 1);
+        assertEquals(TieredEvaluator.MAXIMUM_COMPILED_NODES + 1, evaluator.evaluate());
+        assertFalse(evaluator.isCompiled());
+    }
+}
@@ -0,0 +1,61 @@
+package com.interview.calculator.function;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import static com.interview.calculator.constants.Constants.INVALID_EXPRESSION;
+import static com.interview.calculator.constants.Constants.INVALID_FUNCTION;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunctionRegistryTest {
+
+    @Test
+    void customFunction() throws CalculatorException {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("hypot", 2, 2, arguments -> (float) Math.hypot(arguments[0], arguments[1]));
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters("let(a, 3, HYPOT(a, b))", registry);
+        assertEquals(5, compiled.evaluate(new float[]{4}));
+        assertEquals(3, compiled.evaluate(new float[]{0}));
+    }
+
+    @Test
+    void variadicCustomFunction() throws CalculatorException {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("avg", 1, Integer.MAX_VALUE, arguments -> {
+            float sum = 0;
+            for (float argument : arguments)
+                sum += argument;
+            return sum / arguments.length;
+        });
+        assertEquals(3, ExpressionCompiler.compile("avg(1, 2, 3, 6)", registry).evaluate());
+        assertEquals(7, ExpressionCompiler.compile("avg(7)", registry).evaluate());
+    }
+
+    @Test
+    void argumentCount() {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("twice", 1, 1, arguments -> 2 * arguments[0]);
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("twice(1, 2)", registry));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+    }
+
+    @Test
+    void unknownFunction() {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("twice", 1, 1, arguments -> 2 * arguments[0]);
+        assertTrue(registry.unregister("TWICE"));
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("twice(1)", registry));
+        assertEquals(INVALID_FUNCTION, exception.getMessage());
+    }
+
+    @Test
+    void invalidRegistration() {
+        FunctionRegistry registry = new FunctionRegistry();
+        assertThrows(IllegalArgumentException.class, () -> registry.register("Add", 2, 2, arguments -> 0));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("f1", 2, 2, arguments -> 0));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("f", 2, 1, arguments -> 0));
+        assertNull(registry.lookup("f"));
+    }
+}
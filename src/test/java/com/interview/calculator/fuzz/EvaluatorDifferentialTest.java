@@ -0,0 +1,498 @@
+package com.interview.calculator.fuzz;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import com.interview.calculator.batch.EvaluationResult;
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.constants.Dialect;
+import com.interview.calculator.evaluator.ColumnarEvaluator;
+import com.interview.calculator.evaluator.EvaluationContext;
+import com.interview.calculator.evaluator.IncrementalEvaluator;
+import com.interview.calculator.evaluator.Program;
+import com.interview.calculator.evaluator.TieredEvaluator;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Conditional;
+import com.interview.calculator.expression.Expression;
+import com.interview.calculator.expression.FunctionCall;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import com.interview.calculator.optimizer.ExpressionOptimizer;
+import com.interview.calculator.parser.ExpressionCompiler;
+import com.interview.calculator.parser.ExpressionFormatter;
+import com.interview.calculator.parser.ExpressionParser;
+import com.interview.calculator.serialization.ExpressionArchive;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.interview.calculator.constants.Constants.OUT_OF_RANGE;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Checks that every evaluator computes the same result as the original character by character parser, frozen in
+ * {@link LegacyExpressionParser}, or fails with the same exception, on random expressions from
+ * {@link ExpressionGenerator}. A failing expression is shrunk by {@link ExpressionShrinker} before being reported with
+ * the seed reproducing it.
+ * <p>
+ * Expressions showing one of the {@link IntendedDifference}s from the original parser, such as the functions added
+ * since, are checked against the tree interpreter of the unoptimized expression ({@link CompiledExpression#evaluate()})
+ * instead. Expressions with parameters are given to the original parser with a let expression assigning every
+ * parameter. An engine may only report an expression as unsupported for the constructs listed in {@link #UNSUPPORTED},
+ * any other unsupported outcome is a mismatch.
+ * A thousand expressions are checked by every build, the fuzz profile (mvn test -Pfuzz) runs the tests tagged fuzz
+ * with -Dfuzz.iterations, -Dfuzz.seed and -Dfuzz.depth.
+ */
+class EvaluatorDifferentialTest {
+
+    private static final long FIXED_SEED = 20_201_017L;
+    private static final String[] PARAMETERS = {"x", "y"};
+    private static final int[] PARAMETER_VALUES = {0, 1, 2, 7, 1 << 24, 2147483583};
+    private static final String UNSUPPORTED_OUTCOME = IllegalArgumentException.class.getSimpleName() + " : Unsupported";
+    private static final Map<String, Engine> ENGINES = new LinkedHashMap<>();
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    // Tokens read by the compiler, any other character being ignored
+    private static final Pattern TOKEN = Pattern.compile("[a-zA-Z]+|\\d+|[(),]");
+    private static final Set<ArithmeticFunctions> LEGACY_FUNCTIONS = EnumSet.of(ArithmeticFunctions.ADD,
+            ArithmeticFunctions.SUB, ArithmeticFunctions.MULT, ArithmeticFunctions.DIV);
+    // Constructs each engine is expected not to support
+    private static final Map<String, Construct> UNSUPPORTED = new HashMap<>();
+
+    /**
+     * Differences from the original parser which are intended. The engines are compared to the unoptimized tree on
+     * the expressions showing any of them.
+     */
+    enum IntendedDifference {
+        /**
+         * Functions added since the original parser (min, max, mod, pow, abs, if), and add or mult of more than two
+         * arguments, which it reports as invalid functions or computes from their last two arguments.
+         */
+        EXTENDED_FUNCTIONS {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return compiled != null && any(compiled.getRoot(),
+                        node -> !(isOperand(node) || node instanceof LetBinding || isLegacyOperation(node)));
+            }
+        },
+        /**
+         * Expressions which don't compile, other than for numbers out of range. The original parser doesn't check the
+         * structure of expressions and computes a value from most of them, or fails with an exception of its stacks.
+         */
+        INVALID_EXPRESSION {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return compiled == null && !OUT_OF_RANGE.equals(error);
+            }
+        },
+        /**
+         * Numbers above Integer.MAX_VALUE, which the original parser overflows to other numbers, mostly negative and
+         * in range, while they are out of range.
+         */
+        NUMBER_OVERFLOW {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                Matcher number = NUMBER.matcher(text);
+                while (number.find())
+                    if (new BigInteger(number.group()).compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0)
+                        return true;
+                return false;
+            }
+        },
+        /**
+         * Closing brackets missing at the end, which the compiler assumes, or extra closing brackets, which it ignores.
+         * The original parser only computes a function at its closing bracket.
+         */
+        UNBALANCED_BRACKETS {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return text.chars().filter(c -> c == '(').count() != text.chars().filter(c -> c == ')').count();
+            }
+        },
+        /**
+         * Number or variable outside of any function, which the original parser only reads as the operand of a
+         * function : the expression 5 is invalid.
+         */
+        BARE_OPERAND {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return compiled != null && isOperand(compiled.getRoot());
+            }
+        },
+        /**
+         * Numbers out of range in an expression dividing by zero before them. Numbers are checked when the expression
+         * is compiled, the original parser checks them as it computes the expression.
+         */
+        RANGE_CHECKED_FIRST {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return OUT_OF_RANGE.equals(error) && original.startsWith(ArithmeticException.class.getSimpleName());
+            }
+        },
+        /**
+         * Number out of range as the value of a let expression, which the original parser doesn't check.
+         */
+        LET_VALUE_OUT_OF_RANGE {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                List<String> tokens = new ArrayList<>();
+                Matcher token = TOKEN.matcher(text);
+                while (token.find())
+                    tokens.add(token.group());
+                for (int i = 4; i < tokens.size(); i++)
+                    if (tokens.get(i - 4).equalsIgnoreCase("let") && tokens.get(i - 3).equals("(")
+                            && tokens.get(i - 1).equals(",") && NUMBER.matcher(tokens.get(i)).matches()
+                            && (tokens.get(i).length() > 10 || (int) Float.parseFloat(tokens.get(i)) == Integer.MAX_VALUE))
+                        return true;
+                return false;
+            }
+        },
+        /**
+         * Let expression whose value or body is a variable. The original parser takes the variable of the value for
+         * the name of another let variable, and computes the variable of the body with the function around the let,
+         * failing with an EmptyStackException when there is none : let(a, 5, a) is invalid.
+         */
+        LET_OF_VARIABLE {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return compiled != null && any(compiled.getRoot(), node -> node instanceof LetBinding
+                        && (((LetBinding) node).getValue() instanceof VariableReference
+                        || ((LetBinding) node).getBody() instanceof VariableReference));
+            }
+        },
+        /**
+         * Let expression as the operand of a function or the value of another let expression. The original parser
+         * reads its closing bracket as the one of the function around it, which it computes before its other operands.
+         */
+        LET_AS_OPERAND {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return compiled != null && any(compiled.getRoot(), node -> node instanceof LetBinding
+                        && ((LetBinding) node).getValue() instanceof LetBinding || node instanceof Operation
+                        && hasLetOperand((Operation) node));
+            }
+        },
+        /**
+         * Parameter as the last operand of sub or div. The original parser has no parameters, their values are given
+         * to it by let expressions, and it swaps let variables in that position while parameters keep their order.
+         */
+        PARAMETER_AS_LAST_OPERAND {
+            @Override
+            boolean in(String text, CompiledExpression compiled, String error, String original) {
+                return compiled != null && any(compiled.getRoot(), node -> node instanceof Operation
+                        && isSubOrDiv((Operation) node) && ((Operation) node).getOperand(1) instanceof VariableReference
+                        && isParameter(compiled, (VariableReference) ((Operation) node).getOperand(1)));
+            }
+        };
+
+        /**
+         * @param compiled : expression as compiled for the engines, null if it doesn't compile
+         * @param error    : message of the compilation error, null if it compiles
+         * @param original : outcome of the original parser
+         */
+        abstract boolean in(String text, CompiledExpression compiled, String error, String original);
+    }
+
+    static {
+        ENGINES.put("parser", (text, parameters) -> {
+            if (!parameters.isEmpty())
+                throw new IllegalArgumentException("Unsupported parameters");
+            return new ExpressionParser(text).getResult();
+        });
+        ENGINES.put("compiled", (text, parameters) ->
+                compile(text, parameters).evaluate(parameters));
+        ENGINES.put("optimized", (text, parameters) ->
+                ExpressionOptimizer.optimize(compile(text, parameters)).evaluate(parameters));
+        ENGINES.put("program", (text, parameters) -> {
+            CompiledExpression compiled = compile(text, parameters);
+            return Program.compile(compiled).evaluate(new EvaluationContext(), valuesOf(compiled, parameters));
+        });
+        ENGINES.put("method handle", (text, parameters) -> {
+            CompiledExpression compiled = compile(text, parameters);
+            return new TieredEvaluator(compiled, 1).evaluate(valuesOf(compiled, parameters));
+        });
+        ENGINES.put("columnar", (text, parameters) -> {
+            Map<String, Object> columns = new HashMap<>();
+            columns.put("rows", new int[1]);
+            parameters.forEach((name, value) -> columns.put(name, new int[]{value}));
+            return new ColumnarEvaluator(compile(text, parameters)).evaluate(columns)[0];
+        });
+        ENGINES.put("incremental", (text, parameters) -> {
+            CompiledExpression compiled = compile(text, parameters);
+            IncrementalEvaluator evaluator = new IncrementalEvaluator(compiled);
+            for (String parameter : compiled.getParameters())
+                evaluator.set(parameter, parameters.get(parameter));
+            return evaluator.getResult();
+        });
+        ENGINES.put("archive", (text, parameters) -> {
+            byte[] archive = ExpressionArchive.toByteArray(Collections.singletonList(compile(text, parameters)));
+            return ExpressionArchive.wrap(ByteBuffer.wrap(archive)).get(0).evaluate(parameters);
+        });
+        ENGINES.put("formatted", (text, parameters) -> {
+            String formatted = ExpressionFormatter.format(ExpressionOptimizer.optimize(compile(text, parameters)));
+            // Formatted operands are in their order, whatever the dialect they were read in
+            return ExpressionCompiler.compileWithParameters(formatted, Dialect.STANDARD).evaluate(parameters);
+        });
+        ENGINES.put("shared", (text, parameters) -> {
+            if (!parameters.isEmpty())
+                throw new IllegalArgumentException("Unsupported parameters");
+            EvaluationResult result = new BatchEvaluator().evaluateShared(Collections.singletonList(text)).get(0);
+            if (!result.isSuccess())
+                throw result.getError();
+            return result.getValue();
+        });
+        UNSUPPORTED.put("columnar", EvaluatorDifferentialTest::hasConditional);
+        UNSUPPORTED.put("incremental", EvaluatorDifferentialTest::hasConditional);
+        UNSUPPORTED.put("shared", (text, parameters) -> !parameters.isEmpty());
+        UNSUPPORTED.put("parser", (text, parameters) -> !parameters.isEmpty());
+    }
+
+    @Test
+    void fixedSeed() {
+        check(FIXED_SEED, 1_000, 6);
+    }
+
+    @Tag("fuzz")
+    @Test
+    void randomSeed() {
+        check(Long.getLong("fuzz.seed", System.nanoTime()), Integer.getInteger("fuzz.iterations", 20_000),
+                Integer.getInteger("fuzz.depth", 8));
+    }
+
+    /**
+     * Checks closed well formed, malformed, and parameterized expressions in turn, with the functions of the original
+     * parser only and with every function in turn.
+     */
+    private static void check(long seed, int iterations, int maximumDepth) {
+        Random random = new Random(seed);
+        ExpressionGenerator[] closed = {new ExpressionGenerator(random, maximumDepth, false),
+                new ExpressionGenerator(random, maximumDepth, true)};
+        ExpressionGenerator[] parameterized = {new ExpressionGenerator(random, maximumDepth, false, PARAMETERS),
+                new ExpressionGenerator(random, maximumDepth, true, PARAMETERS)};
+        for (int i = 0; i < iterations; i++) {
+            Map<String, Integer> parameters = new HashMap<>();
+            int extended = i / 3 % 2;
+            String text;
+            switch (i % 3) {
+                case 0:
+                    text = closed[extended].wellFormed();
+                    try {
+                        compile(text, parameters);
+                    } catch (CalculatorException e) {
+                        fail("Seed " + seed + ", generated expression doesn't compile : " + text + " : " + e.getMessage());
+                    }
+                    break;
+                case 1:
+                    text = closed[extended].malformed();
+                    break;
+                default:
+                    text = parameterized[extended].wellFormed();
+                    for (String parameter : PARAMETERS)
+                        parameters.put(parameter, PARAMETER_VALUES[random.nextInt(PARAMETER_VALUES.length)]);
+            }
+            Map<String, String> mismatch = mismatch(text, parameters);
+            if (!mismatch.isEmpty()) {
+                // Shrinking keeps the engines which disagree with the reference
+                String shrunk = ExpressionShrinker.shrink(text,
+                        candidate -> mismatch(candidate, parameters).keySet().equals(mismatch.keySet()));
+                StringBuilder message = new StringBuilder("Seed " + seed + ", parameters " + parameters
+                        + ", expression : " + text + "\nshrunk to : " + shrunk
+                        + "\nreference (" + referenceName(shrunk, parameters) + ") : " + reference(shrunk, parameters));
+                mismatch(shrunk, parameters).forEach((engine, outcome) ->
+                        message.append('\n').append(engine).append(" : ").append(outcome));
+                fail(message.toString());
+            }
+        }
+    }
+
+    /**
+     * Outcome of every engine which differs from the reference, by engine name.
+     */
+    private static Map<String, String> mismatch(String text, Map<String, Integer> parameters) {
+        String reference = reference(text, parameters);
+        Map<String, String> mismatch = new LinkedHashMap<>();
+        for (Map.Entry<String, Engine> engine : ENGINES.entrySet()) {
+            String outcome = outcome(() -> engine.getValue().evaluate(text, parameters));
+            Construct unsupported = UNSUPPORTED.get(engine.getKey());
+            if (outcome.startsWith(UNSUPPORTED_OUTCOME) && unsupported != null && unsupported.in(text, parameters))
+                continue;
+            if (!outcome.equals(reference))
+                mismatch.put(engine.getKey(), outcome);
+        }
+        return mismatch;
+    }
+
+    /**
+     * Outcome of the original parser, or of the unoptimized tree, interpreted without any of the compilation steps of
+     * the other engines, for the expressions showing an intended difference.
+     */
+    private static String reference(String text, Map<String, Integer> parameters) {
+        if (difference(text, parameters) != null)
+            return outcome(() -> compile(text, parameters).evaluate(parameters));
+        return original(text, parameters);
+    }
+
+    private static String original(String text, Map<String, Integer> parameters) {
+        return outcome(() -> new LegacyExpressionParser(withParameters(text, parameters)).getResult());
+    }
+
+    private static String referenceName(String text, Map<String, Integer> parameters) {
+        IntendedDifference difference = difference(text, parameters);
+        return difference == null ? "original parser" : "tree, " + difference;
+    }
+
+    /**
+     * First intended difference the expression shows, null if none.
+     */
+    private static IntendedDifference difference(String text, Map<String, Integer> parameters) {
+        CompiledExpression compiled = null;
+        String error = null;
+        try {
+            compiled = compile(text, parameters);
+        } catch (CalculatorException e) {
+            error = e.getMessage();
+        }
+        String original = original(text, parameters);
+        for (IntendedDifference difference : IntendedDifference.values())
+            if (difference.in(text, compiled, error, original))
+                return difference;
+        if (OUT_OF_RANGE.equals(error)) {
+            // Differences of the structure of the expression don't show until its numbers are in range
+            Matcher number = NUMBER.matcher(text);
+            StringBuffer inRange = new StringBuffer();
+            while (number.find())
+                number.appendReplacement(inRange, number.group().length() < 10 ? number.group() : "0");
+            number.appendTail(inRange);
+            if (!inRange.toString().equals(text))
+                return difference(inRange.toString(), parameters);
+        }
+        return null;
+    }
+
+    /**
+     * Expression assigning every parameter with a let expression.
+     */
+    private static String withParameters(String text, Map<String, Integer> parameters) {
+        StringBuilder expression = new StringBuilder();
+        for (Map.Entry<String, Integer> parameter : parameters.entrySet())
+            expression.append("let(").append(parameter.getKey()).append(", ").append(parameter.getValue()).append(", ");
+        expression.append(text);
+        for (int i = 0; i < parameters.size(); i++)
+            expression.append(')');
+        return expression.toString();
+    }
+
+    /**
+     * Whether any node of the tree matches.
+     */
+    private static boolean any(Expression root, Predicate<Expression> matches) {
+        Deque<Expression> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expression node = pending.pop();
+            if (matches.test(node))
+                return true;
+            if (node instanceof Operation) {
+                Operation operation = (Operation) node;
+                for (int i = 0; i < operation.getOperandCount(); i++)
+                    pending.push(operation.getOperand(i));
+            } else if (node instanceof LetBinding) {
+                pending.push(((LetBinding) node).getValue());
+                pending.push(((LetBinding) node).getBody());
+            } else if (node instanceof Conditional) {
+                Conditional conditional = (Conditional) node;
+                pending.push(conditional.getCondition());
+                pending.push(conditional.getValue());
+                pending.push(conditional.getOtherwise());
+            } else if (node instanceof FunctionCall) {
+                FunctionCall call = (FunctionCall) node;
+                for (int i = 0; i < call.getArgumentCount(); i++)
+                    pending.push(call.getArgument(i));
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasConditional(String text, Map<String, Integer> parameters) {
+        try {
+            return any(compile(text, parameters).getRoot(), node -> node instanceof Conditional);
+        } catch (CalculatorException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOperand(Expression node) {
+        return node instanceof Literal || node instanceof VariableReference;
+    }
+
+    private static boolean isLegacyOperation(Expression node) {
+        return node instanceof Operation && ((Operation) node).getOperandCount() == 2
+                && LEGACY_FUNCTIONS.contains(((Operation) node).getFunction());
+    }
+
+    private static boolean hasLetOperand(Operation operation) {
+        for (int i = 0; i < operation.getOperandCount(); i++)
+            if (operation.getOperand(i) instanceof LetBinding)
+                return true;
+        return false;
+    }
+
+    private static boolean isSubOrDiv(Operation operation) {
+        return operation.getFunction() == ArithmeticFunctions.SUB || operation.getFunction() == ArithmeticFunctions.DIV;
+    }
+
+    private static boolean isParameter(CompiledExpression compiled, VariableReference variable) {
+        for (int slot : compiled.getParameterSlots())
+            if (slot == variable.getSlot())
+                return true;
+        return false;
+    }
+
+    /**
+     * Value or exception of the evaluation.
+     */
+    private static String outcome(Callable<Float> evaluation) {
+        try {
+            return "= " + evaluation.call();
+        } catch (Exception | StackOverflowError e) {
+            return e.getClass().getSimpleName() + " : " + e.getMessage();
+        }
+    }
+
+    private static CompiledExpression compile(String text, Map<String, Integer> parameters) throws CalculatorException {
+        return parameters.isEmpty() ? ExpressionCompiler.compile(text) : ExpressionCompiler.compileWithParameters(text);
+    }
+
+    private static float[] valuesOf(CompiledExpression compiled, Map<String, Integer> parameters) {
+        String[] names = compiled.getParameters();
+        float[] values = new float[names.length];
+        for (int i = 0; i < names.length; i++)
+            values[i] = parameters.get(names[i]);
+        return values;
+    }
+
+    private interface Engine {
+        float evaluate(String text, Map<String, Integer> parameters) throws Exception;
+    }
+
+    private interface Construct {
+        boolean in(String text, Map<String, Integer> parameters);
+    }
+}
@@ -0,0 +1,204 @@
+package com.interview.calculator.fuzz;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates random expression strings for differential tests.
+ * <p>
+ * Approach : Well formed expressions are generated top down, in evaluation order, keeping the set of variables assigned
+ * so far, so that a variable is only read once a let expression evaluated before it assigned it. Variables are taken
+ * from a few names, so that let expressions often shadow each other. Variables assigned inside a branch of if are
+ * forgotten after the if, even those assigned before it, as their value depends on the branch taken. Literals are
+ * mostly small, but also the integers around the limits of float precision and of the Integer range. Expressions
+ * which aren't extended only use the functions of the original parser, with two arguments.
+ * <p>
+ * Malformed expressions are well formed expressions with a random edit : a character removed or duplicated, a token
+ * inserted, an argument removed, a number replaced by one out of range or the text cut.
+ */
+final class ExpressionGenerator {
+
+    private static final String[] FUNCTIONS = {"add", "sub", "mult", "div", "min", "max", "mod", "pow", "abs", "if"};
+    // Functions of the original parser, each taking two arguments
+    private static final String[] LEGACY_FUNCTIONS = {"add", "sub", "mult", "div"};
+    private static final String[] VARIABLES = {"a", "b", "c"};
+    // Literals are in range up to 2147483583, whose float value is below Integer.MAX_VALUE, which is only inserted in
+    // malformed expressions
+    private static final int LARGEST_LITERAL = 2147483583;
+    private static final int[] BOUNDARIES = {0, 1, 2, LARGEST_LITERAL, LARGEST_LITERAL - 1, 1 << 24,
+            (1 << 24) + 1, 1 << 30, 65_535, 46_341};
+    private static final String[] TOKENS = {"(", ")", ",", "a", "let(", "if(", "sqrt(", "-", "2147483647", " "};
+    // Smallest numbers out of range, as their float value rounds to Integer.MAX_VALUE, and Integer.MAX_VALUE
+    private static final String[] OUT_OF_RANGE = {"2147483584", "2147483646", "2147483647"};
+
+    private final Random random;
+    private final int maximumDepth;
+    private final boolean extended;
+    private final String[] parameters;
+
+    /**
+     * @param random
+     * @param maximumDepth : maximum nesting of functions
+     * @param extended     : whether to use the functions added since the original parser and more than two arguments
+     * @param parameters   : names which can be read without being assigned, none for closed expressions
+     */
+    ExpressionGenerator(Random random, int maximumDepth, boolean extended, String... parameters) {
+        this.random = random;
+        this.maximumDepth = maximumDepth;
+        this.extended = extended;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Generates an expression which compiles.
+     *
+     * @return
+     */
+    String wellFormed() {
+        Set<String> assigned = new HashSet<>();
+        for (String parameter : parameters)
+            assigned.add(parameter);
+        StringBuilder text = new StringBuilder();
+        append(text, 0, assigned, new HashSet<>());
+        return text.toString();
+    }
+
+    /**
+     * Generates a well formed expression with one random edit, which usually doesn't compile.
+     *
+     * @return
+     */
+    String malformed() {
+        String text = wellFormed();
+        int position = random.nextInt(text.length() + 1);
+        switch (random.nextInt(6)) {
+            case 0:
+                return position < text.length() ? text.substring(0, position) + text.substring(position + 1) : text + ")";
+            case 1:
+                return position < text.length() ? text.substring(0, position + 1) + text.substring(position) : text + ",";
+            case 2:
+                return text.substring(0, position) + TOKENS[random.nextInt(TOKENS.length)] + text.substring(position);
+            case 3:
+                // Removes the argument after a separator
+                int separator = text.indexOf(',', position);
+                if (separator < 0)
+                    return "add(" + text + ")";
+                int end = separator + 1;
+                int depth = 0;
+                while (end < text.length() && (depth > 0 || (text.charAt(end) != ',' && text.charAt(end) != ')'))) {
+                    if (text.charAt(end) == '(')
+                        depth++;
+                    else if (text.charAt(end) == ')')
+                        depth--;
+                    end++;
+                }
+                return text.substring(0, separator) + text.substring(end);
+            case 4:
+                // Replaces the number after the position by a number out of range
+                int start = position;
+                while (start < text.length() && !Character.isDigit(text.charAt(start)))
+                    start++;
+                int stop = start;
+                while (stop < text.length() && Character.isDigit(text.charAt(stop)))
+                    stop++;
+                return text.substring(0, start) + (start < stop ? OUT_OF_RANGE[random.nextInt(OUT_OF_RANGE.length)] : "")
+                        + text.substring(stop);
+            default:
+                return text.substring(0, position);
+        }
+    }
+
+    /**
+     * @param assigned : variables which can be read, updated with the variables assigned by the expression
+     * @param bound    : variables assigned by the let expressions generated so far
+     */
+    private void append(StringBuilder text, int depth, Set<String> assigned, Set<String> bound) {
+        int choice = random.nextInt(depth >= maximumDepth ? 2 : 6);
+        if (choice == 0) {
+            appendLiteral(text);
+        } else if (choice == 1) {
+            String variable = readable(assigned);
+            if (variable == null)
+                appendLiteral(text);
+            else
+                text.append(variable);
+        } else if (choice == 2) {
+            String variable = VARIABLES[random.nextInt(VARIABLES.length)];
+            appendName(text, "let");
+            text.append(variable).append(separator());
+            append(text, depth + 1, assigned, bound);
+            assigned.add(variable);
+            bound.add(variable);
+            text.append(separator());
+            append(text, depth + 1, assigned, bound);
+            text.append(')');
+        } else {
+            String[] functions = extended ? FUNCTIONS : LEGACY_FUNCTIONS;
+            String function = functions[random.nextInt(functions.length)];
+            appendName(text, function);
+            switch (function) {
+                case "abs":
+                    append(text, depth + 1, assigned, bound);
+                    break;
+                case "sub":
+                case "div":
+                case "mod":
+                case "pow":
+                    appendArguments(text, depth, assigned, bound, 2);
+                    break;
+                case "if":
+                    append(text, depth + 1, assigned, bound);
+                    // Variables assigned by a branch are unknown after the if
+                    Set<String> branchBound = new HashSet<>();
+                    text.append(separator());
+                    append(text, depth + 1, new HashSet<>(assigned), branchBound);
+                    text.append(separator());
+                    append(text, depth + 1, new HashSet<>(assigned), branchBound);
+                    assigned.removeAll(branchBound);
+                    bound.addAll(branchBound);
+                    break;
+                default:
+                    int extra = extended && random.nextInt(4) == 0 ? random.nextInt(3) : 0;
+                    appendArguments(text, depth, assigned, bound, 2 + extra);
+            }
+            text.append(')');
+        }
+    }
+
+    private void appendArguments(StringBuilder text, int depth, Set<String> assigned, Set<String> bound, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                text.append(separator());
+            append(text, depth + 1, assigned, bound);
+        }
+    }
+
+    private void appendName(StringBuilder text, String name) {
+        // Names are case insensitive
+        if (random.nextInt(8) == 0)
+            name = name.toUpperCase();
+        text.append(name).append('(');
+    }
+
+    private void appendLiteral(StringBuilder text) {
+        int kind = random.nextInt(10);
+        if (kind < 6)
+            text.append(random.nextInt(10));
+        else if (kind < 9)
+            text.append(BOUNDARIES[random.nextInt(BOUNDARIES.length)]);
+        else
+            text.append(random.nextInt(LARGEST_LITERAL + 1));
+    }
+
+    private String readable(Set<String> assigned) {
+        if (assigned.isEmpty())
+            return null;
+        String[] names = assigned.toArray(new String[0]);
+        return names[random.nextInt(names.length)];
+    }
+
+    private String separator() {
+        return random.nextBoolean() ? "," : ", ";
+    }
+}
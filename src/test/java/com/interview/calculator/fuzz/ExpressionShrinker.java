@@ -0,0 +1,140 @@
+package com.interview.calculator.fuzz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Shrinks an expression string on which a property fails to a smaller one on which it still fails.
+ * <p>
+ * Approach : Candidates smaller than the current expression are tried, shortest first, and the first one still failing
+ * replaces it, until no candidate fails :
+ * - function replaced by one of its arguments, or by 0 or 1.
+ * - argument removed from a function.
+ * - variable replaced by 1.
+ * - number replaced by 0, 1, or a number between it and 0 : n - n / 2, n - n / 4 ... n - 1.
+ * - single character removed, for malformed expressions which the others can't shrink.
+ * Functions whose closing bracket is missing end with the expression, as brackets missing at the end are assumed.
+ * Every accepted candidate is shorter or has a smaller number, so shrinking always ends.
+ */
+final class ExpressionShrinker {
+
+    // Character removal tries every position, only worth it for short expressions
+    private static final int MAXIMUM_CHARACTER_REMOVALS = 400;
+
+    private ExpressionShrinker() {
+    }
+
+    /**
+     * @param expression : expression on which the property fails
+     * @param failing    : whether the property fails on an expression
+     * @return smallest failing expression found
+     */
+    static String shrink(String expression, Predicate<String> failing) {
+        String current = expression;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            List<String> candidates = candidates(current);
+            candidates.sort((first, second) -> Integer.compare(first.length(), second.length()));
+            for (String candidate : candidates) {
+                if (!candidate.equals(current) && failing.test(candidate)) {
+                    current = candidate;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static List<String> candidates(String expression) {
+        List<String> candidates = new ArrayList<>();
+        for (int start = 0; start < expression.length(); start++) {
+            char c = expression.charAt(start);
+            if (c == '(') {
+                addFunctionCandidates(expression, start, candidates);
+            } else if (Character.isLetter(c) && (start == 0 || !Character.isLetter(expression.charAt(start - 1)))) {
+                int end = start;
+                while (end < expression.length() && Character.isLetter(expression.charAt(end)))
+                    end++;
+                if (end == expression.length() || expression.charAt(end) != '(')
+                    candidates.add(expression.substring(0, start) + "1" + expression.substring(end));
+            } else if (Character.isDigit(c) && (start == 0 || !Character.isDigit(expression.charAt(start - 1)))) {
+                int end = start;
+                while (end < expression.length() && Character.isDigit(expression.charAt(end)))
+                    end++;
+                String number = expression.substring(start, end);
+                for (String smaller : smallerNumbers(number))
+                    candidates.add(expression.substring(0, start) + smaller + expression.substring(end));
+            }
+        }
+        if (expression.length() <= MAXIMUM_CHARACTER_REMOVALS)
+            for (int i = 0; i < expression.length(); i++)
+                candidates.add(expression.substring(0, i) + expression.substring(i + 1));
+        return candidates;
+    }
+
+    /**
+     * Adds the candidates of the function whose opening bracket is at the given index.
+     */
+    private static void addFunctionCandidates(String expression, int open, List<String> candidates) {
+        int nameStart = open;
+        while (nameStart > 0 && Character.isLetter(expression.charAt(nameStart - 1)))
+            nameStart--;
+        // Start and end of every argument, the last end being the closing bracket
+        List<int[]> arguments = new ArrayList<>();
+        int depth = 0;
+        int argumentStart = open + 1;
+        int close = -1;
+        for (int i = open + 1; i < expression.length() && close < 0; i++) {
+            char c = expression.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && depth > 0) {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == ')')) {
+                arguments.add(new int[]{argumentStart, i});
+                argumentStart = i + 1;
+                if (c == ')')
+                    close = i;
+            }
+        }
+        if (close < 0) {
+            arguments.add(new int[]{argumentStart, expression.length()});
+            close = expression.length() - 1;
+        }
+        String before = expression.substring(0, nameStart);
+        String after = expression.substring(close + 1);
+        candidates.add(before + "0" + after);
+        candidates.add(before + "1" + after);
+        for (int i = 0; i < arguments.size(); i++) {
+            int[] argument = arguments.get(i);
+            String text = expression.substring(argument[0], argument[1]).trim();
+            if (!text.isEmpty())
+                candidates.add(before + text + after);
+            if (arguments.size() > 1) {
+                // Removing the argument with the separator before it, or after it for the first argument
+                int from = i == 0 ? argument[0] : arguments.get(i - 1)[1];
+                int to = i == 0 ? arguments.get(1)[0] : argument[1];
+                candidates.add(expression.substring(0, from) + expression.substring(to));
+            }
+        }
+    }
+
+    private static List<String> smallerNumbers(String number) {
+        List<String> smaller = new ArrayList<>();
+        if (number.equals("0"))
+            return smaller;
+        smaller.add("0");
+        if (!number.equals("1"))
+            smaller.add("1");
+        if (number.length() <= 18) {
+            long value = Long.parseLong(number);
+            for (long difference = value / 2; difference > 0; difference /= 2)
+                if (value - difference > 1)
+                    smaller.add(Long.toString(value - difference));
+        }
+        return smaller;
+    }
+}
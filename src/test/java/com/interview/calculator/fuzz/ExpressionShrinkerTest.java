@@ -0,0 +1,46 @@
+package com.interview.calculator.fuzz;
+
+import com.interview.calculator.parser.ExpressionParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpressionShrinkerTest {
+
+    @Test
+    void shrinkDivisionByZero() {
+        Predicate<String> failing = expression -> {
+            try {
+                new ExpressionParser(expression).getResult();
+                return false;
+            } catch (ArithmeticException e) {
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        };
+        String shrunk = ExpressionShrinker.shrink("add(1, let(a, 5, mult(2, div(a, sub(a, 5)))))", failing);
+        assertTrue(failing.test(shrunk));
+        assertTrue(shrunk.length() <= "div(0,0)".length(), shrunk);
+    }
+
+    @Test
+    void shrinkNumbers() {
+        Predicate<String> failing = expression -> {
+            try {
+                return new ExpressionParser(expression).getResult() > 1000;
+            } catch (Exception e) {
+                return false;
+            }
+        };
+        assertEquals("1001", ExpressionShrinker.shrink("let(a, 2147483, mult(a, 3))", failing));
+    }
+
+    @Test
+    void passingExpressionUnchanged() {
+        assertEquals("add(1, 2)", ExpressionShrinker.shrink("add(1, 2)", expression -> false));
+    }
+}
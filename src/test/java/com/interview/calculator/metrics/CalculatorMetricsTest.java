@@ -0,0 +1,75 @@
+package com.interview.calculator.metrics;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import com.interview.calculator.batch.EvaluationResult;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.parser.ExpressionParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static com.interview.calculator.constants.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalculatorMetricsTest {
+
+    private final CalculatorMetrics metrics = CalculatorMetrics.getDefault();
+
+    @BeforeEach
+    void enable() {
+        metrics.reset();
+        metrics.setEnabled(true);
+    }
+
+    @AfterEach
+    void disable() {
+        metrics.setEnabled(false);
+        metrics.reset();
+    }
+
+    @Test
+    void evaluationsAndErrorsAreCounted() {
+        BatchEvaluator evaluator = new BatchEvaluator();
+        evaluator.evaluate(Arrays.asList("add(1, 2)", "mult(3, 4)", "div(1, 0)", "sqrt(1, 2)", "add(1, 2"));
+        assertEquals(3, metrics.getEvaluationCount());
+        assertEquals(2, metrics.getErrorCount());
+        assertEquals(1, metrics.getDivideByZeroCount());
+        assertEquals(1, metrics.getInvalidFunctionCount());
+        assertEquals(0, metrics.getOutOfRangeCount());
+        assertTrue(metrics.dump().contains("evaluations=3 errors=2"));
+    }
+
+    @Test
+    void nothingRecordedWhenDisabled() {
+        metrics.setEnabled(false);
+        EvaluationResult result = new BatchEvaluator().evaluate("let(a, 1, div(a, 0))");
+        assertFalse(result.isSuccess());
+        assertEquals(0, metrics.getEvaluationCount());
+        assertEquals(0, metrics.getErrorCount());
+    }
+
+    @Test
+    void parseIsRecordedOnCacheMiss() throws CalculatorException {
+        String expression = "let(a, " + System.nanoTime() % 1000 + ", add(a, mult(a, 2)))";
+        new ExpressionParser(expression).getResult();
+        new ExpressionParser(expression).getResult();
+        assertEquals(1, metrics.getParseCount());
+        assertEquals(2, metrics.getEvaluationCount());
+        assertEquals(3, metrics.getExpressionDepthP99());
+        assertTrue(metrics.getExpressionLengthP99() >= expression.length());
+    }
+
+    @Test
+    void registeredAsMBean() throws Exception {
+        metrics.registerMBean();
+        metrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.recordError(new ArithmeticException(DIVIDE_BY_ZERO));
+        assertEquals(1L, server.getAttribute(new ObjectName(CalculatorMetrics.OBJECT_NAME), "DivideByZeroCount"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.interview.calculator.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void bucketsCoverEveryValue() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(Histogram.highestValueOf(bucket) >= value);
+            assertTrue(bucket == 0 || Histogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    void percentilesWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10_000; i++)
+            histogram.record(i);
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertEquals(5000, histogram.getPercentile(50), 5000 / 16);
+        assertEquals(9900, histogram.getPercentile(99), 9900 / 16);
+        assertEquals(10_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void concurrentRecording() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++)
+            executor.execute(() -> {
+                for (int i = 0; i < 100_000; i++)
+                    histogram.record(i);
+            });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(400_000, histogram.getCount());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+}
@@ -0,0 +1,95 @@
+package com.interview.calculator.optimizer;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Literal;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.expression.VariableReference;
+import com.interview.calculator.parser.ExpressionCompiler;
+import org.junit.jupiter.api.Test;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionOptimizerTest {
+
+    private static CompiledExpression optimize(String expression) throws CalculatorException {
+        return ExpressionOptimizer.optimize(ExpressionCompiler.compile(expression));
+    }
+
+    @Test
+    void constantExpressionIsFolded() throws CalculatorException {
+        CompiledExpression optimized = optimize("div(mult(add(sub(5,4),mult(2,3)),div(9,3)), add(10, 11))");
+        assertEquals(1, ((Literal) optimized.getRoot()).getValue());
+    }
+
+    @Test
+    void constantLetsAreInlined() throws CalculatorException {
+        CompiledExpression optimized = optimize("let(a, let(b, let(c, 5, add(c,c)), add(b,c)), mult(b, a))");
+        assertEquals(150, ((Literal) optimized.getRoot()).getValue());
+    }
+
+    @Test
+    void unusedLetIsDropped() throws CalculatorException {
+        CompiledExpression optimized = optimize("let(a, add(2, 3), 7)");
+        assertEquals(7, ((Literal) optimized.getRoot()).getValue());
+    }
+
+    @Test
+    void parametersAreKept() throws CalculatorException {
+        CompiledExpression optimized = ExpressionOptimizer.optimize(
+                ExpressionCompiler.compileWithParameters("let(a, mult(x, 2), let(b, add(x, 1), mult(b, add(3, 4))))"));
+        assertArrayEquals(new String[]{"x"}, optimized.getParameters());
+        // Let of a is never read, let of b is
+        LetBinding let = (LetBinding) optimized.getRoot();
+        assertEquals("b", let.getName());
+        assertEquals(21, optimized.evaluate(new float[]{2}));
+    }
+
+    @Test
+    void divideByZeroIsKept() throws CalculatorException {
+        CompiledExpression optimized = optimize("let(a, div(1, sub(2, 2)), 7)");
+        assertTrue(optimized.getRoot() instanceof LetBinding);
+        Exception exception = assertThrows(ArithmeticException.class, optimized::evaluate);
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void multiplyByOneIsRemoved() throws CalculatorException {
+        CompiledExpression optimized = optimize("let(a, div(1, sub(2, 2)), mult(1, div(a, 1)))");
+        LetBinding let = (LetBinding) optimized.getRoot();
+        assertTrue(let.getBody() instanceof VariableReference);
+    }
+
+    @Test
+    void constantConditionSelectsBranch() throws CalculatorException {
+        CompiledExpression optimized = ExpressionOptimizer.optimize(
+                ExpressionCompiler.compileWithParameters("let(a, 0, if(a, div(x, 0), add(x, 1)))"));
+        assertTrue(optimized.getRoot() instanceof Operation);
+        assertEquals(4, optimized.evaluate(new float[]{3}));
+    }
+
+    @Test
+    void branchAssignmentsAreNotShared() throws CalculatorException {
+        // a is read by otherwise, so the let assigning it can't be dropped because the value branch assigns it too
+        String expression = "let(a, 4, if(x, let(a, 1, a), mult(a, 2)))";
+        CompiledExpression optimized = ExpressionOptimizer.optimize(ExpressionCompiler.compileWithParameters(expression));
+        assertEquals(8, optimized.evaluate(new float[]{0}));
+        assertEquals(1, optimized.evaluate(new float[]{1}));
+    }
+
+    @Test
+    void sameResults() throws CalculatorException {
+        String[] expressions = {
+                "mult(add(4,3), sub(mult(5,2),add(4,3)))",
+                "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b))",
+                "let(a, let(b, 10, mult(add(b,b), sub(-b, 2)), mult(a, a))",
+                "let(a, 3, sub(div(a, 7), mult(a, 0)))",
+                "add(1, 2, mult(3, 4, 5), min(7, 2, 9), max(1, 8, 3), mod(7, 3), pow(2, 10), abs(sub(0, 4)))",
+                "let(a, 1, add(if(sub(a, 1), let(a, 5, a), a), let(a, 2, a)))"
+        };
+        for (String expression : expressions)
+            assertEquals(ExpressionCompiler.compile(expression).evaluate(), optimize(expression).evaluate(), expression);
+    }
+}
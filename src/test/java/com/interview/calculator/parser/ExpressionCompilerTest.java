@@ -0,0 +1,317 @@
+package com.interview.calculator.parser;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import com.interview.calculator.batch.EvaluationResult;
+import com.interview.calculator.batch.ExpressionDag;
+import com.interview.calculator.cache.ExpressionCache;
+import com.interview.calculator.constants.ArithmeticFunctions;
+import com.interview.calculator.constants.Dialect;
+import com.interview.calculator.constants.NumericMode;
+import com.interview.calculator.evaluator.ColumnarEvaluator;
+import com.interview.calculator.evaluator.EvaluationContext;
+import com.interview.calculator.evaluator.ExactEvaluator;
+import com.interview.calculator.evaluator.IncrementalEvaluator;
+import com.interview.calculator.evaluator.LongEvaluator;
+import com.interview.calculator.evaluator.MethodHandleCompiler;
+import com.interview.calculator.evaluator.Program;
+import com.interview.calculator.evaluator.TieredEvaluator;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.LetBinding;
+import com.interview.calculator.expression.Operation;
+import com.interview.calculator.optimizer.ExpressionOptimizer;
+import com.interview.calculator.serialization.ExpressionArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.interview.calculator.constants.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionCompilerTest {
+
+    @Test
+    void evaluateCompiledExpressionManyTimes() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compile("let(a, 5, let(b, mult(a, 10), add(b,a)))");
+        for (int i = 0; i < 3; i++)
+            assertEquals(55, compiled.evaluate());
+    }
+
+    @Test
+    void treeStructure() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compile("let(a, 5, ADD(a, 1))");
+        LetBinding let = (LetBinding) compiled.getRoot();
+        assertEquals("a", let.getName());
+        assertEquals(ArithmeticFunctions.ADD, ((Operation) let.getBody()).getFunction());
+        assertArrayEquals(new String[]{"a"}, compiled.getSymbols());
+    }
+
+    @Test
+    void operandOrderWithVariables() throws CalculatorException {
+        assertEquals(-3, ExpressionCompiler.compile("let(a, 2, sub(5, a))").evaluate());
+        assertEquals(0.2f, ExpressionCompiler.compile("let(a, 2, div(10, a))").evaluate());
+        assertEquals(3, ExpressionCompiler.compile("let(a, 2, sub(5, a))", Dialect.STANDARD).evaluate());
+        assertEquals(5, ExpressionCompiler.compile("let(a, 2, div(10, a))", Dialect.STANDARD).evaluate());
+        // Parameters and variables assigned by the other operand keep their order
+        assertEquals(3, ExpressionCompiler.compileWithParameters("sub(5, a)").evaluate(new float[]{2}));
+        assertEquals(1, ExpressionCompiler.compile("let(a, 2, sub(let(a, 3, 4), a))").evaluate());
+    }
+
+    @Test
+    void variableKeepsValueAfterLet() throws CalculatorException {
+        assertEquals(150, ExpressionCompiler.compile("let(a, let(b, let(c, 5, add(c,c)), add(b,c)), mult(b, a))").evaluate());
+    }
+
+    @Test
+    void unassignedVariable() {
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("add(a, 1)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+        exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("let(a, a, 1)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+    }
+
+    @Test
+    void invalidFunction() {
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("sqrt(2, 3)"));
+        assertEquals(INVALID_FUNCTION, exception.getMessage());
+    }
+
+    @Test
+    void missingArgument() {
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("add(1)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+    }
+
+    @Test
+    void trailingTokens() {
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("add(1, 2) 3"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+    }
+
+    @Test
+    void divideByZeroOnEvaluation() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compile("div(1, sub(2, 2))");
+        Exception exception = assertThrows(ArithmeticException.class, compiled::evaluate);
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void parameters() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters("let(c, mult(price, qty), sub(c, discount))");
+        assertArrayEquals(new String[]{"price", "qty", "discount"}, compiled.getParameters());
+        for (int row = 0; row < 5; row++)
+            assertEquals(row * 3 - 1, compiled.evaluate(new float[]{row, 3, 1}));
+        Map<String, Number> values = new HashMap<>();
+        values.put("price", 10);
+        values.put("qty", 2);
+        values.put("discount", 5);
+        assertEquals(15, compiled.evaluate(values));
+    }
+
+    @Test
+    void parameterReassignedByLet() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters("add(a, let(a, 5, a))");
+        assertEquals(1, compiled.getParameterCount());
+        assertEquals(7, compiled.evaluate(new float[]{2}));
+    }
+
+    @Test
+    void missingParameter() throws CalculatorException {
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters("add(a, b)");
+        Exception exception = assertThrows(CalculatorException.class, compiled::evaluate);
+        assertEquals(MISSING_PARAMETER, exception.getMessage());
+        exception = assertThrows(CalculatorException.class, () -> compiled.evaluate(Collections.singletonMap("a", 1)));
+        assertEquals(MISSING_PARAMETER, exception.getMessage());
+        exception = assertThrows(CalculatorException.class, () -> compiled.evaluate(new float[]{1}));
+        assertEquals(INVALID_ARGUMENTS, exception.getMessage());
+    }
+
+    @Test
+    void functionLookup() throws CalculatorException {
+        assertEquals(ArithmeticFunctions.MULT, ArithmeticFunctions.lookup("xMuLtx", 1, 5));
+        assertEquals(ArithmeticFunctions.DIV, ArithmeticFunctions.getEnum("DIV"));
+        assertNull(ArithmeticFunctions.lookup("ad", 0, 2));
+        assertNull(ArithmeticFunctions.lookup("adds", 0, 4));
+        assertNull(ArithmeticFunctions.lookup("", 0, 0));
+        assertThrows(CalculatorException.class, () -> ArithmeticFunctions.getEnum(null));
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        int depth = 100_000;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            expression.append(i % 2 == 0 ? "add(1, " : "let(a, 2, mult(a, ");
+        expression.append('1');
+        for (int i = 0; i < depth; i++)
+            expression.append(i % 2 == 0 ? ")" : "))");
+        CompiledExpression compiled = ExpressionCompiler.compile(expression);
+        assertEquals(depth + depth / 2, compiled.getDepth());
+        // (((1 * 2) + 1) * 2 + 1) ... doubles quickly, checking against a direct computation instead
+        float expected = 1;
+        for (int i = depth - 1; i >= 0; i--)
+            expected = i % 2 == 0 ? 1 + expected : 2 * expected;
+        assertEquals(expected, compiled.evaluate());
+        assertEquals(expected, new ExpressionParser(expression.toString()).getResult());
+    }
+
+    /**
+     * Every public entry point either evaluates a deep expression without overflowing a small thread stack, or rejects
+     * it as unsupported.
+     */
+    @Test
+    void deeplyNestedExpressionInEveryEntryPoint() throws Throwable {
+        int depth = 20_000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++)
+            builder.append(i % 10 == 9 ? "let(a, 2, sub(a, " : "add(1, ");
+        builder.append('1');
+        for (int i = 0; i < depth; i++)
+            builder.append(i % 10 == 9 ? "))" : ")");
+        String expression = builder.toString();
+        long expected = 1;
+        for (int i = depth - 1; i >= 0; i--)
+            expected = i % 10 == 9 ? 2 - expected : 1 + expected;
+        float value = expected;
+        long exact = expected;
+        runWithSmallStack(() -> {
+            CompiledExpression compiled = ExpressionCompiler.compile(expression);
+            assertEquals(value, compiled.evaluate());
+            assertEquals(value, new ExpressionParser(expression).getResult());
+            assertEquals(exact, new ExpressionParser(expression).getLongResult());
+            assertEquals(BigDecimal.valueOf(exact), new ExpressionParser(expression).getExactResult());
+            for (NumericMode mode : NumericMode.values())
+                assertEquals(0, new BigDecimal(ExpressionEvaluator.getDefault().evaluate(expression, mode).toString())
+                        .compareTo(BigDecimal.valueOf(exact)), mode.name());
+            assertEquals(value, ExpressionOptimizer.optimize(compiled).evaluate());
+            assertEquals(value, Program.compile(compiled).evaluate(new EvaluationContext()));
+            TieredEvaluator tiered = new TieredEvaluator(compiled, 1);
+            assertEquals(value, tiered.evaluate());
+            assertEquals(value, tiered.evaluate());
+            assertFalse(tiered.isCompiled());
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> MethodHandleCompiler.compile(compiled));
+            assertTrue(exception.getMessage().startsWith("Unsupported"));
+            assertEquals(value, new ColumnarEvaluator(compiled)
+                    .evaluate(Collections.singletonMap("rows", new int[1]))[0]);
+            assertEquals(value, new IncrementalEvaluator(compiled).getResult());
+            assertEquals(exact, LongEvaluator.compile(compiled).evaluate());
+            assertEquals(BigDecimal.valueOf(exact), ExactEvaluator.compile(compiled).evaluate());
+            assertEquals(value, ExpressionDag.compile(Collections.singletonList(compiled)).evaluate().get(0).getValue());
+            BatchEvaluator batch = new BatchEvaluator();
+            List<String> expressions = Arrays.asList(expression, "add(1, 2)");
+            for (List<EvaluationResult> results : Arrays.asList(batch.evaluate(expressions), batch.evaluateShared(expressions))) {
+                assertEquals(value, results.get(0).getValue());
+                assertEquals(3, results.get(1).getValue());
+            }
+            assertEquals(value, ExpressionCompiler.compile(ExpressionFormatter.format(compiled)).evaluate());
+            byte[] archive = ExpressionArchive.toByteArray(Collections.singletonList(compiled));
+            assertEquals(value, ExpressionArchive.wrap(ByteBuffer.wrap(archive)).get(0).evaluate());
+            ExpressionCache cache = new ExpressionCache(10, Integer.MAX_VALUE);
+            assertEquals(value, cache.get(expression).evaluate());
+            assertEquals(value, cache.getProgram(expression).evaluate(new EvaluationContext()));
+            assertEquals(exact, cache.getLongEvaluator(expression).evaluate());
+        });
+    }
+
+    private static void runWithSmallStack(Executable test) throws Throwable {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                test.execute();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "small-stack", 512 * 1024);
+        thread.start();
+        thread.join();
+        if (failure.get() != null)
+            throw failure.get();
+    }
+
+    @Test
+    void charBufferExpression() throws CalculatorException {
+        CharBuffer buffer = CharBuffer.wrap("xx let(a, 5, add(a, a)) yy".toCharArray(), 3, 20).slice();
+        CompiledExpression compiled = ExpressionCompiler.compile(buffer);
+        assertEquals(10, compiled.evaluate());
+        assertEquals("let(a, 5, add(a, a))", compiled.getSource());
+    }
+
+    @Test
+    void sourceCopiedFromMutableSequence() throws CalculatorException {
+        StringBuilder expression = new StringBuilder("add(1, 2)");
+        CompiledExpression compiled = ExpressionCompiler.compile(expression);
+        expression.setLength(0);
+        expression.append("mult(3, 4)");
+        assertEquals("add(1, 2)", compiled.toString());
+        assertEquals(3, compiled.evaluate());
+    }
+
+    @Test
+    void longExpressionInLinearTime() throws CalculatorException {
+        StringBuilder expression = new StringBuilder("let(a, 1, ");
+        int terms = 200_000;
+        for (int i = 0; i < terms; i++)
+            expression.append("add(a, ");
+        expression.append('0');
+        for (int i = 0; i < terms; i++)
+            expression.append(')');
+        expression.append(')');
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertEquals(terms, ExpressionCompiler.compile(expression).evaluate()));
+    }
+
+    @Test
+    void variadicFunctions() throws CalculatorException {
+        assertEquals(10, ExpressionCompiler.compile("add(1, 2, 3, 4)").evaluate());
+        assertEquals(24, ExpressionCompiler.compile("mult(1, 2, 3, 4)").evaluate());
+        assertEquals(4, ((Operation) ExpressionCompiler.compile("ADD(1, 2, 3, 4)").getRoot()).getOperandCount());
+        assertEquals(-3, ExpressionCompiler.compile("min(5, sub(0, 3), 2)").evaluate());
+        assertEquals(9, ExpressionCompiler.compile("let(a, 9, max(1, a, 2))").evaluate());
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("sub(1, 2, 3)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+        exception = assertThrows(CalculatorException.class, () -> ExpressionCompiler.compile("abs(1, 2)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+    }
+
+    @Test
+    void extendedFunctions() throws CalculatorException {
+        assertEquals(1, ExpressionCompiler.compile("mod(7, 3)").evaluate());
+        assertEquals(1024, ExpressionCompiler.compile("pow(2, 10)").evaluate());
+        assertEquals(5, ExpressionCompiler.compile("abs(sub(2, 7))").evaluate());
+        Exception exception = assertThrows(ArithmeticException.class, () -> ExpressionCompiler.compile("mod(7, 0)").evaluate());
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+    }
+
+    @Test
+    void conditionalEvaluatesOneBranch() throws CalculatorException {
+        assertEquals(2, ExpressionCompiler.compile("if(1, 2, div(1, 0))").evaluate());
+        assertEquals(3, ExpressionCompiler.compile("if(sub(2, 2), div(1, 0), 3)").evaluate());
+        assertEquals(6, ExpressionCompiler.compile("let(a, 2, if(a, let(b, 3, mult(a, b)), let(b, 4, add(a, b))))").evaluate());
+    }
+
+    @Test
+    void variablesAssignedInBranch() throws CalculatorException {
+        // b is assigned by one branch only, it can't be read by the other branch nor after the if
+        Exception exception = assertThrows(CalculatorException.class,
+                () -> ExpressionCompiler.compile("if(1, let(b, 1, b), b)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+        exception = assertThrows(CalculatorException.class,
+                () -> ExpressionCompiler.compileWithParameters("add(if(x, let(b, 1, b), 2), b)"));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+        assertEquals(4, ExpressionCompiler.compile("add(if(1, let(b, 1, b), 2), let(b, 3, b))").evaluate());
+        // A parameter first read in a branch is a single parameter
+        CompiledExpression compiled = ExpressionCompiler.compileWithParameters("add(if(x, y, 0), y)");
+        assertArrayEquals(new String[]{"x", "y"}, compiled.getParameters());
+        assertEquals(4, compiled.evaluate(new float[]{1, 2}));
+    }
+}
@@ -0,0 +1,112 @@
+package com.interview.calculator.parser;
+
+import com.interview.calculator.cache.ExpressionCache;
+import com.interview.calculator.constants.NumericMode;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.function.FunctionRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.interview.calculator.constants.Constants.DIVIDE_BY_ZERO;
+import static com.interview.calculator.constants.Constants.INVALID_EXPRESSION;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionEvaluatorTest {
+
+    // Identity function, which the optimizer can't fold, so that variables are kept in the slots of the context
+    private static final String SAME = "same";
+
+    @Test
+    void evaluateManyExpressions() throws CalculatorException {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(new ExpressionCache(10));
+        assertEquals(55, evaluator.evaluate("let(a, 5, let(b, mult(a, 10), add(b, a)))"));
+        assertEquals(3, evaluator.evaluate("sub(5, 2)"));
+        assertEquals(123456789000L, evaluator.evaluate("mult(123456789, 1000)", NumericMode.LONG));
+        assertEquals(new BigDecimal("0.5"), evaluator.evaluate("div(1, 2)", NumericMode.EXACT));
+        Exception exception = assertThrows(CalculatorException.class, () -> evaluator.evaluate(""));
+        assertEquals(INVALID_EXPRESSION, exception.getMessage());
+    }
+
+    @Test
+    void evaluationAfterFailure() throws CalculatorException {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(new ExpressionCache(10));
+        Exception exception = assertThrows(ArithmeticException.class,
+                () -> evaluator.evaluate("let(a, 1, let(b, 2, div(a, sub(b, 2))))"));
+        assertEquals(DIVIDE_BY_ZERO, exception.getMessage());
+        assertEquals(9, evaluator.evaluate("let(a, 4, let(b, 5, add(a, b)))"));
+    }
+
+    @Test
+    void nestedEvaluationOnSameThread() throws CalculatorException {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(new ExpressionCache(10));
+        FunctionRegistry.getDefault().register(SAME, 1, 1, arguments -> arguments[0]);
+        FunctionRegistry.getDefault().register("nested", 1, 1, arguments ->
+                arguments[0] + evaluator.evaluate("let(a, same(7), let(b, same(8), mult(a, b)))"));
+        try {
+            // The nested evaluation assigns the slots of a and b too, which the outer one reads afterwards
+            assertEquals(59, evaluator.evaluate("let(a, same(1), let(b, same(2), add(nested(a), b)))"));
+            assertEquals(60, evaluator.evaluate("let(a, same(1), let(b, same(2), add(nested(a), b, a)))"));
+        } finally {
+            FunctionRegistry.getDefault().unregister("nested");
+            FunctionRegistry.getDefault().unregister(SAME);
+        }
+    }
+
+    @Test
+    void concurrentEvaluationsDontInterfere() throws Exception {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(new ExpressionCache(1_000));
+        int threads = 8;
+        int iterations = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        // Yielding between the assignment of a variable and its reads lets other threads run in between
+        FunctionRegistry.getDefault().register(SAME, 1, 1, arguments -> {
+            Thread.yield();
+            return arguments[0];
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int seed = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        // Expressions of different slot counts and stack depths, with failures in between
+                        int value = (seed * 31 + i) % 100;
+                        switch (i % 4) {
+                            case 0:
+                                assertEquals(11 * value, evaluator.evaluate(
+                                        "let(a, same(" + value + "), let(b, mult(a, 10), add(same(b), a)))"));
+                                break;
+                            case 1:
+                                assertEquals(value * (value + 1) * (value + 2), evaluator.evaluate(
+                                        "let(x, same(" + value + "), let(y, add(x, 1), let(z, same(add(y, 1)), mult(x, y, z))))"));
+                                break;
+                            case 2:
+                                assertEquals(value + 6, evaluator.evaluate(
+                                        "add(1, add(2, add(3, same(" + value + "))))"));
+                                break;
+                            default:
+                                assertThrows(ArithmeticException.class, () -> evaluator.evaluate(
+                                        "let(c, same(" + value + "), div(c, sub(c, c)))"));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+            FunctionRegistry.getDefault().unregister(SAME);
+        }
+    }
+}
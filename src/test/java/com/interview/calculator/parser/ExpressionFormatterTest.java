@@ -0,0 +1,54 @@
+package com.interview.calculator.parser;
+
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.expression.Literal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionFormatterTest {
+
+    @Test
+    void canonicalText() throws CalculatorException {
+        assertEquals("let(a, 5, add(a, a))", ExpressionFormatter.format(ExpressionCompiler.compile("LET(a,5,add(a,a")));
+        assertEquals("if(x, min(1, 2, y), abs(x))",
+                ExpressionFormatter.format(ExpressionCompiler.compileWithParameters("if(x,min(1,2,y),abs(x))")));
+    }
+
+    @Test
+    void formattedTextCompilesToSameTree() throws CalculatorException {
+        String[] expressions = {
+                "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b))",
+                "add(1, 2, mult(3, 4, 5), let(c, mod(7, 3), pow(c, 2)))",
+                "let(a, 2, if(a, let(b, 3, mult(a, b)), let(b, 4, add(a, b))))"
+        };
+        for (String expression : expressions) {
+            String text = ExpressionFormatter.format(ExpressionCompiler.compile(expression));
+            assertEquals(text, ExpressionFormatter.format(ExpressionCompiler.compile(text)));
+            assertEquals(ExpressionCompiler.compile(expression).evaluate(), ExpressionCompiler.compile(text).evaluate());
+        }
+    }
+
+    @Test
+    void computedLiteralsKeepTheirValue() throws CalculatorException {
+        float[] values = {-2, 0.1f, 1e-40f, Float.MIN_VALUE, 3e9f, Float.MAX_VALUE, -0f, Float.NaN,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 16777216f, 1 / 3f};
+        for (float value : values) {
+            String text = ExpressionFormatter.format(new Literal(value));
+            assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(ExpressionCompiler.compile(text).evaluate()), text);
+        }
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        StringBuilder expression = new StringBuilder();
+        int depth = 100_000;
+        for (int i = 0; i < depth; i++)
+            expression.append("add(1, ");
+        expression.append('0');
+        CompiledExpression compiled = ExpressionCompiler.compile(expression);
+        String text = ExpressionFormatter.format(compiled);
+        assertEquals(depth, ExpressionCompiler.compile(text).evaluate());
+    }
+}
@@ -1,5 +1,6 @@
 package com.interview.calculator.parser;
 
+import com.interview.calculator.constants.Dialect;
 import com.interview.calculator.exception.CalculatorException;
 import org.junit.jupiter.api.Test;
 
@@ -117,6 +118,32 @@ class ExpressionParserTest {
         assertEquals(OUT_OF_RANGE, exception.getMessage());
     }
 
+    /**
+     * Numbers are checked after their conversion to float as by the original parser, so numbers from 2147483584, which
+     * round to 2^31, are out of range. The standard dialect checks the numbers themselves.
+     */
+    @Test
+    public void largestNumberInRange() throws CalculatorException {
+        assertEquals(2147483520f, new ExpressionParser("add(2147483583, 0)").getResult());
+        Exception exception = assertThrows(CalculatorException.class,
+                () -> new ExpressionParser("add(2147483584, 0)").getResult());
+        assertEquals(OUT_OF_RANGE, exception.getMessage());
+        assertEquals(2147483646f, ExpressionCompiler.compile("add(2147483646, 0)", Dialect.STANDARD).evaluate());
+    }
+
+    /**
+     * A variable as the second operand of sub or div is the left hand side operand, the original parser computed
+     * let(a, 2, sub(5, a)) as 2 - 5. The standard dialect keeps the operands in order.
+     */
+    @Test
+    public void variableAsSecondOperand() throws CalculatorException {
+        assertEquals(-3, new ExpressionParser("let(a, 2, sub(5, a))").getResult());
+        assertEquals(0.4f, new ExpressionParser("let(a, 2, div(5, a))").getResult());
+        assertEquals(-3, new ExpressionParser("let(a, 2, sub(a, 5))").getResult());
+        assertEquals(3, ExpressionCompiler.compile("let(a, 2, sub(5, a))", Dialect.STANDARD).evaluate());
+        assertEquals(2.5f, ExpressionCompiler.compile("let(a, 2, div(5, a))", Dialect.STANDARD).evaluate());
+    }
+
     /**
      * Test divide by zero exception
      */
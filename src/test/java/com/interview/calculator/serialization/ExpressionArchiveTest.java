@@ -0,0 +1,158 @@
+package com.interview.calculator.serialization;
+
+import com.interview.calculator.constants.Dialect;
+import com.interview.calculator.evaluator.LongEvaluator;
+import com.interview.calculator.exception.CalculatorException;
+import com.interview.calculator.expression.CompiledExpression;
+import com.interview.calculator.function.FunctionRegistry;
+import com.interview.calculator.optimizer.ExpressionOptimizer;
+import com.interview.calculator.parser.ExpressionCompiler;
+import com.interview.calculator.parser.ExpressionFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.interview.calculator.constants.Constants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionArchiveTest {
+
+    private static final String[] EXPRESSIONS = {
+            "add(1, 2)",
+            "let(a, let(b, 10, add(b,b)), let(b, 20, add(a, b))",
+            "let(c, mult(price, qty), sub(c, discount))",
+            "add(1, 2, mult(3, 4, 5), min(x, 2, 9), max(1, 8, 3), mod(7, 3), pow(2, 10), abs(sub(0, 4)))",
+            "let(a, 2, if(a, let(b, 3, mult(a, b)), let(b, 4, add(a, b))))",
+            "mult(2147483583, 2147483583)",
+            "let(a, 2, sub(5, a))"
+    };
+
+    private static List<CompiledExpression> compile(String... expressions) throws CalculatorException {
+        List<CompiledExpression> compiled = new ArrayList<>();
+        for (String expression : expressions)
+            compiled.add(ExpressionCompiler.compileWithParameters(expression));
+        return compiled;
+    }
+
+    private static float evaluate(CompiledExpression expression) throws CalculatorException {
+        return expression.evaluate(new float[expression.getParameterCount()]);
+    }
+
+    @Test
+    void roundTrip() throws CalculatorException {
+        List<CompiledExpression> expressions = compile(EXPRESSIONS);
+        byte[] bytes = ExpressionArchive.toByteArray(expressions);
+        ExpressionArchive archive = ExpressionArchive.wrap(ByteBuffer.wrap(bytes));
+        assertEquals(EXPRESSIONS.length, archive.size());
+        List<CompiledExpression> decoded = new ArrayList<>();
+        for (int i = 0; i < archive.size(); i++) {
+            CompiledExpression expected = expressions.get(i);
+            CompiledExpression actual = archive.get(i);
+            assertEquals(evaluate(expected), evaluate(actual), EXPRESSIONS[i]);
+            assertArrayEquals(expected.getSymbols(), actual.getSymbols());
+            assertArrayEquals(expected.getParameters(), actual.getParameters());
+            assertEquals(expected.getDepth(), actual.getDepth());
+            assertEquals(ExpressionFormatter.format(expected), actual.toString());
+            decoded.add(actual);
+        }
+        // Encoding the decoded expressions gives the same bytes, nothing was lost
+        assertArrayEquals(bytes, ExpressionArchive.toByteArray(decoded));
+    }
+
+    @Test
+    void textRoundTrip() throws CalculatorException {
+        List<CompiledExpression> expressions = compile(EXPRESSIONS);
+        ExpressionArchive archive = ExpressionArchive.wrap(ByteBuffer.wrap(ExpressionArchive.toByteArray(expressions)));
+        List<CompiledExpression> recompiled = new ArrayList<>();
+        for (int i = 0; i < archive.size(); i++)
+            recompiled.add(ExpressionCompiler.compileWithParameters(archive.get(i).toString(), Dialect.STANDARD));
+        assertArrayEquals(ExpressionArchive.toByteArray(expressions), ExpressionArchive.toByteArray(recompiled));
+    }
+
+    @Test
+    void literalsKeepTheirExactValue() throws CalculatorException {
+        CompiledExpression optimized = ExpressionOptimizer.optimize(ExpressionCompiler.compile("add(div(1, 3), sub(0, 2))"));
+        CompiledExpression decoded = ExpressionArchive.wrap(ByteBuffer.wrap(
+                ExpressionArchive.toByteArray(Collections.singletonList(optimized)))).get(0);
+        assertEquals(Float.floatToIntBits(optimized.evaluate()), Float.floatToIntBits(decoded.evaluate()));
+        // Integer literals are still exact integers for the long evaluator
+        CompiledExpression large = ExpressionCompiler.compile("mult(2147483583, 2147483583)");
+        decoded = ExpressionArchive.wrap(ByteBuffer.wrap(ExpressionArchive.toByteArray(Collections.singletonList(large)))).get(0);
+        assertEquals(2147483583L * 2147483583L, LongEvaluator.compile(decoded).evaluate());
+    }
+
+    @Test
+    void mappedFile() throws IOException, CalculatorException {
+        List<CompiledExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++)
+            expressions.add(ExpressionCompiler.compile("let(a, " + i + ", add(a, mult(a, 2)))"));
+        Path path = Files.createTempFile("expressions", ".bin");
+        try {
+            ExpressionArchive.write(expressions, path);
+            ExpressionArchive archive = ExpressionArchive.open(path);
+            assertEquals(expressions.size(), archive.size());
+            for (int i = 0; i < archive.size(); i += 97)
+                assertEquals(3 * i, archive.get(i).evaluate());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void deeplyNestedExpression() throws CalculatorException {
+        StringBuilder expression = new StringBuilder();
+        int depth = 100_000;
+        for (int i = 0; i < depth; i++)
+            expression.append("add(1, ");
+        expression.append('0');
+        CompiledExpression compiled = ExpressionCompiler.compile(expression);
+        CompiledExpression decoded = ExpressionArchive.wrap(ByteBuffer.wrap(
+                ExpressionArchive.toByteArray(Collections.singletonList(compiled)))).get(0);
+        assertEquals(depth, decoded.getDepth());
+        assertEquals(depth, decoded.evaluate());
+    }
+
+    @Test
+    void customFunctions() throws CalculatorException {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.register("twice", 1, 1, arguments -> 2 * arguments[0]);
+        CompiledExpression compiled = ExpressionCompiler.compile("add(twice(3), 1)", registry);
+        ExpressionArchive archive = ExpressionArchive.wrap(ByteBuffer.wrap(
+                ExpressionArchive.toByteArray(Collections.singletonList(compiled))));
+        assertEquals(7, archive.get(0, registry).evaluate());
+        Exception exception = assertThrows(CalculatorException.class, () -> archive.get(0, new FunctionRegistry()));
+        assertEquals(INVALID_FUNCTION, exception.getMessage());
+    }
+
+    @Test
+    void invalidArchive() throws CalculatorException {
+        byte[] bytes = ExpressionArchive.toByteArray(compile(EXPRESSIONS));
+        byte[] version = bytes.clone();
+        version[7]++;
+        Exception exception = assertThrows(CalculatorException.class, () -> ExpressionArchive.wrap(ByteBuffer.wrap(version)));
+        assertEquals(INVALID_FORMAT, exception.getMessage());
+        ExpressionArchive truncated = ExpressionArchive.wrap(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 3)));
+        exception = assertThrows(CalculatorException.class, () -> truncated.get(EXPRESSIONS.length - 1));
+        assertEquals(INVALID_FORMAT, exception.getMessage());
+        // Every corrupted byte gives a decoding error or a valid expression, never another exception
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] corrupted = bytes.clone();
+            corrupted[i] ^= 0x5A;
+            try {
+                ExpressionArchive archive = ExpressionArchive.wrap(ByteBuffer.wrap(corrupted));
+                for (int j = 0; j < archive.size(); j++)
+                    archive.get(j);
+            } catch (CalculatorException e) {
+                assertTrue(INVALID_FORMAT.equals(e.getMessage()) || INVALID_ARGUMENTS.equals(e.getMessage())
+                        || INVALID_FUNCTION.equals(e.getMessage()), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.interview.calculator.server;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.interview.calculator.constants.Constants.LINE_TOO_LONG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalculatorServerTest {
+
+    @Test
+    void pipelinedRequests() throws IOException {
+        try (CalculatorServer server = new CalculatorServer(0)) {
+            server.start();
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                OutputStream output = socket.getOutputStream();
+                // Sending every expression before reading any result
+                output.write("add(1,2)\ndiv(6, 0)\nlet(a, 5, add(a,a))\n".getBytes(StandardCharsets.UTF_8));
+                output.flush();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("OK\t3.0", reader.readLine());
+                assertEquals("ERROR\tCan't divide by zero", reader.readLine());
+                assertEquals("OK\t10.0", reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    void concurrentClients() throws IOException, InterruptedException {
+        try (CalculatorServer server = new CalculatorServer(0)) {
+            server.start();
+            LoadGenerator.Report report = new LoadGenerator("localhost", server.getPort(), 4, 500, "mult(add(2,2), div(9,3))").run();
+            assertEquals(2000, report.getRequestCount());
+            assertEquals(0, report.getErrorCount());
+            assertTrue(report.getLatencyMicros(50) <= report.getLatencyMicros(99));
+        }
+    }
+
+    @Test
+    void lineTooLong() throws IOException {
+        try (CalculatorServer server = new CalculatorServer(0, new BatchEvaluator(), 1, 10, 16)) {
+            server.start();
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                StringBuilder request = new StringBuilder("add(1,2)\n");
+                for (int i = 0; i < 100_000; i++)
+                    request.append('a');
+                request.append("\nadd(3,4)\n");
+                socket.getOutputStream().write(request.toString().getBytes(StandardCharsets.UTF_8));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("OK\t3.0", reader.readLine());
+                assertEquals("ERROR\t" + LINE_TOO_LONG, reader.readLine());
+                // Connection is closed, the lines after the long one are not evaluated
+                assertNull(reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    void lastLineWithoutSeparator() throws IOException {
+        try (CalculatorServer server = new CalculatorServer(0)) {
+            server.start();
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                socket.getOutputStream().write("add(1,2)\r\nmult(2,3)".getBytes(StandardCharsets.UTF_8));
+                socket.shutdownOutput();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("OK\t3.0", reader.readLine());
+                assertEquals("OK\t6.0", reader.readLine());
+                assertNull(reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    void connectionsAboveMaximumAreClosed() throws IOException {
+        try (CalculatorServer server = new CalculatorServer(0, new BatchEvaluator(), 1, 1, 1024)) {
+            server.start();
+            try (Socket first = new Socket("localhost", server.getPort());
+                 Socket second = new Socket("localhost", server.getPort())) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+                assertNull(reader.readLine());
+                first.getOutputStream().write("add(1,2)\n".getBytes(StandardCharsets.UTF_8));
+                reader = new BufferedReader(new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("OK\t3.0", reader.readLine());
+            }
+        }
+    }
+
+    /**
+     * Idle connections don't take any thread, the server keeps its selector thread and its workers.
+     */
+    @Test
+    void idleConnectionsDontTakeThreads() throws IOException {
+        try (CalculatorServer server = new CalculatorServer(0, new BatchEvaluator(), 2, 1_000, 1024)) {
+            server.start();
+            List<Socket> sockets = new ArrayList<>();
+            try {
+                for (int i = 0; i < 200; i++)
+                    sockets.add(new Socket("localhost", server.getPort()));
+                Socket socket = sockets.get(199);
+                socket.getOutputStream().write("add(1,2)\n".getBytes(StandardCharsets.UTF_8));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("OK\t3.0", reader.readLine());
+                long serverThreads = Thread.getAllStackTraces().keySet().stream()
+                        .filter(thread -> thread.getName().startsWith("calculator-"))
+                        .count();
+                assertTrue(serverThreads <= 3, serverThreads + " server threads");
+            } finally {
+                for (Socket socket : sockets)
+                    socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.interview.calculator.stream;
+
+import com.interview.calculator.batch.BatchEvaluator;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpressionStreamProcessorTest {
+
+    @Test
+    void oneResultPerLine() throws IOException {
+        String input = "add(1,2)\ndiv(6, 0)\n\nlet(a, 5, add(a,a))\n";
+        StringWriter output = new StringWriter();
+        long count = new ExpressionStreamProcessor().process(new BufferedReader(new StringReader(input)), output);
+        assertEquals(4, count);
+        assertEquals("OK\t3.0\nERROR\tCan't divide by zero\nERROR\tInvalid Expression\nOK\t10.0\n", output.toString());
+    }
+
+    @Test
+    void inputOrderAcrossChunks() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            input.append("mult(").append(i).append(", 2)\n");
+            expected.append("OK\t").append((float) (2 * i)).append('\n');
+        }
+        StringWriter output = new StringWriter();
+        new ExpressionStreamProcessor(new BatchEvaluator(), 7).process(new BufferedReader(new StringReader(input.toString())), output);
+        assertEquals(expected.toString(), output.toString());
+    }
+
+    @Test
+    void lineTooLong() throws IOException {
+        StringBuilder tooLong = new StringBuilder("add(1, ");
+        while (tooLong.length() < 100_000)
+            tooLong.append("add(1, ");
+        String input = "add(1,2)\r\n" + tooLong + "\r\nmult(2, 3)\radd(3,4)\n" + tooLong + "\nadd(" + tooLong.length() + ", 0)";
+        StringWriter output = new StringWriter();
+        long count = new ExpressionStreamProcessor(new BatchEvaluator(), 2, 20)
+                .process(new BufferedReader(new StringReader(input)), output);
+        assertEquals(6, count);
+        assertEquals("OK\t3.0\nERROR\tLine too long\nOK\t6.0\nOK\t7.0\nERROR\tLine too long\nOK\t"
+                + (float) tooLong.length() + "\n", output.toString());
+    }
+}